@@ -0,0 +1,90 @@
+package LDS.Person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端识别的基准测试（需要本机可用的 Tesseract 和 tessdata）
+ * 把 IMG/sample.jpg 缩放为多种尺寸，分别以旧模式和常驻模式识别
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RecognitionBenchmark {
+    private static final String SAMPLE_IMAGE = "IMG/sample.jpg";
+
+    /**
+     * 相对样例图片的缩放比例
+     */
+    @Param({"0.5", "1", "2", "4"})
+    public double scale;
+
+    @Param({"true", "false"})
+    public boolean persistent;
+
+    private Path imageFile;
+    private OCRService service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BufferedImage sample = ImageIO.read(new File(System.getProperty("user.dir"), SAMPLE_IMAGE));
+        if (sample == null) {
+            throw new IllegalStateException("无法读取样例图片: " + SAMPLE_IMAGE);
+        }
+        int width = Math.max(1, (int) Math.round(sample.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(sample.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.drawImage(sample, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        imageFile = Files.createTempFile("recognition-bench", ".png");
+        ImageIO.write(scaled, "png", imageFile.toFile());
+
+        service = new OCRService(OcrConfig.getLanguage(), OcrConfig.getConfidenceThreshold(), persistent, null);
+        OcrResult probe = service.recognize(imageFile.toFile());
+        if (probe.getStatus() == OcrResult.Status.ERROR) {
+            throw new IllegalStateException("Tesseract 不可用: " + probe.getMessage());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (service != null) {
+            service.close();
+        }
+        Files.deleteIfExists(imageFile);
+    }
+
+    @Benchmark
+    public OcrResult recognize() {
+        return service.recognize(imageFile.toFile());
+    }
+}
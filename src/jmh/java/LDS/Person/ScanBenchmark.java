@@ -0,0 +1,97 @@
+package LDS.Person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 目录扫描的基准测试
+ * 在临时目录中生成合成目录树（空文件，其中 1/4 不是图片），
+ * 对比一次性扫描 ImageScanner 和流式扫描 StreamingImageScanner
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScanBenchmark {
+    private static final String[] EXTENSIONS = {".png", ".jpg", ".gif", ".txt"};
+
+    @Param({"1000", "20000"})
+    public int fileCount;
+
+    /**
+     * flat: 所有文件在同一目录；deep: 每个目录 50 个文件、10 个子目录
+     */
+    @Param({"flat", "deep"})
+    public String layout;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void createTree() throws IOException {
+        root = Files.createTempDirectory("scan-bench");
+        if ("flat".equals(layout)) {
+            for (int i = 0; i < fileCount; i++) {
+                Files.createFile(root.resolve("meme" + i + EXTENSIONS[i % EXTENSIONS.length]));
+            }
+            return;
+        }
+        int created = 0;
+        int directoryIndex = 0;
+        while (created < fileCount) {
+            Path directory = root;
+            // 目录编号按 10 进制展开为路径，例如 123 -> 1/2/3
+            for (char digit : Integer.toString(directoryIndex++).toCharArray()) {
+                directory = directory.resolve("d" + digit);
+            }
+            Files.createDirectories(directory);
+            for (int i = 0; i < 50 && created < fileCount; i++, created++) {
+                Files.createFile(directory.resolve("meme" + created + EXTENSIONS[created % EXTENSIONS.length]));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteTree() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public int imageScanner() {
+        return ImageScanner.scanImages(root.toString()).size();
+    }
+
+    @Benchmark
+    public int streamingScanner() throws InterruptedException {
+        int count = 0;
+        try (StreamingImageScanner scanner = new StreamingImageScanner(root, 1024, 4).start()) {
+            while (scanner.next() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
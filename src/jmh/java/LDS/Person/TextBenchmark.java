@@ -0,0 +1,68 @@
+package LDS.Person;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 识别文本处理热点的基准测试
+ * 覆盖一次遍历的文本清理（规范化 + 过滤）、单独的规范化和文件名清理
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+    // 典型的 Tesseract 输出：中英混排，带换行、空格和识别噪点
+    private static final String CAPTION = "oh no\n妈 咪 何 意 味 ?!\n\n  今天 也是 元气 满满 的 一天 ~ 123 |\\ 。";
+
+    /**
+     * short: 单行短文本；caption: 典型表情包文字；long: 长段落（50 段拼接）
+     */
+    @Param({"short", "caption", "long"})
+    public String shape;
+
+    private String raw;
+    private String normalized;
+    private final TextSanitizer sanitizer = new TextSanitizer();
+
+    @Setup
+    public void setUp() {
+        raw = switch (shape) {
+            case "short" -> "oh no 妈咪";
+            case "long" -> CAPTION.repeat(50);
+            default -> CAPTION;
+        };
+        normalized = TextSanitizer.normalize(raw);
+    }
+
+    @Benchmark
+    public void sanitize(Blackhole blackhole) {
+        sanitizer.sanitize(raw);
+        blackhole.consume(sanitizer.normalized());
+        blackhole.consume(sanitizer.filtered());
+    }
+
+    @Benchmark
+    public String normalize() {
+        return TextSanitizer.normalize(raw);
+    }
+
+    @Benchmark
+    public String cleanInvalidChars() {
+        return FileRenamer.cleanInvalidChars(normalized);
+    }
+}
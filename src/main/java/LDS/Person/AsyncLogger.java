@@ -0,0 +1,196 @@
+package LDS.Person;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * 异步分级日志
+ * 识别和重命名过程中的输出先写入固定容量的环形缓冲区，由后台线程批量写到控制台，
+ * 调用方只做一次 CAS 和数组写入，不会因为控制台输出慢而阻塞。
+ *
+ * - DEBUG: 每个文件的完整识别详情，仅在 ocr.enable.verbose=true 时输出
+ * - INFO : 进度等常规信息，输出到 System.out
+ * - WARN / ERROR : 跳过、失败等需要注意的信息，输出到 System.err
+ *
+ * 缓冲区满时丢弃新的日志并计数，不等待；缓冲区的最后四分之一只留给 WARN 和 ERROR。
+ * 需要与 System.out 的直接输出保持先后顺序时（例如输出最终统计之前）先调用 flush()
+ */
+public class AsyncLogger {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    private static final int CAPACITY = 8192;
+    // 低于 WARN 的日志不能占用的容量
+    private static final int WARN_RESERVE = CAPACITY / 4;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FLUSH_TIMEOUT_MS = 5000;
+
+    private static final AsyncLogger INSTANCE =
+            new AsyncLogger(OcrConfig.isEnableVerbose() ? Level.DEBUG : Level.INFO);
+
+    private final Level threshold;
+    private final AtomicReferenceArray<Entry> slots = new AtomicReferenceArray<>(CAPACITY);
+    // 下一个待写入的位置（生产者竞争）
+    private final AtomicLong tail = new AtomicLong();
+    // 下一个待输出的位置（仅由输出线程修改）
+    private volatile long head = 0;
+    // 已写到控制台的位置
+    private volatile long written = 0;
+    private volatile boolean sleeping = false;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writer;
+
+    /**
+     * 一条日志
+     */
+    private static class Entry {
+        final Level level;
+        final String message;
+
+        Entry(Level level, String message) {
+            this.level = level;
+            this.message = message;
+        }
+    }
+
+    private AsyncLogger(Level threshold) {
+        this.threshold = threshold;
+        this.writer = new Thread(this::writeLoop, "async-logger");
+        writer.setDaemon(true);
+        writer.start();
+        // 进程退出（包括 Ctrl+C）前尽量输出缓冲区中的日志
+        Runtime.getRuntime().addShutdownHook(new Thread(this::awaitEmpty, "async-logger-flush"));
+    }
+
+    /**
+     * @return 是否输出 DEBUG 日志（ocr.enable.verbose=true）
+     */
+    public static boolean isDebugEnabled() {
+        return INSTANCE.threshold == Level.DEBUG;
+    }
+
+    /**
+     * 输出详细日志；未启用详细日志时不会调用 message 构造字符串
+     *
+     * @param message 日志内容
+     */
+    public static void debug(Supplier<String> message) {
+        if (isDebugEnabled()) {
+            INSTANCE.enqueue(Level.DEBUG, message.get());
+        }
+    }
+
+    public static void info(String message) {
+        INSTANCE.enqueue(Level.INFO, message);
+    }
+
+    public static void warn(String message) {
+        INSTANCE.enqueue(Level.WARN, message);
+    }
+
+    public static void error(String message) {
+        INSTANCE.enqueue(Level.ERROR, message);
+    }
+
+    /**
+     * 等待缓冲区中的日志全部输出（最多等待几秒，不会永久阻塞）
+     */
+    public static void flush() {
+        INSTANCE.awaitEmpty();
+    }
+
+    /**
+     * @return 因缓冲区已满而丢弃的日志条数
+     */
+    public static long getDroppedCount() {
+        return INSTANCE.dropped.get();
+    }
+
+    private void enqueue(Level level, String message) {
+        if (level.compareTo(threshold) < 0) {
+            return;
+        }
+        int limit = level.compareTo(Level.WARN) >= 0 ? CAPACITY : CAPACITY - WARN_RESERVE;
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= limit) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!tail.compareAndSet(position, position + 1));
+        slots.set((int) (position % CAPACITY), new Entry(level, message));
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * 输出线程：每次取出缓冲区中已有的全部日志，合并后一次写出
+     */
+    private void writeLoop() {
+        StringBuilder out = new StringBuilder();
+        StringBuilder err = new StringBuilder();
+        long reportedDrops = 0;
+        while (true) {
+            long end = tail.get();
+            if (head == end) {
+                sleeping = true;
+                if (head == tail.get()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            while (head < end) {
+                int index = (int) (head % CAPACITY);
+                Entry entry = slots.get(index);
+                if (entry == null) {
+                    // 生产者已占位但尚未写入
+                    Thread.onSpinWait();
+                    continue;
+                }
+                slots.set(index, null);
+                // 先切换输出流时把另一个流的内容写出，保持 System.out 与 System.err 之间的先后顺序
+                if (entry.level.compareTo(Level.WARN) >= 0) {
+                    write(System.out, out);
+                    err.append(entry.message).append(System.lineSeparator());
+                } else {
+                    write(System.err, err);
+                    out.append(entry.message).append(System.lineSeparator());
+                }
+                head = head + 1;
+            }
+            write(System.out, out);
+            write(System.err, err);
+            written = end;
+            long drops = dropped.get();
+            if (drops > reportedDrops) {
+                System.err.println("警告: 日志输出跟不上，已丢弃 " + (drops - reportedDrops) + " 条日志");
+                reportedDrops = drops;
+            }
+        }
+    }
+
+    private static void write(PrintStream stream, StringBuilder buffer) {
+        if (buffer.length() > 0) {
+            stream.print(buffer);
+            stream.flush();
+            buffer.setLength(0);
+        }
+    }
+
+    private void awaitEmpty() {
+        long end = tail.get();
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MS;
+        LockSupport.unpark(writer);
+        while (written < end && System.currentTimeMillis() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+}
@@ -0,0 +1,954 @@
+package LDS.Person;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 识别文字的全文索引
+ * 重命名成功后把识别文字（规范化后、过滤前，保留标点）记入索引，之后可以用 CaptionSearch 按文字查找图片。
+ * 中文没有空格分词，索引项是字符的单字和相邻两字 (n-gram)，查询时把查询文字拆成相邻两字逐个查找倒排表。
+ *
+ * 索引目录 (.ocr-cache/caption-index) 中的文件:
+ * - pending.tsv       新加入、尚未写入段的记录，每条立即追加写入，进程中断后重新打开时恢复
+ * - segment-NNNNNN.idx 不可变的段文件，记录攒够 ocr.index.segment.size 条或关闭索引时写出
+ *
+ * 段文件写完后才改名为正式文件名，增量更新只写新段，不重写已有段；同一路径以最新的段为准。
+ * 段按文件大小分层（每层是上一层的 4 倍），每写出一个段后检查：最新的同层段攒够 4 个时合并为一个段，
+ * 合并结果进入更高一层，可能继续与该层的段合并（逐项归并，不需要把整个索引读入内存）。
+ * 每条记录只在每层被重写一次，总写入量随索引大小近似线性增长，段数保持在层数的常数倍。
+ * 查询时段文件按内存映射读取，二分查找索引项
+ *
+ * 写入（add/close）线程安全，查询 (search) 只读取磁盘上的文件，可以在另一个进程中运行
+ */
+public class CaptionIndex implements AutoCloseable {
+    private static final String CACHE_DIR = ".ocr-cache";
+    public static final String INDEX_DIR = "caption-index";
+    private static final String PENDING_FILE = "pending.tsv";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d{6,})\\.idx");
+
+    private static final int MAGIC = 0x4C445349;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+    // 最新的同层段达到该数量时合并，也是相邻两层的段大小之比
+    private static final int MERGE_FACTOR = 4;
+    // 不超过该大小的段都属于最低一层（关闭索引时写出的零散小段也能与常规段一起合并）
+    private static final long TIER_BASE_BYTES = 1L << 20;
+    // 单个段文件的大小上限（内存映射限制在 2GB 以内）
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    // 查询文字的两字组至少命中该比例的图片才作为结果（容忍少量识别错字）
+    private static final double MIN_COVERAGE = 0.6;
+    // 每个段最多取出的候选数（按命中数排序后读取原文、确认文件存在并计算得分）
+    private static final int MIN_CANDIDATES = 200;
+
+    private static final long BIGRAM_FLAG = 1L << 42;
+
+    private final Path dir;
+    private final int segmentSize;
+    // 尚未写入段的记录（路径 -> 文字），同一路径只保留最后一次
+    private final Map<String, String> buffer = new LinkedHashMap<>();
+    private BufferedWriter pendingWriter;
+    private long nextGeneration;
+    private int addedCount = 0;
+    private int mergeCount = 0;
+
+    /**
+     * 一条查询结果
+     */
+    public static class Hit {
+        private final String path;
+        private final String text;
+        private final double score;
+
+        Hit(String path, String text, double score) {
+            this.path = path;
+            this.text = text;
+            this.score = score;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @return 识别文字
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return 得分，越大越相关
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 打开（或创建）索引目录，恢复上次未写入段的记录
+     *
+     * @param dir         索引目录
+     * @param segmentSize 每个段的记录数
+     * @throws IOException 无法创建目录或读取文件
+     */
+    public CaptionIndex(Path dir, int segmentSize) throws IOException {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(dir);
+        Path pendingFile = dir.resolve(PENDING_FILE);
+        buffer.putAll(readPending(pendingFile));
+        List<SegmentFile> segments = listSegments(dir);
+        this.nextGeneration = segments.isEmpty() ? 1 : segments.get(segments.size() - 1).generation + 1;
+        this.pendingWriter = Files.newBufferedWriter(pendingFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 根据配置文件打开状态目录下的索引
+     *
+     * @param stateRoot 状态目录（项目根目录或分片状态目录）
+     * @return 索引实例，未启用或无法打开时返回 null
+     */
+    public static CaptionIndex openFromConfig(String stateRoot) {
+        if (!OcrConfig.isIndexEnabled()) {
+            return null;
+        }
+        try {
+            return new CaptionIndex(dirFor(Paths.get(stateRoot)), OcrConfig.getIndexSegmentSize());
+        } catch (IOException e) {
+            System.err.println("警告: 无法打开文字索引，本次运行不记录识别文字: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @param stateRoot 状态目录
+     * @return 状态目录下的索引目录
+     */
+    public static Path dirFor(Path stateRoot) {
+        return stateRoot.resolve(CACHE_DIR).resolve(INDEX_DIR);
+    }
+
+    /**
+     * 记录一张图片的识别文字，记录数达到段大小时写出新段
+     *
+     * @param file 图片文件（重命名后的路径）
+     * @param text 识别文字
+     */
+    public synchronized void add(File file, String text) {
+        String path = file.getAbsolutePath().replace('\t', ' ');
+        String value = text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        if (value.isEmpty()) {
+            return;
+        }
+        buffer.remove(path);
+        buffer.put(path, value);
+        addedCount++;
+        try {
+            pendingWriter.write(path + FIELD_SEPARATOR + value);
+            pendingWriter.newLine();
+            pendingWriter.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入文字索引失败: " + e.getMessage());
+        }
+        if (buffer.size() >= segmentSize) {
+            writeBuffer();
+            // 监听模式下进程可能长期不关闭，每写出一个段就检查是否需要合并
+            mergeQuietly();
+        }
+    }
+
+    /**
+     * 把缓冲的记录写成新段并清空 pending.tsv
+     */
+    private void writeBuffer() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try {
+            writeSegment(dir.resolve(segmentName(nextGeneration)), buffer);
+            nextGeneration++;
+            buffer.clear();
+            pendingWriter.close();
+            pendingWriter = Files.newBufferedWriter(dir.resolve(PENDING_FILE), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            // 记录仍在 pending.tsv 中，下次打开时恢复
+            AsyncLogger.warn("警告: 写出文字索引段失败: " + e.getMessage());
+        }
+    }
+
+    private void mergeSegments() throws IOException {
+        while (mergeNewestTier()) {
+            mergeCount++;
+        }
+    }
+
+    private void mergeQuietly() {
+        try {
+            mergeSegments();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 合并文字索引段失败（不影响查询）: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 最新的同层段攒够 MERGE_FACTOR 个时合并为一个段
+     * 从最新的段向前取连续的、不高于最新段所在层的段（夹在中间的更低层小段一并合并），
+     * 只合并连续的最新段，合并后的段仍然比未参与合并的段新，同一路径的新旧关系不变
+     *
+     * @return true 表示进行了一次合并
+     */
+    private boolean mergeNewestTier() throws IOException {
+        List<SegmentFile> files = listSegments(dir);
+        if (files.size() < MERGE_FACTOR) {
+            return false;
+        }
+        int last = files.size() - 1;
+        int tier = tier(Files.size(files.get(last).path));
+        int first = last;
+        long totalBytes = Files.size(files.get(last).path);
+        while (first > 0) {
+            long size = Files.size(files.get(first - 1).path);
+            if (tier(size) > tier) {
+                break;
+            }
+            first--;
+            totalBytes += size;
+        }
+        if (last - first + 1 < MERGE_FACTOR) {
+            return false;
+        }
+        // 太大的旧段不参与合并
+        while (totalBytes > MAX_SEGMENT_BYTES && first < last) {
+            totalBytes -= Files.size(files.get(first).path);
+            first++;
+        }
+        if (last - first + 1 < 2) {
+            return false;
+        }
+        List<Segment> segments = new ArrayList<>();
+        for (int i = first; i <= last; i++) {
+            segments.add(Segment.open(files.get(i).path));
+        }
+        merge(segments, dir.resolve(segmentName(nextGeneration)));
+        nextGeneration++;
+        // 新段已经生效，旧段中的记录都被它覆盖，删除失败（例如 Windows 下仍被映射）也不影响查询结果
+        for (int i = first; i <= last; i++) {
+            try {
+                Files.deleteIfExists(files.get(i).path);
+            } catch (IOException e) {
+                System.err.println("警告: 无法删除已合并的索引段: " + files.get(i).path);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 段所在的层：不超过 TIER_BASE_BYTES 为第 0 层，之后每层的大小上限是上一层的 MERGE_FACTOR 倍
+     */
+    private static int tier(long bytes) {
+        int tier = 0;
+        for (long limit = TIER_BASE_BYTES; bytes > limit && limit <= Long.MAX_VALUE / MERGE_FACTOR; limit *= MERGE_FACTOR) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * @return 本次运行加入索引的记录数
+     */
+    public synchronized int getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * @return 本次运行合并段的次数
+     */
+    public synchronized int getMergeCount() {
+        return mergeCount;
+    }
+
+    /**
+     * @return 磁盘上的段数
+     */
+    public int getSegmentCount() {
+        try {
+            return listSegments(dir).size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * 写出剩余记录，必要时合并段（关闭时写出的小段与最低一层的段一起合并）
+     */
+    @Override
+    public synchronized void close() {
+        writeBuffer();
+        try {
+            pendingWriter.close();
+        } catch (IOException e) {
+            System.err.println("警告: 关闭文字索引失败: " + e.getMessage());
+        }
+        try {
+            mergeSegments();
+        } catch (IOException e) {
+            System.err.println("警告: 合并文字索引段失败（不影响查询）: " + e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- 查询
+
+    /**
+     * 在若干索引目录中查询包含指定文字的图片
+     * 文字完整出现的排在前面，其次按命中的两字组比例、文字长度（越短越贴切）排序。
+     * 已经不存在的文件不会出现在结果中
+     *
+     * @param indexDirs 索引目录（项目根目录和各分片的索引）
+     * @param query     查询文字
+     * @param limit     最多返回的结果数
+     * @return 按得分从高到低排列的结果
+     * @throws IOException 读取索引失败
+     */
+    public static List<Hit> search(List<Path> indexDirs, String query, int limit) throws IOException {
+        String queryKey = key(query);
+        List<Hit> hits = new ArrayList<>();
+        if (queryKey.isEmpty() || limit <= 0) {
+            return hits;
+        }
+        long[] queryGrams = grams(queryKey, queryKey.codePointCount(0, queryKey.length()) == 1);
+        for (Path indexDir : indexDirs) {
+            if (Files.isDirectory(indexDir)) {
+                searchDir(indexDir, queryKey, queryGrams, limit, hits);
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::getScore).reversed().thenComparing(Hit::getPath));
+        // 同一路径可能出现在多个分片的索引中，只保留得分最高的一条
+        List<Hit> results = new ArrayList<>();
+        Map<String, Boolean> seen = new HashMap<>();
+        for (Hit hit : hits) {
+            if (results.size() >= limit) {
+                break;
+            }
+            if (seen.put(hit.path, Boolean.TRUE) == null) {
+                results.add(hit);
+            }
+        }
+        return results;
+    }
+
+    private static void searchDir(Path indexDir, String queryKey, long[] queryGrams, int limit, List<Hit> hits)
+            throws IOException {
+        int minMatches = (int) Math.max(1, Math.ceil(queryGrams.length * MIN_COVERAGE));
+        int maxCandidates = Math.max(MIN_CANDIDATES, limit * 10);
+        Map<String, String> pending = readPending(indexDir.resolve(PENDING_FILE));
+        List<Segment> segments = new ArrayList<>();
+        for (SegmentFile file : listSegments(indexDir)) {
+            try {
+                segments.add(Segment.open(file.path));
+            } catch (IOException e) {
+                System.err.println("警告: 跳过无法读取的索引段 " + file.path.getFileName() + ": " + e.getMessage());
+            }
+        }
+
+        // 尚未写入段的记录最新，逐条比较即可（数量不超过一个段）
+        for (Map.Entry<String, String> entry : pending.entrySet()) {
+            long[] docGrams = grams(key(entry.getValue()), true);
+            int matches = 0;
+            for (long gram : queryGrams) {
+                if (Arrays.binarySearch(docGrams, gram) >= 0) {
+                    matches++;
+                }
+            }
+            if (matches >= minMatches && new File(entry.getKey()).exists()) {
+                hits.add(score(entry.getKey(), entry.getValue(), queryKey, matches, queryGrams.length));
+            }
+        }
+
+        for (int s = 0; s < segments.size(); s++) {
+            Segment segment = segments.get(s);
+            int[] counts = new int[segment.docCount];
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            for (long gram : queryGrams) {
+                int term = segment.findTerm(gram);
+                if (term < 0) {
+                    continue;
+                }
+                PostingReader postings = segment.postings(term);
+                while (postings.hasNext()) {
+                    int doc = postings.next();
+                    if (counts[doc]++ == 0) {
+                        if (touchedCount == touched.length) {
+                            touched = Arrays.copyOf(touched, touchedCount * 2);
+                        }
+                        touched[touchedCount++] = doc;
+                    }
+                }
+            }
+            // 先按命中数挑出候选，只读取候选的原文
+            List<int[]> candidates = new ArrayList<>();
+            for (int i = 0; i < touchedCount; i++) {
+                int doc = touched[i];
+                if (counts[doc] >= minMatches) {
+                    candidates.add(new int[]{doc, counts[doc]});
+                }
+            }
+            candidates.sort((a, b) -> b[1] != a[1] ? Integer.compare(b[1], a[1]) : Integer.compare(a[0], b[0]));
+            int taken = 0;
+            for (int[] candidate : candidates) {
+                if (taken >= maxCandidates) {
+                    break;
+                }
+                String path = segment.path(candidate[0]);
+                if (pending.containsKey(path) || supersededAfter(segments, s, path) || !new File(path).exists()) {
+                    continue;
+                }
+                hits.add(score(path, segment.text(candidate[0]), queryKey, candidate[1], queryGrams.length));
+                taken++;
+            }
+        }
+    }
+
+    private static boolean supersededAfter(List<Segment> segments, int index, String path) {
+        for (int i = index + 1; i < segments.size(); i++) {
+            if (segments.get(i).findPath(path) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Hit score(String path, String text, String queryKey, int matches, int gramCount) {
+        String textKey = key(text);
+        double score = (double) matches / gramCount;
+        if (textKey.contains(queryKey)) {
+            score += 1;
+        }
+        score += 0.5 * queryKey.length() / Math.max(queryKey.length(), textKey.length());
+        return new Hit(path, text, score);
+    }
+
+    // ---------------------------------------------------------------- 索引项
+
+    /**
+     * 查询和索引共用的比较形式：只保留中文、字母、数字，字母转为小写
+     */
+    private static String key(String text) {
+        return TextSanitizer.clean(text).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 拆分索引项：相邻两字，以及（需要时）单字，按数值排序去重
+     * 字符按码点编码在一个 long 中: 单字为码点本身，两字组为 标志位 | 前一字 << 21 | 后一字
+     */
+    private static long[] grams(String key, boolean unigrams) {
+        int[] codePoints = key.codePoints().toArray();
+        long[] grams = new long[codePoints.length * 2];
+        int count = 0;
+        for (int i = 0; i < codePoints.length; i++) {
+            if (unigrams) {
+                grams[count++] = codePoints[i];
+            }
+            if (i + 1 < codePoints.length) {
+                grams[count++] = BIGRAM_FLAG | ((long) codePoints[i] << 21) | codePoints[i + 1];
+            }
+        }
+        long[] sorted = Arrays.copyOf(grams, count);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    private static long pathHash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // ---------------------------------------------------------------- 文件
+
+    private static class SegmentFile {
+        final Path path;
+        final long generation;
+
+        SegmentFile(Path path, long generation) {
+            this.path = path;
+            this.generation = generation;
+        }
+    }
+
+    private static String segmentName(long generation) {
+        return String.format("segment-%06d.idx", generation);
+    }
+
+    /**
+     * @return 目录中的段文件，从旧到新排列
+     */
+    private static List<SegmentFile> listSegments(Path dir) throws IOException {
+        List<SegmentFile> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                Matcher matcher = SEGMENT_FILE.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.add(new SegmentFile(path, Long.parseLong(matcher.group(1))));
+                }
+            }
+        }
+        files.sort(Comparator.comparingLong(file -> file.generation));
+        return files;
+    }
+
+    private static Map<String, String> readPending(Path pendingFile) throws IOException {
+        Map<String, String> records = new LinkedHashMap<>();
+        if (!Files.exists(pendingFile)) {
+            return records;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(pendingFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(FIELD_SEPARATOR);
+                // 忽略损坏的行（例如进程中断时写了一半）
+                if (separator <= 0 || separator == line.length() - 1) {
+                    continue;
+                }
+                String path = line.substring(0, separator);
+                records.remove(path);
+                records.put(path, line.substring(separator + 1));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * 把内存中的记录写成一个段
+     */
+    private static void writeSegment(Path target, Map<String, String> records) throws IOException {
+        Map<Long, IdList> postings = new HashMap<>();
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            for (Map.Entry<String, String> record : records.entrySet()) {
+                int doc = writer.addDocument(record.getKey(), record.getValue());
+                for (long gram : grams(key(record.getValue()), true)) {
+                    postings.computeIfAbsent(gram, k -> new IdList()).add(doc);
+                }
+            }
+            long[] terms = new long[postings.size()];
+            int i = 0;
+            for (Long term : postings.keySet()) {
+                terms[i++] = term;
+            }
+            Arrays.sort(terms);
+            for (long term : terms) {
+                IdList ids = postings.get(term);
+                writer.addTerm(term, ids.ids, ids.size);
+            }
+            writer.commit();
+        }
+    }
+
+    /**
+     * 合并若干连续的段（从旧到新），同一路径只保留最新的记录
+     * 索引项在各段中已经有序，逐项归并倒排表
+     */
+    private static void merge(List<Segment> segments, Path target) throws IOException {
+        int[][] remap = new int[segments.size()][];
+        try (SegmentWriter writer = new SegmentWriter(target)) {
+            for (int s = 0; s < segments.size(); s++) {
+                Segment segment = segments.get(s);
+                remap[s] = new int[segment.docCount];
+                for (int doc = 0; doc < segment.docCount; doc++) {
+                    String path = segment.path(doc);
+                    remap[s][doc] = supersededAfter(segments, s, path)
+                            ? -1 : writer.addDocument(path, segment.text(doc));
+                }
+            }
+            int[] cursors = new int[segments.size()];
+            IdList ids = new IdList();
+            while (true) {
+                long term = Long.MAX_VALUE;
+                boolean found = false;
+                for (int s = 0; s < segments.size(); s++) {
+                    if (cursors[s] < segments.get(s).termCount) {
+                        long candidate = segments.get(s).term(cursors[s]);
+                        if (!found || candidate < term) {
+                            term = candidate;
+                            found = true;
+                        }
+                    }
+                }
+                if (!found) {
+                    break;
+                }
+                ids.size = 0;
+                for (int s = 0; s < segments.size(); s++) {
+                    Segment segment = segments.get(s);
+                    if (cursors[s] < segment.termCount && segment.term(cursors[s]) == term) {
+                        PostingReader postings = segment.postings(cursors[s]);
+                        while (postings.hasNext()) {
+                            int doc = remap[s][postings.next()];
+                            if (doc >= 0) {
+                                ids.add(doc);
+                            }
+                        }
+                        cursors[s]++;
+                    }
+                }
+                if (ids.size > 0) {
+                    writer.addTerm(term, ids.ids, ids.size);
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static class IdList {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * 段文件写入
+     * 倒排表和文档先写入临时文件，commit() 时拼接出完整的段（文件头、索引项、倒排表、文档、路径表），
+     * 写完并刷到磁盘后改名为正式文件名。
+     *
+     * 段文件格式（大端序）:
+     * - 文件头: MAGIC, VERSION, 文档数, 索引项数, 倒排表起点, 文档偏移起点, 文档起点, 路径表起点
+     * - 索引项 long[索引项数]（升序），倒排表偏移 long[索引项数 + 1]
+     * - 倒排表: 每项为文档编号的差值，变长整数编码
+     * - 文档偏移 long[文档数 + 1]，文档: 变长长度 + UTF-8 路径，变长长度 + UTF-8 文字
+     * - 路径表: 路径哈希 long[文档数]（升序）及对应的文档编号 int[文档数]
+     */
+    private static class SegmentWriter implements AutoCloseable {
+        private final Path target;
+        private final Path postingsFile;
+        private final Path docsFile;
+        private final Path segmentFile;
+        private final DataOutputStream postings;
+        private final DataOutputStream docs;
+        private long[] terms = new long[1024];
+        private long[] postingOffsets = new long[1025];
+        private int termCount = 0;
+        private long[] docOffsets = new long[1025];
+        private long[] pathHashes = new long[1024];
+        private int docCount = 0;
+        private long postingBytes = 0;
+        private long docBytes = 0;
+        private boolean committed = false;
+
+        SegmentWriter(Path target) throws IOException {
+            this.target = target;
+            this.postingsFile = target.resolveSibling(target.getFileName() + ".postings.tmp");
+            this.docsFile = target.resolveSibling(target.getFileName() + ".docs.tmp");
+            this.segmentFile = target.resolveSibling(target.getFileName() + ".tmp");
+            this.postings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(postingsFile)));
+            this.docs = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(docsFile)));
+        }
+
+        int addDocument(String path, String text) throws IOException {
+            if (docCount + 1 == docOffsets.length) {
+                docOffsets = Arrays.copyOf(docOffsets, docCount * 2 + 1);
+                pathHashes = Arrays.copyOf(pathHashes, docCount * 2);
+            }
+            docOffsets[docCount] = docBytes;
+            pathHashes[docCount] = pathHash(path);
+            docBytes += writeString(docs, path);
+            docBytes += writeString(docs, text);
+            return docCount++;
+        }
+
+        void addTerm(long term, int[] ids, int count) throws IOException {
+            if (termCount + 1 == postingOffsets.length) {
+                terms = Arrays.copyOf(terms, termCount * 2);
+                postingOffsets = Arrays.copyOf(postingOffsets, termCount * 2 + 1);
+            }
+            terms[termCount] = term;
+            postingOffsets[termCount] = postingBytes;
+            int previous = 0;
+            for (int i = 0; i < count; i++) {
+                postingBytes += writeVarInt(postings, ids[i] - previous);
+                previous = ids[i];
+            }
+            termCount++;
+        }
+
+        void commit() throws IOException {
+            postings.close();
+            docs.close();
+            postingOffsets[termCount] = postingBytes;
+            docOffsets[docCount] = docBytes;
+
+            long postingsStart = HEADER_BYTES + 8L * termCount + 8L * (termCount + 1);
+            long docOffsetsStart = postingsStart + postingBytes;
+            long docsStart = docOffsetsStart + 8L * (docCount + 1);
+            long pathTableStart = docsStart + docBytes;
+            if (pathTableStart + 12L * docCount > Integer.MAX_VALUE) {
+                throw new IOException("索引段过大: " + target.getFileName());
+            }
+
+            // 路径表按哈希排序
+            Integer[] byHash = new Integer[docCount];
+            for (int i = 0; i < docCount; i++) {
+                byHash[i] = i;
+            }
+            Arrays.sort(byHash, Comparator.comparingLong((Integer doc) -> pathHashes[doc]).thenComparingInt(doc -> doc));
+
+            try (FileOutputStream file = new FileOutputStream(segmentFile.toFile());
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(docCount);
+                out.writeInt(termCount);
+                out.writeLong(postingsStart);
+                out.writeLong(docOffsetsStart);
+                out.writeLong(docsStart);
+                out.writeLong(pathTableStart);
+                for (int i = 0; i < termCount; i++) {
+                    out.writeLong(terms[i]);
+                }
+                for (int i = 0; i <= termCount; i++) {
+                    out.writeLong(postingsStart + postingOffsets[i]);
+                }
+                Files.copy(postingsFile, out);
+                for (int i = 0; i <= docCount; i++) {
+                    out.writeLong(docsStart + docOffsets[i]);
+                }
+                Files.copy(docsFile, out);
+                for (Integer doc : byHash) {
+                    out.writeLong(pathHashes[doc]);
+                }
+                for (Integer doc : byHash) {
+                    out.writeInt(doc);
+                }
+                out.flush();
+                file.getChannel().force(true);
+            }
+            Files.move(segmentFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            postings.close();
+            docs.close();
+            Files.deleteIfExists(postingsFile);
+            Files.deleteIfExists(docsFile);
+            if (!committed) {
+                Files.deleteIfExists(segmentFile);
+            }
+        }
+
+        private static int writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            int length = writeVarInt(out, bytes.length);
+            out.write(bytes);
+            return length + bytes.length;
+        }
+
+        private static int writeVarInt(OutputStream out, int value) throws IOException {
+            int length = 1;
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+                length++;
+            }
+            out.write(value);
+            return length;
+        }
+    }
+
+    /**
+     * 只读的段，按内存映射访问
+     */
+    private static class Segment {
+        final int docCount;
+        final int termCount;
+        private final MappedByteBuffer buffer;
+        private final int docOffsetsStart;
+        private final int pathTableStart;
+
+        private Segment(MappedByteBuffer buffer) throws IOException {
+            this.buffer = buffer;
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("不是有效的索引段");
+            }
+            this.docCount = buffer.getInt(8);
+            this.termCount = buffer.getInt(12);
+            this.docOffsetsStart = (int) buffer.getLong(24);
+            this.pathTableStart = (int) buffer.getLong(40);
+            if ((long) pathTableStart + 12L * docCount != buffer.capacity()) {
+                throw new IOException("索引段不完整");
+            }
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("索引段过大");
+                }
+                return new Segment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+
+        long term(int index) {
+            return buffer.getLong(HEADER_BYTES + 8 * index);
+        }
+
+        /**
+         * @return 索引项的序号，不存在时返回 -1
+         */
+        int findTerm(long term) {
+            int low = 0;
+            int high = termCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = term(mid);
+                if (value < term) {
+                    low = mid + 1;
+                } else if (value > term) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+
+        PostingReader postings(int index) {
+            int offsetsStart = HEADER_BYTES + 8 * termCount;
+            int start = (int) buffer.getLong(offsetsStart + 8 * index);
+            int end = (int) buffer.getLong(offsetsStart + 8 * (index + 1));
+            return new PostingReader(buffer, start, end);
+        }
+
+        String path(int doc) {
+            int position = (int) buffer.getLong(docOffsetsStart + 8 * doc);
+            return readString(position, new int[1]);
+        }
+
+        String text(int doc) {
+            int position = (int) buffer.getLong(docOffsetsStart + 8 * doc);
+            int[] next = new int[1];
+            readString(position, next);
+            return readString(next[0], next);
+        }
+
+        /**
+         * @return 路径对应的文档编号，不存在时返回 -1
+         */
+        int findPath(String path) {
+            long hash = pathHash(path);
+            int low = 0;
+            int high = docCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = buffer.getLong(pathTableStart + 8 * mid);
+                if (value < hash) {
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            // low 为第一个哈希不小于目标的位置，哈希相同时逐个比较路径
+            int idsStart = pathTableStart + 8 * docCount;
+            for (int i = low; i < docCount && buffer.getLong(pathTableStart + 8 * i) == hash; i++) {
+                int doc = buffer.getInt(idsStart + 4 * i);
+                if (path(doc).equals(path)) {
+                    return doc;
+                }
+            }
+            return -1;
+        }
+
+        private String readString(int position, int[] next) {
+            int length = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                length |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            byte[] bytes = new byte[length];
+            for (int i = 0; i < length; i++) {
+                bytes[i] = buffer.get(position + i);
+            }
+            next[0] = position + length;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 逐个解码一个倒排表中的文档编号
+     */
+    private static class PostingReader {
+        private final MappedByteBuffer buffer;
+        private int position;
+        private final int end;
+        private int doc = 0;
+
+        PostingReader(MappedByteBuffer buffer, int start, int end) {
+            this.buffer = buffer;
+            this.position = start;
+            this.end = end;
+        }
+
+        boolean hasNext() {
+            return position < end;
+        }
+
+        int next() {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            doc += delta;
+            return doc;
+        }
+    }
+}
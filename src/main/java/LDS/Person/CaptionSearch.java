@@ -0,0 +1,79 @@
+package LDS.Person;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按识别文字搜索图片
+ * 查询项目根目录和各分片状态目录下的文字索引（参见 CaptionIndex），按相关程度输出图片路径
+ *
+ * 用法: 关键词 [--limit N]
+ */
+public class CaptionSearch {
+    private static final int DEFAULT_LIMIT = 20;
+
+    public static void main(String[] args) {
+        StringBuilder query = new StringBuilder();
+        int limit = DEFAULT_LIMIT;
+        for (int i = 0; i < args.length; i++) {
+            if ("--limit".equals(args[i]) && i + 1 < args.length) {
+                try {
+                    limit = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    System.err.println("✗ 结果数格式错误: " + args[i]);
+                    return;
+                }
+            } else {
+                query.append(args[i]);
+            }
+        }
+
+        System.out.println("========================================");
+        System.out.println("    识别文字搜索 - Caption Search");
+        System.out.println("========================================");
+        System.out.println();
+
+        if (query.length() == 0) {
+            System.out.println("用法: mvn compile exec:java@run-search -Dexec.args=\"关键词 [--limit N]\"");
+            return;
+        }
+
+        // 获取项目根目录
+        String projectRoot = System.getProperty("user.dir");
+        List<Path> indexDirs = new ArrayList<>();
+        indexDirs.add(CaptionIndex.dirFor(Paths.get(projectRoot)));
+        try {
+            for (Path stateDir : Shard.listStateDirs(projectRoot)) {
+                indexDirs.add(CaptionIndex.dirFor(stateDir));
+            }
+        } catch (IOException e) {
+            System.err.println("警告: 无法读取分片目录，只搜索项目根目录的索引: " + e.getMessage());
+        }
+
+        long start = System.nanoTime();
+        List<CaptionIndex.Hit> hits;
+        try {
+            hits = CaptionIndex.search(indexDirs, query.toString(), limit);
+        } catch (IOException e) {
+            System.err.println("✗ 读取文字索引失败: " + e.getMessage());
+            return;
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1000000;
+
+        if (hits.isEmpty()) {
+            System.out.println("未找到包含 \"" + query + "\" 的图片 (耗时: " + elapsedMs + "ms)");
+            System.out.println("  文字索引在重命名成功时记录，请确认已运行过 OCR 重命名 (ocr.index.enabled=true)");
+            return;
+        }
+        System.out.println("✓ 找到 " + hits.size() + " 个结果 (耗时: " + elapsedMs + "ms)");
+        System.out.println();
+        for (int i = 0; i < hits.size(); i++) {
+            CaptionIndex.Hit hit = hits.get(i);
+            System.out.println(String.format("%3d. %s", i + 1, hit.getPath()));
+            System.out.println("     " + hit.getText());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package LDS.Person;
+
+import java.io.File;
+
+/**
+ * 识别耗时估计
+ * 调度前只读取图片头部得到宽高（不解码像素），按线性模型估计识别耗时：
+ * 估计耗时(ms) = 基础耗时 + 每百万像素耗时 × 百万像素数 + 每 MB 耗时 × 文件 MB 数，
+ * 读不出宽高时按文件大小粗略换算像素数。OcrWorkerPool 据此优先识别耗时最长的图片。
+ *
+ * 识别完成后记录实际耗时，运行结束时输出估计误差和按本次数据拟合的系数，用于调整配置中的模型参数。
+ * 线程安全
+ */
+public class CostEstimator {
+    // 读不出宽高时按该压缩比例把文件大小换算为像素数（常见 JPEG/PNG 表情包的量级）
+    private static final double FALLBACK_PIXELS_PER_BYTE = 8;
+
+    private final double baseMs;
+    private final double perMegapixelMs;
+    private final double perMegabyteMs;
+
+    // 估计值与实际值的统计，以及用于最小二乘拟合的累加量（特征: 1, 百万像素, MB）
+    private final double[][] normal = new double[3][3];
+    private final double[] target = new double[3];
+    private long samples = 0;
+    private double absoluteErrorSum = 0;
+    private double estimatedSum = 0;
+    private double actualSum = 0;
+    private long headerFailures = 0;
+
+    /**
+     * 一张图片的估计
+     */
+    public static class Estimate {
+        private final double megapixels;
+        private final double megabytes;
+        private final double costMs;
+
+        Estimate(double megapixels, double megabytes, double costMs) {
+            this.megapixels = megapixels;
+            this.megabytes = megabytes;
+            this.costMs = costMs;
+        }
+
+        public double getMegapixels() {
+            return megapixels;
+        }
+
+        /**
+         * @return 估计的识别耗时（毫秒）
+         */
+        public double getCostMs() {
+            return costMs;
+        }
+    }
+
+    /**
+     * 创建耗时估计
+     *
+     * @param baseMs         每张图片的基础耗时（毫秒）
+     * @param perMegapixelMs 每百万像素的耗时（毫秒）
+     * @param perMegabyteMs  每 MB 文件大小的耗时（毫秒）
+     */
+    public CostEstimator(double baseMs, double perMegapixelMs, double perMegabyteMs) {
+        this.baseMs = baseMs;
+        this.perMegapixelMs = perMegapixelMs;
+        this.perMegabyteMs = perMegabyteMs;
+    }
+
+    /**
+     * 根据配置文件创建耗时估计
+     *
+     * @return 耗时估计，配置中未启用调度时返回 null
+     */
+    public static CostEstimator fromConfig() {
+        if (!OcrConfig.isScheduleEnabled()) {
+            return null;
+        }
+        return new CostEstimator(OcrConfig.getScheduleCostBaseMs(), OcrConfig.getScheduleCostPerMegapixelMs(),
+                OcrConfig.getScheduleCostPerMegabyteMs());
+    }
+
+    /**
+     * 估计一张图片的识别耗时（只读取文件头部）
+     *
+     * @param imageFile 图片文件
+     * @return 估计
+     */
+    public Estimate estimate(File imageFile) {
+        long bytes = imageFile.length();
+        long pixels = ImageDecoder.readPixels(imageFile);
+        if (pixels <= 0) {
+            synchronized (this) {
+                headerFailures++;
+            }
+            pixels = (long) (bytes * FALLBACK_PIXELS_PER_BYTE);
+        }
+        double megapixels = pixels / 1e6;
+        double megabytes = bytes / 1048576.0;
+        return new Estimate(megapixels, megabytes, baseMs + perMegapixelMs * megapixels + perMegabyteMs * megabytes);
+    }
+
+    /**
+     * 记录实际识别耗时（缓存命中、近似重复等未实际识别的结果不应记录）
+     *
+     * @param estimate 调度时的估计
+     * @param actualMs 实际耗时（毫秒）
+     */
+    public synchronized void record(Estimate estimate, double actualMs) {
+        double[] features = {1, estimate.megapixels, estimate.megabytes};
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                normal[i][j] += features[i] * features[j];
+            }
+            target[i] += features[i] * actualMs;
+        }
+        samples++;
+        absoluteErrorSum += Math.abs(estimate.costMs - actualMs);
+        estimatedSum += estimate.costMs;
+        actualSum += actualMs;
+    }
+
+    /**
+     * 输出估计误差和按本次实际耗时拟合的模型系数
+     */
+    public synchronized void printReport() {
+        if (samples == 0) {
+            return;
+        }
+        System.out.println("耗时估计: " + samples + " 张，平均估计 " + String.format("%.0f", estimatedSum / samples)
+                + "ms，平均实际 " + String.format("%.0f", actualSum / samples) + "ms，平均绝对误差 "
+                + String.format("%.0f", absoluteErrorSum / samples) + "ms"
+                + (headerFailures > 0 ? "（" + headerFailures + " 张读不出宽高，按文件大小估计）" : ""));
+        double[] fitted = solve(normal, target);
+        if (fitted != null && samples >= 10) {
+            System.out.println("  按本次数据拟合: ocr.schedule.cost.base.ms=" + String.format("%.1f", fitted[0])
+                    + "，ocr.schedule.cost.per.megapixel.ms=" + String.format("%.1f", fitted[1])
+                    + "，ocr.schedule.cost.per.megabyte.ms=" + String.format("%.1f", fitted[2]));
+        }
+    }
+
+    /**
+     * 用克拉默法则解 3 × 3 正规方程，矩阵奇异（例如所有图片尺寸相同）时返回 null
+     */
+    private static double[] solve(double[][] matrix, double[] values) {
+        double determinant = determinant(matrix);
+        if (Math.abs(determinant) < 1e-9) {
+            return null;
+        }
+        double[] solution = new double[3];
+        for (int column = 0; column < 3; column++) {
+            double[][] replaced = new double[3][];
+            for (int row = 0; row < 3; row++) {
+                replaced[row] = matrix[row].clone();
+                replaced[row][column] = values[row];
+            }
+            solution[column] = determinant(replaced) / determinant;
+        }
+        return solution;
+    }
+
+    private static double determinant(double[][] m) {
+        return m[0][0] * (m[1][1] * m[2][2] - m[1][2] * m[2][1])
+                - m[0][1] * (m[1][0] * m[2][2] - m[1][2] * m[2][0])
+                + m[0][2] * (m[1][0] * m[2][1] - m[1][1] * m[2][0]);
+    }
+}
@@ -2,22 +2,21 @@ package LDS.Person;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
  * 文件恢复工具类
- * 用于读取 OldNames.txt 并将 IMG 文件夹中的文件恢复为原始文件名
+ * 用于读取 rename-journal.tsv 并按 "原路径 -> 当前路径" 的映射将文件恢复为原始文件名
+ * 恢复计划的生成和执行见 RestorePlanner
  */
 public class FileRestorer {
-    private static final String OLD_NAMES_FILE = "OldNames.txt";
-    private static final String SEPARATOR = "/";
 
     public static void main(String[] args) {
+        // --dry-run: 只输出恢复计划，不修改文件
+        boolean dryRun = Arrays.asList(args).contains("--dry-run");
+
         System.out.println("========================================");
         System.out.println("    文件名恢复工具 - File Restorer");
         System.out.println("========================================");
@@ -28,186 +27,80 @@ public class FileRestorer {
         System.out.println("项目根目录: " + projectRoot);
         System.out.println();
 
-        // 读取 OldNames.txt 文件
-        String oldNamesPath = projectRoot + File.separator + OLD_NAMES_FILE;
-        List<String> originalFileNames = readOldFileNames(oldNamesPath);
-
-        if (originalFileNames.isEmpty()) {
-            System.out.println("✗ 无法读取原始文件名");
-            System.out.println("  请确保 " + OLD_NAMES_FILE + " 文件存在且不为空");
-            return;
-        }
-
-        System.out.println("✓ 已读取原始文件名列表:");
-        System.out.println("  共 " + originalFileNames.size() + " 个文件");
-        for (int i = 0; i < originalFileNames.size(); i++) {
-            System.out.println("  [" + (i + 1) + "] " + originalFileNames.get(i));
+        // 分片模式的重命名日志需要先合并到项目根目录
+        int unmerged = Shard.unmergedJournals(projectRoot).size();
+        if (unmerged > 0) {
+            System.out.println("⚠ 有 " + unmerged + " 个分片的重命名日志尚未合并，这些文件不会被恢复");
+            System.out.println("  请先运行: mvn compile exec:java@run-main -Dexec.args=\"--merge-shards\"");
+            System.out.println();
         }
-        System.out.println();
-
-        // 扫描 IMG 文件夹中的所有文件
-        String imgFolder = projectRoot + File.separator + "IMG";
-        List<File> currentFiles = scanIMGFolder(imgFolder);
 
-        if (currentFiles.isEmpty()) {
-            System.out.println("✗ IMG 文件夹中没有找到任何文件");
+        // 读取重命名日志
+        String journalPath = projectRoot + File.separator + RenameJournal.JOURNAL_FILE;
+        if (!new File(journalPath).exists()) {
+            System.out.println("✗ 无法读取原始文件名");
+            System.out.println("  请确保 " + RenameJournal.JOURNAL_FILE + " 文件存在");
             return;
         }
 
-        System.out.println("✓ 当前 IMG 文件夹中的文件:");
-        System.out.println("  共 " + currentFiles.size() + " 个文件");
-        for (int i = 0; i < currentFiles.size(); i++) {
-            System.out.println("  [" + (i + 1) + "] " + currentFiles.get(i).getName());
-        }
-        System.out.println();
+        try (RenameJournal journal = new RenameJournal(Paths.get(projectRoot))) {
+            Map<String, String> mappings = journal.mappings();
+            if (mappings.isEmpty()) {
+                System.out.println("✓ 没有需要恢复的文件");
+                return;
+            }
 
-        // 检查数量是否匹配
-        if (currentFiles.size() != originalFileNames.size()) {
-            System.out.println("⚠ 警告: 当前文件数量 (" + currentFiles.size() + 
-                             ") 与原始文件数量 (" + originalFileNames.size() + ") 不匹配");
+            System.out.println("✓ 已读取重命名记录:");
+            System.out.println("  共 " + mappings.size() + " 个文件");
             System.out.println();
-        }
 
-        // 执行文件恢复
-        System.out.println("========================================");
-        System.out.println("       开始恢复文件名...");
-        System.out.println("========================================");
-        System.out.println();
-
-        int successCount = 0;
-        int failCount = 0;
-
-        for (int i = 0; i < currentFiles.size() && i < originalFileNames.size(); i++) {
-            File currentFile = currentFiles.get(i);
-            String originalFileName = originalFileNames.get(i);
-
-            System.out.println("[" + (i + 1) + "/" + currentFiles.size() + "]");
-            System.out.println("  当前文件名: " + currentFile.getName());
-            System.out.println("  目标文件名: " + originalFileName);
-
-            if (restoreFileName(currentFile, originalFileName)) {
-                System.out.println("  ✓ 恢复成功");
-                successCount++;
-            } else {
-                System.out.println("  ✗ 恢复失败");
-                failCount++;
-            }
+            // 先生成完整的恢复计划（处理冲突、依赖链和循环），再按目录并行执行
+            long planStart = System.currentTimeMillis();
+            RestorePlanner.Plan plan = RestorePlanner.plan(journal);
+            System.out.println("✓ 恢复计划已生成 (耗时: " + (System.currentTimeMillis() - planStart) + "ms)");
+            System.out.println("  待恢复: " + plan.getRestoreCount() + " 个文件，涉及 "
+                    + plan.getDirectories().size() + " 个目录");
+            System.out.println("  需要临时文件名打破的循环: " + plan.getCycleCount());
+            System.out.println("  冲突跳过: " + plan.getConflicts().size());
+            System.out.println("  文件不存在: " + plan.getMissing().size());
             System.out.println();
-        }
 
-        // 输出统计信息
-        System.out.println("========================================");
-        System.out.println("       恢复完成");
-        System.out.println("========================================");
-        System.out.println("✓ 成功: " + successCount + " 个文件");
-        System.out.println("✗ 失败: " + failCount + " 个文件");
-        System.out.println();
-    }
-
-    /**
-     * 读取 OldNames.txt 文件并解析原始文件名列表
-     *
-     * @param oldNamesPath OldNames.txt 文件路径
-     * @return 原始文件名列表
-     */
-    private static List<String> readOldFileNames(String oldNamesPath) {
-        List<String> fileNames = new ArrayList<>();
-
-        try {
-            Path path = Paths.get(oldNamesPath);
-            if (!Files.exists(path)) {
-                System.err.println("✗ " + OLD_NAMES_FILE + " 文件不存在: " + oldNamesPath);
-                return fileNames;
-            }
-
-            // 读取文件内容
-            String content = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
-
-            if (content.trim().isEmpty()) {
-                System.err.println("✗ " + OLD_NAMES_FILE + " 文件为空");
-                return fileNames;
-            }
-
-            // 按照 "/" 分割符解析文件名
-            String[] names = content.split(SEPARATOR);
-            for (String name : names) {
-                String trimmedName = name.trim();
-                if (!trimmedName.isEmpty()) {
-                    fileNames.add(trimmedName);
-                }
-            }
-
-        } catch (IOException e) {
-            System.err.println("✗ 读取 " + OLD_NAMES_FILE + " 失败");
-            e.printStackTrace();
-        }
-
-        return fileNames;
-    }
-
-    /**
-     * 扫描 IMG 文件夹中的所有文件
-     *
-     * @param imgFolder IMG 文件夹路径
-     * @return 文件列表
-     */
-    private static List<File> scanIMGFolder(String imgFolder) {
-        List<File> files = new ArrayList<>();
-
-        File directory = new File(imgFolder);
-        if (!directory.exists() || !directory.isDirectory()) {
-            System.err.println("✗ IMG 文件夹不存在: " + imgFolder);
-            return files;
-        }
-
-        File[] fileArray = directory.listFiles();
-        if (fileArray != null) {
-            for (File file : fileArray) {
-                if (file.isFile()) {
-                    files.add(file);
-                }
+            if (dryRun) {
+                System.out.println("========================================");
+                System.out.println("       预演模式: 恢复计划");
+                System.out.println("========================================");
+                RestorePlanner.printPlan(plan);
+                System.out.println();
+                System.out.println("预演模式，未修改任何文件");
+                return;
             }
-        }
 
-        return files;
-    }
-
-    /**
-     * 将文件恢复为原始文件名
-     *
-     * @param currentFile       当前文件
-     * @param originalFileName  原始文件名
-     * @return 是否恢复成功
-     */
-    private static boolean restoreFileName(File currentFile, String originalFileName) {
-        try {
-            File parentDir = currentFile.getParentFile();
-            File newFile = new File(parentDir, originalFileName);
-
-            // 如果目标文件名和当前文件名相同，则不需要重命名
-            if (currentFile.getName().equals(originalFileName)) {
-                System.out.println("  (文件名已相同，无需恢复)");
-                return true;
+            for (String conflict : plan.getConflicts()) {
+                System.out.println("  ⚠ 冲突，跳过: " + conflict);
             }
 
-            // 检查目标文件名是否已经存在（且不是当前文件）
-            if (newFile.exists() && !newFile.getAbsolutePath().equals(currentFile.getAbsolutePath())) {
-                System.err.println("  目标文件名已存在: " + originalFileName);
-                return false;
-            }
+            System.out.println("========================================");
+            System.out.println("       开始恢复文件名...");
+            System.out.println("========================================");
+            System.out.println();
 
-            // 执行重命名
-            if (currentFile.renameTo(newFile)) {
-                return true;
-            } else {
-                System.err.println("  无法重命名文件");
-                return false;
+            long applyStart = System.currentTimeMillis();
+            RestorePlanner.Outcome outcome = RestorePlanner.apply(plan, journal);
+            for (String failure : outcome.getFailures()) {
+                System.err.println("  ✗ " + failure);
             }
 
-        } catch (Exception e) {
-            System.err.println("  恢复失败: " + e.getMessage());
+            // 输出统计信息
+            System.out.println("========================================");
+            System.out.println("       恢复完成 (耗时: " + (System.currentTimeMillis() - applyStart) + "ms)");
+            System.out.println("========================================");
+            System.out.println("✓ 成功: " + outcome.getRestored() + " 个文件");
+            System.out.println("↺ 回滚: " + outcome.getRolledBack() + " 个文件");
+            System.out.println("✗ 跳过: " + (plan.getConflicts().size() + plan.getMissing().size()) + " 个文件");
+            System.out.println();
+        } catch (IOException e) {
+            System.err.println("✗ 读取 " + RenameJournal.JOURNAL_FILE + " 失败");
             e.printStackTrace();
-            return false;
         }
     }
 }
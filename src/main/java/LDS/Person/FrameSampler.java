@@ -0,0 +1,439 @@
+package LDS.Person;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多帧图片（动图 GIF、多页 TIFF）的关键帧采样
+ * 表情包动图的文字往往只出现在部分帧上，只识别第一帧会漏掉文字；逐帧识别又太慢。
+ * 依次解码所有帧（GIF 按位置和处置方式合成完整画面），每帧缩小为 32×32 灰度缩略图，
+ * 与上一个关键帧比较：任意 8×8 区块的平均像素差超过阈值时（例如出现新的字幕）作为新的关键帧，
+ * 几乎不变的帧直接跳过。关键帧超过上限时均匀抽取，一个 200 帧的动图通常只需识别几帧。
+ *
+ * 各帧的识别文本由 merge() 合并：包含关系或高度相似的文本只保留一份，按出现顺序拼接。
+ * 线程安全（统计计数可被多个 OCRService 共享）
+ */
+public class FrameSampler {
+    private static final int SIGNATURE_SIZE = 32;
+    private static final int BLOCK_SIZE = 8;
+    // 最多解码的帧数，防止异常文件耗尽时间
+    private static final int MAX_DECODED_FRAMES = 2000;
+    // 两段文本的编辑距离相似度不低于该值时视为同一句字幕（识别误差）
+    private static final double SIMILAR_TEXT_RATIO = 0.7;
+
+    private final int maxFrames;
+    private final double diffThreshold;
+
+    private final AtomicLong multiFrameCount = new AtomicLong();
+    private final AtomicLong frameCount = new AtomicLong();
+    private final AtomicLong sampledCount = new AtomicLong();
+
+    /**
+     * 创建关键帧采样器
+     *
+     * @param maxFrames     每张图片最多识别的帧数
+     * @param diffThreshold 作为新关键帧的最小区块平均像素差 (0-255)
+     */
+    public FrameSampler(int maxFrames, double diffThreshold) {
+        if (maxFrames < 1) {
+            throw new IllegalArgumentException("最多识别帧数必须大于 0: " + maxFrames);
+        }
+        this.maxFrames = maxFrames;
+        this.diffThreshold = diffThreshold;
+    }
+
+    /**
+     * 根据配置文件创建关键帧采样器
+     *
+     * @return 采样器，配置中未启用时返回 null
+     */
+    public static FrameSampler fromConfig() {
+        if (!OcrConfig.isFramesEnabled()) {
+            return null;
+        }
+        return new FrameSampler(OcrConfig.getFramesMax(), OcrConfig.getFramesDiffThreshold());
+    }
+
+    /**
+     * @param imageFile 图片文件
+     * @return 是否可能包含多帧（GIF、TIFF）
+     */
+    public static boolean isCandidate(File imageFile) {
+        String name = imageFile.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".gif") || name.endsWith(".tif") || name.endsWith(".tiff");
+    }
+
+    /**
+     * 解码所有帧并选出需要识别的关键帧
+     *
+     * @param imageFile 图片文件
+     * @return 按帧顺序排列的关键帧（第一帧总是包含在内）；只有一帧时返回 null，由调用方按普通图片处理
+     * @throws IOException 第一帧无法解码
+     */
+    public List<BufferedImage> sample(File imageFile) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            if (input == null) {
+                throw new IOException("无法读取图片");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("无法解码图片");
+            }
+            ImageReader reader = readers.next();
+            try {
+                // GIF 合成需要每帧的位置和处置方式，不能忽略元数据
+                reader.setInput(input, false, false);
+                return sample(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private List<BufferedImage> sample(ImageReader reader) throws IOException {
+        GifCanvas canvas = "gif".equalsIgnoreCase(reader.getFormatName()) ? new GifCanvas(reader) : null;
+        List<BufferedImage> keyFrames = new ArrayList<>();
+        byte[] keySignature = null;
+        // 关键帧过多时每 stride 个关键帧保留一个，内存中最多保留 2 × maxFrames 帧
+        int stride = 1;
+        int candidates = 0;
+        int frames = 0;
+        for (int index = 0; index < MAX_DECODED_FRAMES; index++) {
+            BufferedImage frame;
+            try {
+                BufferedImage raw = reader.read(index);
+                frame = canvas == null ? raw : canvas.draw(raw, index);
+            } catch (IndexOutOfBoundsException e) {
+                break;
+            } catch (IOException e) {
+                if (index == 0) {
+                    throw e;
+                }
+                // 文件末尾损坏时使用已解码的帧
+                break;
+            }
+            frames++;
+            byte[] signature = signature(frame);
+            if (keySignature != null && difference(signature, keySignature) < diffThreshold) {
+                continue;
+            }
+            keySignature = signature;
+            if (candidates++ % stride != 0) {
+                continue;
+            }
+            // 合成画面会被下一帧修改，保存副本
+            keyFrames.add(copy(frame));
+            if (keyFrames.size() > 2 * maxFrames) {
+                List<BufferedImage> halved = new ArrayList<>(maxFrames + 1);
+                for (int i = 0; i < keyFrames.size(); i += 2) {
+                    halved.add(keyFrames.get(i));
+                }
+                keyFrames = halved;
+                stride *= 2;
+            }
+        }
+        if (frames <= 1) {
+            return null;
+        }
+        List<BufferedImage> sampled = evenlySpaced(keyFrames, maxFrames);
+        multiFrameCount.incrementAndGet();
+        frameCount.addAndGet(frames);
+        sampledCount.addAndGet(sampled.size());
+        return sampled;
+    }
+
+    /**
+     * 从列表中均匀抽取最多 limit 个元素（保留第一个）
+     */
+    private static <T> List<T> evenlySpaced(List<T> items, int limit) {
+        if (items.size() <= limit) {
+            return items;
+        }
+        List<T> picked = new ArrayList<>(limit);
+        for (int i = 0; i < limit; i++) {
+            picked.add(items.get((int) ((long) i * items.size() / limit)));
+        }
+        return picked;
+    }
+
+    /**
+     * 32×32 灰度缩略图（双线性缩小，相当于区域平均）
+     */
+    private static byte[] signature(BufferedImage frame) {
+        BufferedImage thumbnail = new BufferedImage(SIGNATURE_SIZE, SIGNATURE_SIZE, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D graphics = thumbnail.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(frame, 0, 0, SIGNATURE_SIZE, SIGNATURE_SIZE, null);
+        } finally {
+            graphics.dispose();
+        }
+        byte[] pixels = new byte[SIGNATURE_SIZE * SIGNATURE_SIZE];
+        thumbnail.getRaster().getDataElements(0, 0, SIGNATURE_SIZE, SIGNATURE_SIZE, pixels);
+        return pixels;
+    }
+
+    /**
+     * 两个缩略图中变化最大的 8×8 区块的平均像素差
+     * 按区块取最大值而不是整幅平均，画面一角新出现的字幕也能被发现
+     */
+    private static double difference(byte[] a, byte[] b) {
+        int blocks = SIGNATURE_SIZE / BLOCK_SIZE;
+        double max = 0;
+        for (int blockY = 0; blockY < blocks; blockY++) {
+            for (int blockX = 0; blockX < blocks; blockX++) {
+                int sum = 0;
+                for (int y = blockY * BLOCK_SIZE; y < (blockY + 1) * BLOCK_SIZE; y++) {
+                    for (int x = blockX * BLOCK_SIZE; x < (blockX + 1) * BLOCK_SIZE; x++) {
+                        int i = y * SIGNATURE_SIZE + x;
+                        sum += Math.abs((a[i] & 0xFF) - (b[i] & 0xFF));
+                    }
+                }
+                max = Math.max(max, (double) sum / (BLOCK_SIZE * BLOCK_SIZE));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * 复制为白底 RGB 图片（透明区域按白色处理，深色文字在浅色背景上更容易识别）
+     */
+    private static BufferedImage copy(BufferedImage frame) {
+        BufferedImage copy = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = copy.createGraphics();
+        try {
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, frame.getWidth(), frame.getHeight());
+            graphics.drawImage(frame, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return copy;
+    }
+
+    /**
+     * 合并各帧的识别文本：与已保留的文本互相包含或高度相似时只保留较长的一份，其余按帧顺序拼接
+     *
+     * @param frameTexts 各帧识别文本（已规范化），按帧顺序
+     * @return 合并后的文本
+     */
+    public static String merge(List<String> frameTexts) {
+        List<String> kept = new ArrayList<>();
+        for (String text : frameTexts) {
+            if (text.isEmpty()) {
+                continue;
+            }
+            boolean merged = false;
+            for (int i = 0; i < kept.size() && !merged; i++) {
+                String existing = kept.get(i);
+                if (existing.contains(text)) {
+                    merged = true;
+                } else if (text.contains(existing) || similarity(existing, text) >= SIMILAR_TEXT_RATIO) {
+                    if (text.length() > existing.length()) {
+                        kept.set(i, text);
+                    }
+                    merged = true;
+                }
+            }
+            if (!merged) {
+                kept.add(text);
+            }
+        }
+        return String.join("", kept);
+    }
+
+    /**
+     * 编辑距离相似度：1 - 距离 / 较长文本长度（按码点）
+     */
+    private static double similarity(String a, String b) {
+        int[] x = a.codePoints().toArray();
+        int[] y = b.codePoints().toArray();
+        int longer = Math.max(x.length, y.length);
+        if (longer == 0) {
+            return 1;
+        }
+        int[] previous = new int[y.length + 1];
+        int[] current = new int[y.length + 1];
+        for (int j = 0; j <= y.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= x.length; i++) {
+            current[0] = i;
+            for (int j = 1; j <= y.length; j++) {
+                int substitution = previous[j - 1] + (x[i - 1] == y[j - 1] ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1 - (double) previous[y.length] / longer;
+    }
+
+    /**
+     * @return 采样时最多同时保存的画面数（关键帧副本、合成画布和当前帧），用于申请解码内存
+     */
+    public int getBufferedFrames() {
+        return 2 * maxFrames + 3;
+    }
+
+    /**
+     * @return 描述采样参数的字符串（缓存键的一部分）
+     */
+    public String fingerprint() {
+        return "frames" + maxFrames + "d" + String.format(Locale.ROOT, "%.1f", diffThreshold);
+    }
+
+    /**
+     * @return 识别过的多帧图片数
+     */
+    public long getMultiFrameCount() {
+        return multiFrameCount.get();
+    }
+
+    /**
+     * @return 多帧图片的总帧数
+     */
+    public long getFrameCount() {
+        return frameCount.get();
+    }
+
+    /**
+     * @return 实际识别的帧数
+     */
+    public long getSampledCount() {
+        return sampledCount.get();
+    }
+
+    /**
+     * GIF 帧合成：帧可能只覆盖画面的一部分，按位置绘制到逻辑画布上，并在下一帧之前按处置方式恢复
+     */
+    private static class GifCanvas {
+        private static final String IMAGE_FORMAT = "javax_imageio_gif_image_1.0";
+        private static final String STREAM_FORMAT = "javax_imageio_gif_stream_1.0";
+
+        private final ImageReader reader;
+        private BufferedImage canvas;
+        // 上一帧的处置方式、覆盖区域和绘制前的画面（restoreToPrevious）
+        private String disposal;
+        private Rectangle area;
+        private BufferedImage previous;
+
+        GifCanvas(ImageReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * 绘制一帧，返回合成后的完整画面（下一次调用时会被修改）
+         */
+        BufferedImage draw(BufferedImage raw, int index) throws IOException {
+            dispose();
+            Node descriptor = null;
+            Node control = null;
+            IIOMetadata metadata = reader.getImageMetadata(index);
+            if (metadata != null) {
+                for (Node node = metadata.getAsTree(IMAGE_FORMAT).getFirstChild(); node != null;
+                     node = node.getNextSibling()) {
+                    if ("ImageDescriptor".equals(node.getNodeName())) {
+                        descriptor = node;
+                    } else if ("GraphicControlExtension".equals(node.getNodeName())) {
+                        control = node;
+                    }
+                }
+            }
+            int left = intAttribute(descriptor, "imageLeftPosition");
+            int top = intAttribute(descriptor, "imageTopPosition");
+            if (canvas == null) {
+                canvas = createCanvas(raw, left, top);
+            }
+
+            disposal = control == null ? "none" : attribute(control, "disposalMethod");
+            previous = "restoreToPrevious".equals(disposal) ? snapshot() : null;
+            area = new Rectangle(left, top, raw.getWidth(), raw.getHeight());
+            Graphics2D graphics = canvas.createGraphics();
+            try {
+                graphics.drawImage(raw, left, top, null);
+            } finally {
+                graphics.dispose();
+            }
+            return canvas;
+        }
+
+        /**
+         * 按上一帧的处置方式恢复画布
+         */
+        private void dispose() {
+            if ("restoreToBackgroundColor".equals(disposal)) {
+                Graphics2D clear = canvas.createGraphics();
+                try {
+                    clear.setComposite(AlphaComposite.Clear);
+                    clear.fill(area);
+                } finally {
+                    clear.dispose();
+                }
+            } else if (previous != null) {
+                canvas = previous;
+            }
+            disposal = null;
+            previous = null;
+        }
+
+        private BufferedImage createCanvas(BufferedImage first, int left, int top) throws IOException {
+            int width = first.getWidth() + left;
+            int height = first.getHeight() + top;
+            IIOMetadata streamMetadata = reader.getStreamMetadata();
+            if (streamMetadata != null) {
+                for (Node node = streamMetadata.getAsTree(STREAM_FORMAT).getFirstChild(); node != null;
+                     node = node.getNextSibling()) {
+                    if ("LogicalScreenDescriptor".equals(node.getNodeName())) {
+                        width = Math.max(width, intAttribute(node, "logicalScreenWidth"));
+                        height = Math.max(height, intAttribute(node, "logicalScreenHeight"));
+                    }
+                }
+            }
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+
+        private BufferedImage snapshot() {
+            BufferedImage copy = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            copy.setData(canvas.getRaster());
+            return copy;
+        }
+
+        private static int intAttribute(Node node, String name) {
+            String value = attribute(node, name);
+            try {
+                return value == null ? 0 : Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static String attribute(Node node, String name) {
+            if (node == null) {
+                return null;
+            }
+            NamedNodeMap attributes = node.getAttributes();
+            Node attribute = attributes == null ? null : attributes.getNamedItem(name);
+            return attribute == null ? null : attribute.getNodeValue();
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package LDS.Person;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Locale;
+
+/**
+ * 低拷贝的图片解码器
+ * - 文件内容通过 FileChannel 读入可复用的缓冲区（大文件直接内存映射），不经过 ImageIO 的流缓存
+ * - 尺寸和像素格式与上一张相同时，解码结果直接写入上一次的图片（复用像素数组）
+ * - 识别前把像素转换为 8 位灰度写入可复用的直接缓冲区，原生引擎直接读取，
+ *   不再经过 Tess4J 的 ImageIOHelper 为每张图片复制一份堆数组和直接缓冲区
+ * - 先读取头部的宽高：超过像素上限时用 ImageIO 的源降采样（必要时再只读取开头部分）解码，
+ *   并在解码前向共享的像素预算申请内存，识别结束后由调用方 release() 归还
+ *
+ * 不是线程安全的，每个 OCR 引擎持有各自的实例；decode() 返回的图片在下一次 decode() 前有效
+ */
+public class ImageDecoder {
+    // 超过该大小的文件使用内存映射，小文件直接读入复用的缓冲区更快
+    private static final long MAP_THRESHOLD = 256 * 1024;
+
+    private ByteBuffer fileBuffer = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer grayBuffer = ByteBuffer.allocateDirect(0);
+    private BufferedImage destination;
+    private long decodeCount = 0;
+    private long reuseCount = 0;
+
+    // 单张图片解码后的最大像素数
+    private long maxPixels = Long.MAX_VALUE;
+    // 所有解码器共享的像素预算，null 表示不限制
+    private PixelBudget budget;
+    // 当前图片持有的预算许可
+    private int heldPermits = 0;
+
+    /**
+     * 解码图片文件
+     *
+     * @param imageFile 图片文件
+     * @return 解码后的图片（下一次调用前有效）
+     * @throws IOException 文件读取失败或格式无法解码
+     */
+    public BufferedImage decode(File imageFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer content;
+            if (size >= MAP_THRESHOLD) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                content = readFully(channel, (int) size);
+            }
+            return decode(content, !imageFile.getName().toLowerCase(Locale.ROOT).endsWith(".gif"));
+        }
+    }
+
+    private ByteBuffer readFully(FileChannel channel, int size) throws IOException {
+        if (fileBuffer.capacity() < size) {
+            fileBuffer = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+        }
+        fileBuffer.clear().limit(size);
+        while (fileBuffer.hasRemaining()) {
+            if (channel.read(fileBuffer) < 0) {
+                break;
+            }
+        }
+        return fileBuffer.flip();
+    }
+
+    /**
+     * 从内存中的文件内容解码
+     *
+     * @param content      文件内容
+     * @param allowReuse   是否允许复用上一张图片（GIF 帧可能只覆盖部分画面，不复用）
+     */
+    private BufferedImage decode(ByteBuffer content, boolean allowReuse) throws IOException {
+        try (ByteBufferImageInputStream input = new ByteBufferImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("无法解码图片");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                long pixels = limit(param, width, height);
+                if (pixels < (long) width * height) {
+                    allowReuse = false;
+                    if (budget != null) {
+                        budget.recordSubsampled();
+                    }
+                }
+                reserve(pixels);
+                if (allowReuse && canReuse(reader)) {
+                    param.setDestination(destination);
+                    reuseCount++;
+                }
+                BufferedImage image = reader.read(0, param);
+                decodeCount++;
+                destination = image;
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 超过像素上限时设置源降采样：按短边确定降采样倍数，使文字尽量保持可读；
+     * 降采样后仍超过上限（例如极长的截图）时只读取开头（上方或左侧）能放下的部分
+     *
+     * @return 解码后的像素数
+     */
+    private long limit(ImageReadParam param, int width, int height) {
+        if ((long) width * height <= maxPixels) {
+            return (long) width * height;
+        }
+        int shortSide = Math.min(width, height);
+        int factor = (int) Math.max(1, Math.ceil(shortSide / Math.sqrt(maxPixels)));
+        long decodedShort = (shortSide + factor - 1) / factor;
+        long decodedLong = (Math.max(width, height) + factor - 1) / factor;
+        if (factor > 1) {
+            param.setSourceSubsampling(factor, factor, 0, 0);
+        }
+        if (decodedShort * decodedLong > maxPixels) {
+            decodedLong = Math.max(1, maxPixels / decodedShort);
+            int sourceLong = (int) Math.min(Math.max(width, height), decodedLong * factor);
+            param.setSourceRegion(width >= height
+                    ? new Rectangle(0, 0, sourceLong, height)
+                    : new Rectangle(0, 0, width, sourceLong));
+        }
+        return decodedShort * decodedLong;
+    }
+
+    /**
+     * 向像素预算申请当前图片的内存（先归还上一张图片未归还的许可）
+     * decode() 会自动申请；不经过本解码器、由 Tesseract 自行解码的图片由调用方申请
+     *
+     * @param pixels 图片的像素数
+     * @throws IOException 等待时被中断
+     */
+    public void reserve(long pixels) throws IOException {
+        release();
+        if (budget == null) {
+            return;
+        }
+        try {
+            heldPermits = budget.acquire(pixels);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待解码内存时被中断");
+        }
+    }
+
+    /**
+     * 归还当前图片持有的像素预算，识别结束后调用
+     */
+    public void release() {
+        if (budget != null && heldPermits > 0) {
+            budget.release(heldPermits);
+        }
+        heldPermits = 0;
+    }
+
+    /**
+     * 设置解码的内存上限
+     *
+     * @param maxPixels 单张图片解码后的最大像素数
+     * @param budget    所有解码器共享的像素预算，null 表示不限制同时解码的像素
+     */
+    public void setLimits(long maxPixels, PixelBudget budget) {
+        this.maxPixels = maxPixels;
+        this.budget = budget;
+    }
+
+    /**
+     * @return 单张图片解码后的最大像素数
+     */
+    public long getMaxPixels() {
+        return maxPixels;
+    }
+
+    /**
+     * 只读取图片头部得到像素数，不解码像素数据
+     *
+     * @param imageFile 图片文件
+     * @return 宽 × 高，无法读取时返回 -1
+     */
+    public static long readPixels(File imageFile) {
+        try (ImageInputStream input = ImageIO.createImageInputStream(imageFile)) {
+            if (input == null) {
+                return -1;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return -1;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 上一张图片的尺寸和像素格式与本张相同时，可以作为解码目标
+     */
+    private boolean canReuse(ImageReader reader) throws IOException {
+        if (destination == null
+                || reader.getWidth(0) != destination.getWidth()
+                || reader.getHeight(0) != destination.getHeight()) {
+            return false;
+        }
+        ImageTypeSpecifier current = ImageTypeSpecifier.createFromRenderedImage(destination);
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        // 只与默认类型比较：解码器输出的就是这个类型
+        return types.hasNext() && current.equals(types.next());
+    }
+
+    /**
+     * 把图片转换为 8 位灰度，写入复用的直接缓冲区
+     * 透明像素按白色背景合成
+     *
+     * @param image 图片
+     * @return 灰度像素（每行 width 字节，共 height 行），下一次调用前有效
+     */
+    public ByteBuffer toGray(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int size = width * height;
+        if (grayBuffer.capacity() < size) {
+            grayBuffer = ByteBuffer.allocateDirect(Math.max(size, grayBuffer.capacity() * 3 / 2));
+        }
+        grayBuffer.clear();
+
+        switch (image.getType()) {
+            case BufferedImage.TYPE_BYTE_GRAY -> copyGray(image, width, height);
+            case BufferedImage.TYPE_3BYTE_BGR -> convertBytes(image, width, height, 3);
+            case BufferedImage.TYPE_4BYTE_ABGR -> convertBytes(image, width, height, 4);
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB -> convertInts(image, width, height);
+            default -> convertGeneric(image, width, height);
+        }
+        return grayBuffer.flip();
+    }
+
+    private void copyGray(BufferedImage image, int width, int height) {
+        if (image.getRaster().getParent() != null) {
+            // 子图的像素数组与父图共享，按通用方式逐行转换
+            convertGeneric(image, width, height);
+            return;
+        }
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        grayBuffer.put(data, 0, width * height);
+    }
+
+    private void convertBytes(BufferedImage image, int width, int height, int channels) {
+        if (image.getRaster().getParent() != null) {
+            convertGeneric(image, width, height);
+            return;
+        }
+        byte[] data = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        int index = 0;
+        for (int i = 0; i < width * height; i++) {
+            int alpha = 255;
+            if (channels == 4) {
+                alpha = data[index++] & 0xFF;
+            }
+            int b = data[index++] & 0xFF;
+            int g = data[index++] & 0xFF;
+            int r = data[index++] & 0xFF;
+            grayBuffer.put(luma(r, g, b, alpha));
+        }
+    }
+
+    private void convertInts(BufferedImage image, int width, int height) {
+        if (image.getRaster().getParent() != null) {
+            convertGeneric(image, width, height);
+            return;
+        }
+        int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        boolean hasAlpha = image.getType() == BufferedImage.TYPE_INT_ARGB;
+        for (int i = 0; i < width * height; i++) {
+            int argb = data[i];
+            grayBuffer.put(luma((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF,
+                    hasAlpha ? argb >>> 24 : 255));
+        }
+    }
+
+    private void convertGeneric(BufferedImage image, int width, int height) {
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int argb = row[x];
+                grayBuffer.put(luma((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, argb >>> 24));
+            }
+        }
+    }
+
+    /**
+     * ITU-R BT.601 亮度，按 alpha 与白色背景合成
+     */
+    private static byte luma(int r, int g, int b, int alpha) {
+        int luma = (r * 299 + g * 587 + b * 114) / 1000;
+        return (byte) ((luma * alpha + 255 * (255 - alpha)) / 255);
+    }
+
+    /**
+     * @return 解码的图片数
+     */
+    public long getDecodeCount() {
+        return decodeCount;
+    }
+
+    /**
+     * @return 复用上一张图片像素数组的次数
+     */
+    public long getReuseCount() {
+        return reuseCount;
+    }
+
+    /**
+     * 直接读取内存中文件内容的 ImageInputStream
+     * ImageIO.createImageInputStream 会把读到的内容再缓存一份，这里直接按位置读取缓冲区
+     */
+    private static class ByteBufferImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer buffer;
+
+        ByteBufferImageInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (streamPos >= buffer.limit()) {
+                return -1;
+            }
+            bitOffset = 0;
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            int remaining = buffer.limit() - (int) streamPos;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(len, remaining);
+            buffer.get((int) streamPos, b, off, count);
+            streamPos += count;
+            bitOffset = 0;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package LDS.Person;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * 支持的图片格式
+ * 扫描器和 OCR 服务共用同一份扩展名列表，避免两处判断不一致
+ */
+public final class ImageFormats {
+    // 支持的扩展名（小写，不含点）
+    private static final Set<String> SUPPORTED_EXTENSIONS = Set.of("png", "jpg", "jpeg", "bmp", "tif", "tiff", "gif");
+
+    private ImageFormats() {
+    }
+
+    /**
+     * 检查文件是否为支持的图片格式
+     *
+     * @param fileName 文件名或文件路径
+     * @return true 如果是支持的格式
+     */
+    public static boolean isSupported(String fileName) {
+        int lastDotIndex = fileName.lastIndexOf('.');
+        if (lastDotIndex < 0 || lastDotIndex == fileName.length() - 1) {
+            return false;
+        }
+        return SUPPORTED_EXTENSIONS.contains(fileName.substring(lastDotIndex + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return 用于提示信息的格式列表，例如 ".png, .jpg"
+     */
+    public static String describe() {
+        return String.join(", ", SUPPORTED_EXTENSIONS.stream().sorted().map(ext -> "." + ext).toList());
+    }
+}
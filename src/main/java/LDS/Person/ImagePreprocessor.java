@@ -0,0 +1,303 @@
+package LDS.Person;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * 识别前的图片预处理
+ * 依次执行：灰度化（透明区域按白色合成） → 按估计的文字高度有限缩小 → 自适应二值化 → 裁掉空白边框。
+ * 手机截图等大图中文字往往只占很小一部分，预处理后送入 Tesseract 的像素数大幅减少。
+ *
+ * 实例不可变，可以被多个线程共享
+ */
+public class ImagePreprocessor {
+    // 二值化后黑色像素占比低于该值的行视为空白行
+    private static final double INK_ROW_RATIO = 0.002;
+    // 文字行高估计值的下限，过小的行（噪点、线条）不参与估计
+    private static final int MIN_LINE_HEIGHT = 6;
+    // 高于图片高度 1/4 的连续区域更可能是插图而不是文字行，不参与估计
+    private static final int MAX_LINE_FRACTION = 4;
+    // 裁边后四周保留的空白（像素），Tesseract 在文字紧贴边缘时识别效果较差
+    private static final int TRIM_MARGIN = 10;
+    // 自适应二值化：像素比邻域均值暗 15% 以上视为文字
+    private static final double BINARIZE_BIAS = 0.15;
+
+    private final int targetTextHeight;
+    private final double minScale;
+    private final boolean binarize;
+    private final boolean trimBorder;
+
+    /**
+     * 创建预处理器
+     *
+     * @param targetTextHeight 缩小后的目标文字行高（像素），文字行高于此值时才缩小
+     * @param minScale         最小缩放比例 (0-1]，避免小字被缩得无法识别
+     * @param binarize         是否自适应二值化
+     * @param trimBorder       是否裁掉空白边框
+     */
+    public ImagePreprocessor(int targetTextHeight, double minScale, boolean binarize, boolean trimBorder) {
+        if (targetTextHeight <= 0) {
+            throw new IllegalArgumentException("目标文字高度应大于 0: " + targetTextHeight);
+        }
+        if (minScale <= 0 || minScale > 1) {
+            throw new IllegalArgumentException("最小缩放比例应在 (0, 1] 之间: " + minScale);
+        }
+        this.targetTextHeight = targetTextHeight;
+        this.minScale = minScale;
+        this.binarize = binarize;
+        this.trimBorder = trimBorder;
+    }
+
+    /**
+     * 根据配置文件创建预处理器
+     *
+     * @return 预处理器，配置中未启用时返回 null
+     */
+    public static ImagePreprocessor fromConfig() {
+        if (!OcrConfig.isPreprocessEnabled()) {
+            return null;
+        }
+        return new ImagePreprocessor(OcrConfig.getPreprocessTextHeight(), OcrConfig.getPreprocessMinScale(),
+                OcrConfig.isPreprocessBinarize(), OcrConfig.isPreprocessTrim());
+    }
+
+    /**
+     * 预处理图片
+     *
+     * @param image 原始图片
+     * @return 处理后的灰度（或黑白）图片
+     */
+    public BufferedImage process(BufferedImage image) {
+        BufferedImage gray = toGray(image);
+
+        int lineHeight = estimateLineHeight(gray);
+        if (lineHeight > targetTextHeight) {
+            double scale = Math.max(minScale, (double) targetTextHeight / lineHeight);
+            gray = scale(gray, scale);
+        }
+
+        BufferedImage result = binarize ? binarize(gray) : gray;
+        return trimBorder ? trim(result) : result;
+    }
+
+    /**
+     * @return 描述当前预处理参数的字符串，用作缓存键的一部分
+     */
+    public String fingerprint() {
+        return "pre:" + targetTextHeight + ":" + String.format("%.2f", minScale)
+                + ":" + (binarize ? "bin" : "gray") + ":" + (trimBorder ? "trim" : "full");
+    }
+
+    /**
+     * 转为 8 位灰度图，透明像素按白色背景合成（表情包 PNG 常带透明背景）
+     */
+    static BufferedImage toGray(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = pixels(gray);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int argb = row[x];
+                int alpha = argb >>> 24;
+                int r = (argb >> 16) & 0xFF;
+                int g = (argb >> 8) & 0xFF;
+                int b = argb & 0xFF;
+                // ITU-R BT.601 亮度，整数运算
+                int luma = (r * 299 + g * 587 + b * 114) / 1000;
+                luma = (luma * alpha + 255 * (255 - alpha)) / 255;
+                out[offset + x] = (byte) luma;
+            }
+        }
+        return gray;
+    }
+
+    /**
+     * 通过水平投影估计文字行高
+     * 以全图均值为阈值粗略区分文字像素，统计每行的文字像素数，
+     * 连续的非空白行视为一行文字，取各文字行高度的中位数。
+     * 插图占满画面时找不到可信的文字行，此时不缩小（宁可慢一些也不把文字缩得无法识别）
+     *
+     * @return 文字行高（像素），找不到文字行时返回 0
+     */
+    static int estimateLineHeight(BufferedImage gray) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] data = pixels(gray);
+
+        long sum = 0;
+        for (byte value : data) {
+            sum += value & 0xFF;
+        }
+        int threshold = (int) (sum / Math.max(1, data.length));
+
+        // 文字可能比背景亮（白字黑边的表情包），取占比较少的一侧作为文字
+        int[] darkCounts = new int[height];
+        long darkTotal = 0;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            int count = 0;
+            for (int x = 0; x < width; x++) {
+                if ((data[offset + x] & 0xFF) < threshold) {
+                    count++;
+                }
+            }
+            darkCounts[y] = count;
+            darkTotal += count;
+        }
+        boolean darkText = darkTotal * 2 <= (long) width * height;
+
+        int minInk = Math.max(1, (int) (width * INK_ROW_RATIO));
+        int maxLineHeight = height / MAX_LINE_FRACTION;
+        int[] runs = new int[height / MIN_LINE_HEIGHT + 1];
+        int runCount = 0;
+        int run = 0;
+        for (int y = 0; y <= height; y++) {
+            int ink = y == height ? 0 : (darkText ? darkCounts[y] : width - darkCounts[y]);
+            if (ink >= minInk) {
+                run++;
+            } else {
+                if (run >= MIN_LINE_HEIGHT && run <= maxLineHeight && runCount < runs.length) {
+                    runs[runCount++] = run;
+                }
+                run = 0;
+            }
+        }
+        if (runCount == 0) {
+            return 0;
+        }
+        Arrays.sort(runs, 0, runCount);
+        return runs[runCount / 2];
+    }
+
+    static BufferedImage scale(BufferedImage gray, double scale) {
+        int width = Math.max(1, (int) Math.round(gray.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(gray.getHeight() * scale));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(gray, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    /**
+     * 自适应二值化（Bradley 方法）
+     * 使用积分图在 O(1) 时间内求出每个像素邻域的均值，比邻域均值明显暗的像素记为黑色，
+     * 光照不均、渐变背景下也能得到干净的文字。浅色文字先反相，保证输出为白底黑字
+     */
+    static BufferedImage binarize(BufferedImage gray) {
+        int width = gray.getWidth();
+        int height = gray.getHeight();
+        byte[] data = pixels(gray);
+        boolean invert = isLightText(data);
+
+        long[] integral = new long[(width + 1) * (height + 1)];
+        int stride = width + 1;
+        for (int y = 0; y < height; y++) {
+            long rowSum = 0;
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int value = data[offset + x] & 0xFF;
+                rowSum += invert ? 255 - value : value;
+                integral[(y + 1) * stride + x + 1] = integral[y * stride + x + 1] + rowSum;
+            }
+        }
+
+        int half = Math.max(8, Math.max(width, height) / 16) / 2;
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = pixels(result);
+        for (int y = 0; y < height; y++) {
+            int y1 = Math.max(0, y - half);
+            int y2 = Math.min(height, y + half + 1);
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                int x1 = Math.max(0, x - half);
+                int x2 = Math.min(width, x + half + 1);
+                long area = (long) (x2 - x1) * (y2 - y1);
+                long windowSum = integral[y2 * stride + x2] - integral[y1 * stride + x2]
+                        - integral[y2 * stride + x1] + integral[y1 * stride + x1];
+                int value = data[offset + x] & 0xFF;
+                if (invert) {
+                    value = 255 - value;
+                }
+                out[offset + x] = value * area < windowSum * (1.0 - BINARIZE_BIAS) ? 0 : (byte) 255;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 整体偏暗的图片视为深色背景上的浅色文字
+     */
+    private static boolean isLightText(byte[] data) {
+        long sum = 0;
+        for (byte value : data) {
+            sum += value & 0xFF;
+        }
+        return sum < 128L * data.length;
+    }
+
+    /**
+     * 裁掉四周没有黑色像素的区域，保留少量空白边距
+     */
+    static BufferedImage trim(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        byte[] data = pixels(image);
+        // 非二值图以中间灰度为界
+        int top = height;
+        int bottom = -1;
+        int left = width;
+        int right = -1;
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            for (int x = 0; x < width; x++) {
+                if ((data[offset + x] & 0xFF) < 128) {
+                    if (y < top) {
+                        top = y;
+                    }
+                    bottom = y;
+                    if (x < left) {
+                        left = x;
+                    }
+                    if (x > right) {
+                        right = x;
+                    }
+                }
+            }
+        }
+        if (bottom < 0) {
+            // 没有任何内容，保持原样交给 Tesseract 判断
+            return image;
+        }
+        int x1 = Math.max(0, left - TRIM_MARGIN);
+        int y1 = Math.max(0, top - TRIM_MARGIN);
+        int x2 = Math.min(width, right + 1 + TRIM_MARGIN);
+        int y2 = Math.min(height, bottom + 1 + TRIM_MARGIN);
+        if (x1 == 0 && y1 == 0 && x2 == width && y2 == height) {
+            return image;
+        }
+        BufferedImage trimmed = new BufferedImage(x2 - x1, y2 - y1, BufferedImage.TYPE_BYTE_GRAY);
+        byte[] out = pixels(trimmed);
+        int trimmedWidth = x2 - x1;
+        for (int y = y1; y < y2; y++) {
+            System.arraycopy(data, y * width + x1, out, (y - y1) * trimmedWidth, trimmedWidth);
+        }
+        return trimmed;
+    }
+
+    private static byte[] pixels(BufferedImage gray) {
+        return ((DataBufferByte) gray.getRaster().getDataBuffer()).getData();
+    }
+}
@@ -7,10 +7,9 @@ import java.util.List;
 /**
  * 图片扫描工具类
  * 用于递归扫描指定目录下的所有支持的图片文件
+ * 一次性返回完整列表；大目录树请使用 StreamingImageScanner 边遍历边处理
  */
 public class ImageScanner {
-    private static final String[] SUPPORTED_FORMATS = {".png", ".jpg", ".jpeg", ".bmp", ".tiff"};
-
     /**
      * 扫描指定目录下的所有支持的图片文件
      *
@@ -45,28 +44,12 @@ public class ImageScanner {
         for (File file : files) {
             if (file.isDirectory()) {
                 scanImagesRecursive(file, imageFiles);
-            } else if (isSupportedFormat(file.getName())) {
+            } else if (ImageFormats.isSupported(file.getName())) {
                 imageFiles.add(file);
             }
         }
     }
 
-    /**
-     * 检查文件是否为支持的图片格式
-     *
-     * @param fileName 文件名
-     * @return true 如果是支持的格式
-     */
-    private static boolean isSupportedFormat(String fileName) {
-        String lowerName = fileName.toLowerCase();
-        for (String format : SUPPORTED_FORMATS) {
-            if (lowerName.endsWith(format)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * 扫描项目根目录的所有支持的图片文件
      *
@@ -1,14 +1,30 @@
 package LDS.Person;
 
 import java.io.File;
-import java.util.List;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 /**
  * 主程序入口类
- * 演示如何使用 OCRService 和 ImageScanner 进行图片文字识别
+ * 流式扫描 IMG 文件夹，并行识别图片文字并按识别结果重命名
  */
 public class Main {
     public static void main(String[] args) {
+        // --resume: 从上次中断处继续，跳过已完成的文件
+        boolean resume = Arrays.asList(args).contains("--resume");
+        // --watch: 常驻运行，监听 IMG 文件夹中新到达的图片
+        boolean watch = Arrays.asList(args).contains("--watch");
+        // --shard i/N: 只处理属于第 i 个分片的文件，多个进程/机器分别处理同一棵目录树
+        String shardSpec = optionValue(args, "--shard");
+        // --merge-shards: 把各分片的重命名日志合并到项目根目录后退出
+        boolean mergeShards = Arrays.asList(args).contains("--merge-shards");
+        // --config 路径: 在 classpath 中的 ocr.properties 之上叠加外部配置文件，运行中修改后自动重新加载
+        String configPath = optionValue(args, "--config");
+
         System.out.println("========================================");
         System.out.println("       Memes Renamer - OCR 工具");
         System.out.println("========================================");
@@ -18,76 +34,427 @@ public class Main {
         String projectRoot = System.getProperty("user.dir");
         System.out.println("项目根目录: " + projectRoot);
         System.out.println();
+        String imgFolder = projectRoot + File.separator + "IMG";
+
+        if (mergeShards) {
+            mergeShards(projectRoot);
+            return;
+        }
+
+        if (configPath != null && !OcrConfig.useConfigFile(Paths.get(configPath))) {
+            System.err.println("✗ 无法读取配置文件: " + configPath);
+            return;
+        }
+        // IMG 下各级目录中的 .ocr.properties 覆盖该目录中图片的语言、置信度阈值等设置
+        OcrConfig.setOverrideRoot(Paths.get(imgFolder));
+
+        // 分片模式下进度日志、重命名日志、缓存和运行报告都放在分片自己的状态目录中
+        Shard shard = null;
+        String stateRoot = projectRoot;
+        if (shardSpec != null) {
+            try {
+                shard = Shard.parse(shardSpec, Paths.get(imgFolder));
+                if (!shard.lock(projectRoot)) {
+                    System.err.println("✗ 分片 " + shard + " 正在被其他进程处理: " + shard.lockOwner(projectRoot));
+                    return;
+                }
+            } catch (IllegalArgumentException | IOException e) {
+                System.err.println("✗ 无法启动分片: " + e.getMessage());
+                return;
+            }
+            stateRoot = shard.stateDir(projectRoot).toString();
+            System.out.println("✓ 分片模式: " + shard + "，状态目录: " + stateRoot);
+            System.out.println();
+        }
 
         // 加载 OCR 配置文件
         OcrConfig.printConfig();
 
-        // 从配置文件读取设置并应用
+        // 从配置文件读取设置
         String language = OcrConfig.getLanguage();
         double confidenceThreshold = OcrConfig.getConfidenceThreshold();
-        
-        OCRService.setLanguage(language);
+        int workerCount = OcrConfig.getWorkerCount();
         System.out.println("✓ 已从配置文件加载语言设置: " + language);
-        
-        OCRService.setConfidenceThreshold(confidenceThreshold);
         System.out.println("✓ 已从配置文件加载置信度阈值: " + String.format("%.0f", confidenceThreshold) + "%");
+        System.out.println("✓ 已从配置文件加载工作线程数: " + workerCount);
         System.out.println();
 
-        // 扫描 IMG 文件夹中的所有图片
-        String imgFolder = projectRoot + File.separator + "IMG";
-        System.out.println("正在扫描 IMG 文件夹中的图片文件...");
-        List<File> imageFiles = ImageScanner.scanImages(imgFolder);
+        // 子进程识别模式下先确认子进程能够启动，否则每张图片都会在重试后记为识别失败
+        if (OcrConfig.isWorkerProcessEnabled()) {
+            try {
+                OcrWorkerProcess.verifyStartup(language, confidenceThreshold,
+                        Paths.get(stateRoot, OcrWorkerProcess.LOG_FILE));
+                System.out.println("✓ OCR 子进程启动检查通过");
+                System.out.println();
+            } catch (IOException e) {
+                System.err.println("✗ 无法启动 OCR 子进程: " + e.getMessage());
+                System.err.println("  请检查 classpath 和 " + OcrWorkerProcess.LOG_FILE
+                        + "，或设置 ocr.worker.process.enabled=false 在主进程中识别");
+                return;
+            }
+        }
 
-        if (imageFiles.isEmpty()) {
-            System.out.println("未找到任何支持的图片文件。");
-            System.out.println("支持的格式: .png, .jpg, .jpeg, .bmp, .tiff");
+        // 打开进度日志，续跑模式和监听模式下跳过已完成的文件
+        ProgressJournal journal;
+        try {
+            journal = new ProgressJournal(Paths.get(stateRoot, ProgressJournal.JOURNAL_FILE), resume || watch);
+        } catch (IOException e) {
+            System.err.println("✗ 无法打开进度日志: " + e.getMessage());
             return;
         }
 
-        System.out.println("找到 " + imageFiles.size() + " 个图片文件:");
-        System.out.println();
-
-        // 记录原始文件名
+        // 打开重命名日志，每次重命名后立即记录 "原路径 -> 新路径"
         System.out.println("========================================");
-        System.out.println("       第一步: 记录原始文件名");
+        System.out.println("       第一步: 打开重命名日志");
         System.out.println("========================================");
-        FileRenamer.recordOldFileNames(projectRoot, imageFiles);
+        RenameJournal renameJournal;
+        try {
+            renameJournal = new RenameJournal(Paths.get(projectRoot), Paths.get(stateRoot, RenameJournal.JOURNAL_FILE));
+        } catch (IOException e) {
+            System.err.println("✗ 无法打开重命名日志: " + e.getMessage());
+            journal.close();
+            return;
+        }
+        System.out.println("✓ 重命名日志: " + stateRoot + File.separator + RenameJournal.JOURNAL_FILE);
+        System.out.println("  已有未恢复的记录: " + renameJournal.size() + " 条");
         System.out.println();
 
-        // 对每个找到的图片进行 OCR 识别
-        for (int i = 0; i < imageFiles.size(); i++) {
-            File imageFile = imageFiles.get(i);
-            System.out.println("-----------------------------------");
-            System.out.println("[" + (i + 1) + "/" + imageFiles.size() + "] " + imageFile.getName());
-            System.out.println("路径: " + imageFile.getAbsolutePath());
-            System.out.println("大小: " + imageFile.length() + " 字节");
-
-            // 执行 OCR 识别
-            System.out.println("正在识别文字...");
-            long startTime = System.currentTimeMillis();
-            String recognizedText = OCRService.recognizeText(imageFile.getAbsolutePath());
-            long duration = System.currentTimeMillis() - startTime;
-
-            if (recognizedText.isEmpty()) {
-                System.out.println("  ✓ 耗时: " + duration + "ms");
-                System.out.println("  状态: 未识别到有效文字，跳过重命名");
+        // 流式扫描 IMG 文件夹：边遍历边识别（监听模式下由 WatchDaemon 负责发现文件）
+        if (!watch) {
+            System.out.println("正在扫描 IMG 文件夹中的图片文件（边扫描边识别）...");
+        }
+        long batchStart = System.currentTimeMillis();
+        OcrResultCache cache = OcrResultCache.openFromConfig(stateRoot);
+        boolean workerProcesses = OcrConfig.isWorkerProcessEnabled();
+        PerceptualHashIndex duplicateIndex = workerProcesses ? null : PerceptualHashIndex.openFromConfig(stateRoot);
+        if (workerProcesses && OcrConfig.isPhashEnabled()) {
+            System.err.println("⚠ 近似重复检测需要所有引擎共享索引，子进程识别模式下不检测近似重复");
+        }
+        RecognitionLadder ladder = OcrConfig.isPersistentEngine() ? RecognitionLadder.fromConfig(language) : null;
+        if (ladder == null && OcrConfig.isLadderEnabled()) {
+            System.err.println("⚠ 分级识别需要常驻引擎 (ocr.engine.persistent=true)，本次不分级");
+        }
+        TextRegionDetector regionDetector = OcrConfig.isPersistentEngine() ? TextRegionDetector.fromConfig() : null;
+        if (regionDetector == null && OcrConfig.isRegionEnabled()) {
+            System.err.println("⚠ 文字区域检测需要常驻引擎 (ocr.engine.persistent=true)，本次识别整张图片");
+        }
+        FrameSampler frameSampler = FrameSampler.fromConfig();
+        PixelBudget pixelBudget = PixelBudget.fromConfig();
+        RunMetrics metrics = RunMetrics.openFromConfig(stateRoot);
+        CostEstimator costEstimator = CostEstimator.fromConfig();
+        CaptionIndex captionIndex = CaptionIndex.openFromConfig(stateRoot);
+        RenamePipeline pipeline;
+        WatchDaemon daemon = null;
+        try (journal; renameJournal;
+             StreamingImageScanner scanner = watch ? null : new StreamingImageScanner(Paths.get(imgFolder),
+                     OcrConfig.getScanQueueCapacity(), OcrConfig.getScanParallelism(), metrics).start();
+             OcrWorkerPool pool = new OcrWorkerPool(workerCount, workerProcesses
+                     ? processEngineFactory(language, confidenceThreshold, workerCount, ladder, regionDetector,
+                             frameSampler, metrics, Paths.get(stateRoot, OcrWorkerProcess.LOG_FILE))
+                     : () -> createEngine(language, confidenceThreshold, duplicateIndex, ladder, regionDetector,
+                             frameSampler, pixelBudget, metrics), cache)) {
+            pool.setCostEstimator(costEstimator);
+            OcrConfig.addReloadListener(settings -> applyReload(settings, pool));
+            if (OcrConfig.startWatching()) {
+                System.out.println("✓ 正在监听配置文件 " + OcrConfig.getConfigFile()
+                        + "，修改后语言、置信度阈值和工作线程数无需重启即可生效");
+            }
+            System.out.println("正在使用 " + pool.getWorkerCount() + " 个工作线程识别文字...");
+            System.out.println();
+
+            // 扫描线程把文件送入流水线，主线程按完成顺序输出结果并重命名
+            // 按耗时调度时放宽同时提交的文件数，让大图有机会排到前面
+            int maxInFlight = costEstimator != null
+                    ? Math.max(pool.getWorkerCount() * 4, OcrConfig.getScheduleWindow())
+                    : pool.getWorkerCount() * 4;
+            pipeline = new RenamePipeline(pool, cache, journal, renameJournal, maxInFlight,
+                    OcrConfig.getRenameBatchSize());
+            pipeline.setMetrics(metrics);
+            pipeline.setShard(shard);
+            pipeline.setCaptionIndex(captionIndex);
+            pipeline.setDuplicateIndex(duplicateIndex);
+            Thread feeder;
+            if (watch) {
+                daemon = new WatchDaemon(Paths.get(imgFolder), pipeline, journal,
+                        OcrConfig.getWatchDebounceMs(), OcrConfig.getWatchLatencyTargetMs());
+                feeder = new Thread(watchTask(daemon, pipeline), "watch-daemon");
+                stopOnShutdown(daemon, Thread.currentThread());
             } else {
-                System.out.println("✓ 识别成功 (耗时: " + duration + "ms)");
-                System.out.println("  字符数: " + recognizedText.length());
-                System.out.println("  内容: " + recognizedText);
-                System.out.println();
+                feeder = new Thread(() -> feed(scanner, pipeline), "scan-feeder");
+            }
+            feeder.setDaemon(true);
+            feeder.start();
 
-                // 根据识别结果重命名文件
-                System.out.println("正在重命名文件...");
-                FileRenamer.renameFileWithOCRResult(imageFile, recognizedText);
+            boolean drained = pipeline.drain();
+            // 识别过程中的日志是异步输出的，先全部输出再打印统计
+            AsyncLogger.flush();
+            if (!drained) {
+                System.err.println("✗ 识别被中断，已完成 " + pipeline.getHandledCount() + " 个文件");
             }
-            System.out.println();
+            if (scanner != null) {
+                System.out.println("扫描完成: " + scanner.getDirectoryCount() + " 个目录，"
+                        + scanner.getFoundCount() + " 个图片文件");
+            }
+        } finally {
+            OcrConfig.stopWatching();
+            AsyncLogger.flush();
+            if (cache != null) {
+                cache.close();
+                System.out.println("缓存命中: " + cache.getHits() + "，未命中: " + cache.getMisses());
+            }
+            if (duplicateIndex != null) {
+                duplicateIndex.close();
+                System.out.println("近似重复: " + duplicateIndex.getHits() + " 个（索引共 "
+                        + duplicateIndex.size() + " 张图片）");
+            }
+            if (captionIndex != null) {
+                captionIndex.close();
+                System.out.println("文字索引: 新增 " + captionIndex.getAddedCount() + " 条，共 "
+                        + captionIndex.getSegmentCount() + " 个段" + (captionIndex.getMergeCount() > 0 ? "（已合并）" : ""));
+            }
+            if (workerProcesses) {
+                System.out.println("OCR 子进程: 启动 " + OcrWorkerProcess.getStartCount() + " 个，其中定期更换 "
+                        + OcrWorkerProcess.getRecycleCount() + " 次，崩溃或超时 " + OcrWorkerProcess.getCrashCount() + " 次");
+            }
+            if (regionDetector != null && !workerProcesses) {
+                System.out.println("文字区域: " + regionDetector.getRegionImageCount() + " 张只识别文字区域（共 "
+                        + regionDetector.getRegionCount() + " 个区域），" + regionDetector.getFullImageCount()
+                        + " 张识别整张图片");
+            }
+            if (!workerProcesses && (pixelBudget.getSubsampledCount() > 0 || pixelBudget.getWaitCount() > 0)) {
+                System.out.println("解码内存: " + pixelBudget.getSubsampledCount() + " 张大图降采样解码，"
+                        + pixelBudget.getWaitCount() + " 次等待其他线程释放解码内存（预算 "
+                        + pixelBudget.getBudgetPixels() / 1000000 + " 百万像素）");
+            }
+            if (frameSampler != null && !workerProcesses && frameSampler.getMultiFrameCount() > 0) {
+                System.out.println("多帧图片: " + frameSampler.getMultiFrameCount() + " 张共 " + frameSampler.getFrameCount()
+                        + " 帧，识别了其中 " + frameSampler.getSampledCount() + " 个关键帧");
+            }
+            if (ladder != null && !workerProcesses) {
+                System.out.println("分级识别: 快速识别完成 " + ladder.getFastCount() + " 张，升级为完整识别 "
+                        + ladder.getFullCount() + " 张");
+            }
+            if (costEstimator != null) {
+                costEstimator.printReport();
+            }
+            if (metrics != null) {
+                // 正常结束时报告已写出，这里只在异常退出时关闭 CSV
+                metrics.close();
+            }
+        }
+        long batchDuration = System.currentTimeMillis() - batchStart;
+
+        if (daemon != null) {
+            System.out.println("✓ 监听结束: 共处理 " + daemon.getCompletedCount() + " 个新文件，超过目标延迟 "
+                    + daemon.getLateCount() + " 个");
+        }
+        if (shard != null) {
+            System.out.println("✓ 分片 " + shard + ": 属于其他分片的文件 " + pipeline.getOtherShardCount() + " 个");
+        }
+        if (daemon == null && pipeline.getHandledCount() == 0 && pipeline.getAlreadyFinishedCount() == 0
+                && pipeline.getOtherShardCount() == 0) {
+            System.out.println("未找到任何支持的图片文件。");
+            System.out.println("支持的格式: " + ImageFormats.describe());
+            return;
+        }
+        if (resume) {
+            System.out.println("✓ 续跑模式: 之前已完成 " + pipeline.getAlreadyFinishedCount() + " 个，从进度日志恢复识别结果 "
+                    + pipeline.getRecoveredCount() + " 个");
         }
+        System.out.println("✓ 重命名: " + pipeline.getRenamedCount() + " 个，跳过: " + pipeline.getSkippedCount() + " 个");
+        System.out.println("总耗时: " + batchDuration + "ms");
+        Path report = null;
+        if (metrics != null) {
+            metrics.printSummary();
+            report = metrics.writeReport(pipeline.getHandledCount() + pipeline.getAlreadyFinishedCount());
+        }
+        System.out.println();
 
         System.out.println("========================================");
         System.out.println("       OCR 识别和文件重命名完成");
         System.out.println("========================================");
         System.out.println();
-        System.out.println("📝 原始文件名已保存到: " + projectRoot + File.separator + "OldNames.txt");
+        System.out.println("📝 原始文件名已保存到: " + stateRoot + File.separator + RenameJournal.JOURNAL_FILE);
+        System.out.println("📝 处理进度已保存到: " + stateRoot + File.separator + ProgressJournal.JOURNAL_FILE
+                + "（中断后可使用 --resume 继续）");
+        if (report != null) {
+            System.out.println("📝 运行报告已保存到: " + report + "（逐文件耗时: " + metrics.getTraceFile() + "）");
+        }
+        if (shard != null) {
+            System.out.println("📝 所有分片完成后运行 --merge-shards 合并重命名日志，之后可以统一恢复原始文件名");
+        }
+    }
+
+    /**
+     * 读取 "--name value" 或 "--name=value" 形式的参数
+     *
+     * @param args 命令行参数
+     * @param name 参数名
+     * @return 参数值，未指定时返回 null
+     */
+    private static String optionValue(String[] args, String name) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(name) && i + 1 < args.length) {
+                return args[i + 1];
+            }
+            if (args[i].startsWith(name + "=")) {
+                return args[i].substring(name.length() + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 把各分片的重命名日志合并到项目根目录的重命名日志
+     *
+     * @param projectRoot 项目根目录
+     */
+    private static void mergeShards(String projectRoot) {
+        System.out.println("========================================");
+        System.out.println("       合并分片重命名日志");
+        System.out.println("========================================");
+        try (RenameJournal journal = new RenameJournal(Paths.get(projectRoot))) {
+            int merged = Shard.mergeJournals(projectRoot, journal);
+            System.out.println();
+            System.out.println("✓ 共合并 " + merged + " 条记录到 " + projectRoot + File.separator + RenameJournal.JOURNAL_FILE);
+            System.out.println("  未恢复的记录: " + journal.size() + " 条");
+        } catch (IOException e) {
+            System.err.println("✗ 合并分片重命名日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 创建工作线程使用的 OCR 服务，所有线程共享同一个近似重复索引、分级识别、文字区域和多帧采样统计；
+     * 语言和置信度阈值跟随配置（热加载、目录覆盖）
+     *
+     * @param language            识别语言
+     * @param confidenceThreshold 置信度阈值
+     * @param duplicateIndex      近似重复索引，可以为 null
+     * @param ladder              分级识别策略，可以为 null
+     * @param regionDetector      文字区域检测器，可以为 null
+     * @param frameSampler        多帧图片的关键帧采样器，可以为 null
+     * @param pixelBudget         解码像素预算，可以为 null
+     * @param metrics             运行统计，可以为 null
+     * @return OCR 服务
+     */
+    private static OCRService createEngine(String language, double confidenceThreshold,
+                                           PerceptualHashIndex duplicateIndex, RecognitionLadder ladder,
+                                           TextRegionDetector regionDetector, FrameSampler frameSampler,
+                                           PixelBudget pixelBudget, RunMetrics metrics) {
+        OCRService service = new OCRService(language, confidenceThreshold);
+        service.setFollowConfig(true);
+        service.setDuplicateIndex(duplicateIndex);
+        service.setLadder(ladder);
+        service.setRegionDetector(regionDetector);
+        service.setFrameSampler(frameSampler);
+        service.setPixelBudget(pixelBudget);
+        service.setMetrics(metrics);
+        return service;
+    }
+
+    /**
+     * 配置文件重新加载后应用新的设置
+     * 语言和置信度阈值由各引擎在识别下一张图片前读取（OCRService.configureFor），这里只调整工作线程数
+     *
+     * @param settings 新的配置
+     * @param pool     工作线程池
+     */
+    private static void applyReload(OcrSettings settings, OcrWorkerPool pool) {
+        int previous = pool.getWorkerCount();
+        pool.resize(settings.getWorkerCount());
+        AsyncLogger.info("  语言: " + settings.getLanguage() + "，置信度阈值: "
+                + String.format("%.0f", settings.getConfidenceThreshold()) + "%，工作线程数: "
+                + (previous == settings.getWorkerCount() ? String.valueOf(previous) : previous + " → " + settings.getWorkerCount()));
+    }
+
+    /**
+     * 创建子进程识别引擎的工厂，每个工作线程一个子进程
+     * 分级识别、文字区域检测和多帧采样在子进程中按配置各自创建，这里只用于计算缓存键（统计不回传主进程）
+     *
+     * @param language            识别语言
+     * @param confidenceThreshold 置信度阈值
+     * @param workerCount         工作线程数
+     * @param ladder              分级识别策略，可以为 null
+     * @param regionDetector      文字区域检测器，可以为 null
+     * @param frameSampler        多帧图片的关键帧采样器，可以为 null
+     * @param metrics             运行统计，可以为 null
+     * @param logFile             子进程输出的日志文件
+     * @return 引擎工厂
+     */
+    private static Supplier<OCRService> processEngineFactory(String language, double confidenceThreshold,
+                                                             int workerCount, RecognitionLadder ladder,
+                                                             TextRegionDetector regionDetector,
+                                                             FrameSampler frameSampler, RunMetrics metrics,
+                                                             Path logFile) {
+        AtomicInteger index = new AtomicInteger();
+        return () -> {
+            OcrWorkerProcess service = new OcrWorkerProcess(language, confidenceThreshold, index.getAndIncrement(),
+                    workerCount, OcrConfig.getWorkerProcessMaxImages(), OcrConfig.getWorkerProcessTimeoutMs(),
+                    logFile);
+            service.setFollowConfig(true);
+            service.setLadder(ladder);
+            service.setRegionDetector(regionDetector);
+            service.setFrameSampler(frameSampler);
+            service.setMetrics(metrics);
+            return service;
+        };
+    }
+
+    /**
+     * 将扫描到的文件逐个送入流水线，扫描结束后关闭流水线输入
+     *
+     * @param scanner  流式扫描器
+     * @param pipeline 识别流水线
+     */
+    private static void feed(StreamingImageScanner scanner, RenamePipeline pipeline) {
+        try {
+            File imageFile;
+            while ((imageFile = scanner.next()) != null) {
+                pipeline.offer(imageFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pipeline.closeInput();
+        }
+    }
+
+    /**
+     * 监听线程：持续发现新文件并送入流水线，停止监听后关闭流水线输入
+     *
+     * @param daemon   文件夹监听器
+     * @param pipeline 识别流水线
+     */
+    private static Runnable watchTask(WatchDaemon daemon, RenamePipeline pipeline) {
+        return () -> {
+            try {
+                daemon.run();
+            } catch (IOException e) {
+                System.err.println("✗ 无法监听文件夹: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pipeline.closeInput();
+            }
+        };
+    }
+
+    /**
+     * 按 Ctrl+C 时停止监听，并等待主线程处理完在途文件、关闭日志后再退出
+     *
+     * @param daemon     文件夹监听器
+     * @param mainThread 执行 drain() 的主线程
+     */
+    private static void stopOnShutdown(WatchDaemon daemon, Thread mainThread) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println();
+            System.out.println("正在停止监听，等待在途文件处理完成...");
+            daemon.stop();
+            try {
+                mainThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "watch-shutdown"));
     }
-}
\ No newline at end of file
+}
@@ -1,214 +1,599 @@
 package LDS.Person;
 
-import net.sourceforge.tess4j.Tesseract;
-
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * OCR 服务类，用于使用 Tesseract 进行图像文字识别
+ * 每个实例持有独立的 Tesseract 和配置，不是线程安全的：
+ * 多线程场景下每个工作线程应使用各自的实例（参见 OcrWorkerPool）
  */
-public class OCRService {
-    private static final Tesseract tesseract = new Tesseract();
-    
+public class OCRService implements AutoCloseable {
+    private static final String TESSDATA_PATH = resolveTessdataPath();
+
+    private final PersistentTesseract tesseract = new PersistentTesseract();
+    private final ImageDecoder decoder = new ImageDecoder();
+    private final TextSanitizer sanitizer = new TextSanitizer();
+    private String language;
+
+    // 常驻模式下原生句柄只初始化一次，否则每次识别都重新加载模型
+    private final boolean persistent;
+
     // 置信度阈值 (0-100)，低于此值的识别结果将被过滤
-    // 默认 50%，可以通过 setConfidenceThreshold() 调整
-    private static double confidenceThreshold = 90;
+    private double confidenceThreshold;
+    // 每张图片识别前按 OcrConfig.forFile() 更新语言和置信度阈值（配置热加载、目录覆盖）
+    private boolean followConfig;
+
+    // 识别前的图片预处理，null 表示直接识别原图
+    private final ImagePreprocessor preprocessor;
+
+    // 近似重复索引（多个实例共享），null 表示不检测近似重复
+    private PerceptualHashIndex duplicateIndex;
+
+    // 分级识别策略（多个实例共享），null 表示每张图片都直接完整识别
+    private RecognitionLadder ladder;
+    // 文字区域检测（多个实例共享），null 表示总是识别整张图片
+    private TextRegionDetector regionDetector;
+    // 多帧图片的关键帧采样（多个实例共享），null 表示只识别第一帧
+    private FrameSampler frameSampler;
+    // 快速识别使用的独立引擎，语言和页面分割模式与完整识别不同，避免来回重新初始化
+    private PersistentTesseract fastTesseract;
+    // 跟随配置时当前图片适用的快速识别语言，null 表示使用分级识别策略创建时的语言
+    private String fastLanguage;
+
+    // 分阶段耗时统计（多个实例共享），null 表示不统计
+    private RunMetrics metrics;
+    // 本次识别中预处理、文字区域检测所用的时间（纳秒），从 OCR 阶段中扣除
+    private long preprocessNanos;
+
+    // 上一次识别时 Tesseract 给出的平均置信度（-1 表示未知）和得到结果的识别级别
+    private int lastEngineConfidence;
+    private String lastTier;
+
+    /**
+     * 使用配置文件中的语言和置信度阈值创建 OCR 服务
+     */
+    public OCRService() {
+        this(OcrConfig.getLanguage(), OcrConfig.getConfidenceThreshold(), OcrConfig.isPersistentEngine());
+    }
+
+    /**
+     * 创建 OCR 服务
+     *
+     * @param language            语言代码 (例如: "chi_sim" 简体中文, "eng" 英文)
+     * @param confidenceThreshold 置信度阈值，范围 0-100
+     */
+    public OCRService(String language, double confidenceThreshold) {
+        this(language, confidenceThreshold, OcrConfig.isPersistentEngine());
+    }
+
+    /**
+     * 创建 OCR 服务
+     *
+     * @param language            语言代码 (例如: "chi_sim" 简体中文, "eng" 英文)
+     * @param confidenceThreshold 置信度阈值，范围 0-100
+     * @param persistent          是否复用原生 Tesseract 句柄（常驻模式）
+     */
+    public OCRService(String language, double confidenceThreshold, boolean persistent) {
+        this(language, confidenceThreshold, persistent, ImagePreprocessor.fromConfig());
+    }
+
+    /**
+     * 创建 OCR 服务
+     *
+     * @param language            语言代码 (例如: "chi_sim" 简体中文, "eng" 英文)
+     * @param confidenceThreshold 置信度阈值，范围 0-100
+     * @param persistent          是否复用原生 Tesseract 句柄（常驻模式）
+     * @param preprocessor        识别前的图片预处理，null 表示直接识别原图
+     */
+    public OCRService(String language, double confidenceThreshold, boolean persistent,
+                      ImagePreprocessor preprocessor) {
+        if (confidenceThreshold < 0 || confidenceThreshold > 100) {
+            throw new IllegalArgumentException("置信度阈值应在 0-100 之间: " + confidenceThreshold);
+        }
+        this.language = language;
+        this.confidenceThreshold = confidenceThreshold;
+        this.persistent = persistent;
+        this.preprocessor = preprocessor;
+        decoder.setLimits(OcrConfig.getDecodeMaxPixels(), null);
+        if (TESSDATA_PATH != null) {
+            tesseract.setDatapath(TESSDATA_PATH);
+        }
+        tesseract.setLanguage(language);
+    }
 
-    static {
-        // 设置 Tesseract 的 tessdata 路径
-        // 使用项目根目录下的 tessdata 文件夹
+    /**
+     * 定位项目根目录下的 tessdata 文件夹
+     *
+     * @return tessdata 路径，不存在时返回 null（使用系统 Tesseract 安装目录）
+     */
+    private static String resolveTessdataPath() {
         String projectRoot = System.getProperty("user.dir");
         String tessdataPath = projectRoot + File.separator + "tessdata";
-        
+
         // 检查 tessdata 目录是否存在
         File tessdataDir = new File(tessdataPath);
         if (tessdataDir.exists() && tessdataDir.isDirectory()) {
-            tesseract.setDatapath(tessdataPath);
             System.out.println("Tesseract 数据路径已设置为: " + tessdataPath);
-        } else {
-            System.err.println("警告: tessdata 目录不存在: " + tessdataPath);
-            System.err.println("请确保在项目根目录下放置 tessdata 文件夹");
-            System.err.println("或者将其放在系统的 Tesseract 安装目录中");
+            return tessdataPath;
         }
+        System.err.println("警告: tessdata 目录不存在: " + tessdataPath);
+        System.err.println("请确保在项目根目录下放置 tessdata 文件夹");
+        System.err.println("或者将其放在系统的 Tesseract 安装目录中");
+        return null;
     }
 
     /**
      * 识别单个图片文件中的文字
      *
      * @param imagePath 图片文件路径
-     * @return 识别的文本（已规范化，去除空格和换行符）
+     * @return 识别的文本（已规范化，去除空格和换行符），失败时返回空字符串
+     */
+    public String recognizeText(String imagePath) {
+        return recognize(new File(imagePath)).getText();
+    }
+
+    /**
+     * 识别单个图片文件中的文字，返回包含状态和置信度的完整结果
+     * 本方法不向控制台输出，由调用方决定如何展示结果
+     *
+     * @param imageFile 图片文件
+     * @return 识别结果
      */
-    public static String recognizeText(String imagePath) {
+    public OcrResult recognize(File imageFile) {
+        long startTime = System.currentTimeMillis();
+        configureFor(imageFile);
+        OcrResult result = doRecognize(imageFile);
+        return result.withDuration(System.currentTimeMillis() - startTime);
+    }
+
+    private OcrResult doRecognize(File imageFile) {
         try {
-            File imageFile = new File(imagePath);
             if (!imageFile.exists()) {
-                System.err.println("图片文件不存在: " + imagePath);
-                return "";
+                return failure(imageFile, OcrResult.Status.MISSING, "", "图片文件不存在");
             }
 
             // 检查文件格式是否支持
-            if (!isSupportedFormat(imagePath)) {
-                System.err.println("不支持的图片格式: " + imagePath);
-                return "";
+            if (!ImageFormats.isSupported(imageFile.getName())) {
+                return failure(imageFile, OcrResult.Status.UNSUPPORTED, "", "不支持的图片格式");
             }
 
-            String recognizedText = tesseract.doOCR(imageFile);
-            
-            // 规范化文本：去除所有空格、换行符、制表符等空白字符
-            String normalized = normalizeText(recognizedText);
-            
-            // 检查识别结果长度（作为置信度的代理指标）
-            if (normalized.isEmpty()) {
-                System.out.println("  ⚠ 未识别到文字");
-                return "";
+            if (metrics != null) {
+                metrics.addBytesRead(imageFile.length());
             }
-            
-            // 过滤低置信度字符（仅保留中文、英文、数字）
-            String filtered = filterLowConfidenceChars(normalized);
-            
-            // 如果过滤后结果为空，说明识别质量太低
-            if (filtered.isEmpty()) {
-                System.out.println("  ⚠ 识别置信度过低 (<" + 
-                                 String.format("%.0f", confidenceThreshold) + "%) - 将不输出");
-                System.out.println("    原始识别: " + normalized);
-                return "";
+
+            // 需要解码时只解码一次，感知哈希和识别共用；多帧图片解码所有帧并选出关键帧
+            long start = System.nanoTime();
+            BufferedImage image = null;
+            List<BufferedImage> frames = null;
+            if (frameSampler != null && FrameSampler.isCandidate(imageFile)) {
+                // 单帧就超过像素上限的图片不逐帧解码，按普通图片降采样识别第一帧
+                long framePixels = ImageDecoder.readPixels(imageFile);
+                if (framePixels > 0 && framePixels <= decoder.getMaxPixels()) {
+                    decoder.reserve(framePixels * frameSampler.getBufferedFrames());
+                    frames = frameSampler.sample(imageFile);
+                }
             }
-            
-            // 计算有效字符率（清理前后的比例）
-            double validCharRatio = (double) filtered.length() / normalized.length() * 100;
-            
-            // 如果有效字符率低于阈值，也认为置信度不足
-            if (validCharRatio < confidenceThreshold) {
-                System.out.println("  ⚠ 有效字符率过低 (" + String.format("%.1f", validCharRatio) + "% < " + 
-                                 String.format("%.0f", confidenceThreshold) + "%) - 将不输出");
-                System.out.println("    原始识别: " + normalized);
-                System.out.println("    清理后: " + filtered);
-                return "";
+            // 旧模式下由 Tesseract 按原始尺寸解码，超过像素上限的图片改由解码器降采样
+            long pixels = frames != null || persistent || preprocessor != null || duplicateIndex != null
+                    ? 0 : ImageDecoder.readPixels(imageFile);
+            if (frames != null) {
+                image = frames.get(0);
+                record(imageFile, RunMetrics.Stage.DECODE, System.nanoTime() - start);
+            } else if (persistent || preprocessor != null || duplicateIndex != null
+                    || pixels > decoder.getMaxPixels()) {
+                image = decoder.decode(imageFile);
+                record(imageFile, RunMetrics.Stage.DECODE, System.nanoTime() - start);
+            } else {
+                decoder.reserve(Math.max(0, pixels));
             }
-            
-            // 显示有效字符率信息
-            System.out.println("  有效字符率: " + String.format("%.1f", validCharRatio) + "%");
-            
-            return filtered;
-        } catch (Exception e) {
-            // 捕获所有异常，包括图片格式错误，但不中止程序
-            String errorMsg = e.getMessage();
-            if (errorMsg == null) {
-                errorMsg = e.getClass().getSimpleName();
+
+            // 与已识别的图片近似重复时直接复用识别文本
+            long hash = 0;
+            if (duplicateIndex != null) {
+                start = System.nanoTime();
+                hash = PerceptualHashIndex.dHash(image);
+                record(imageFile, RunMetrics.Stage.PREPROCESS, System.nanoTime() - start);
+                PerceptualHashIndex.Match match = duplicateIndex.find(hash, profile());
+                if (match != null) {
+                    return new OcrResult(imageFile, OcrResult.Status.OK, match.getText(), match.getText(),
+                            match.getConfidence(), "近似重复 (汉明距离 " + match.getDistance() + ")", 0)
+                            .asDuplicateOf(match.getSource());
+                }
             }
-            
-            // 根据错误类型提供友好的提示
-            if (errorMsg.contains("JFIF") || errorMsg.contains("JPEG")) {
-                System.out.println("  ⚠ 图片文件格式有问题（非标准 JPEG）- 跳过");
-            } else if (errorMsg.contains("图片") || errorMsg.contains("不存在")) {
-                System.out.println("  ⚠ 图片文件问题 - 跳过");
-            } else {
-                System.out.println("  ⚠ OCR 识别异常 - 跳过");
+
+            lastEngineConfidence = -1;
+            lastTier = null;
+            preprocessNanos = 0;
+            start = System.nanoTime();
+            String recognizedText = frames == null ? runEngine(imageFile, image) : runFrames(imageFile, frames);
+            long engineNanos = System.nanoTime() - start;
+            if (preprocessNanos > 0) {
+                record(imageFile, RunMetrics.Stage.PREPROCESS, preprocessNanos);
             }
-            
-            return "";
+            record(imageFile, RunMetrics.Stage.OCR, engineNanos - preprocessNanos);
+            OcrResult result = evaluate(imageFile, recognizedText, hash);
+            return lastEngineConfidence < 0 ? result : result.withEngineConfidence(lastEngineConfidence, lastTier);
+        } catch (Exception e) {
+            // 捕获所有异常，包括图片格式错误，但不中止程序
+            return failure(imageFile, OcrResult.Status.ERROR, "", describeError(e));
+        } finally {
+            decoder.release();
         }
     }
 
     /**
-     * 规范化识别的文本
-     * 去除所有空白字符（空格、换行、制表符等），保持字符连续
+     * 规范化、过滤识别文本并判断结果是否可用
      *
-     * @param text 原始文本
-     * @return 规范化后的文本
+     * @param imageFile      图片文件
+     * @param recognizedText 原始识别文本
+     * @param hash           感知哈希（未启用近似重复检测时不使用）
+     * @return 识别结果
      */
-    private static String normalizeText(String text) {
-        if (text == null || text.isEmpty()) {
-            return "";
+    private OcrResult evaluate(File imageFile, String recognizedText, long hash) {
+        // 一次遍历完成规范化（去除空白字符）和过滤（仅保留中文、英文、数字）
+        long start = System.nanoTime();
+        sanitizer.sanitize(recognizedText);
+        String normalized = sanitizer.normalized();
+        String filtered = sanitizer.filtered();
+        record(imageFile, RunMetrics.Stage.SANITIZE, System.nanoTime() - start);
+
+        // 检查识别结果长度（作为置信度的代理指标）
+        if (normalized.isEmpty()) {
+            return failure(imageFile, OcrResult.Status.EMPTY, "", "未识别到文字");
+        }
+
+        // 如果过滤后结果为空，说明识别质量太低
+        if (filtered.isEmpty()) {
+            return failure(imageFile, OcrResult.Status.LOW_CONFIDENCE, normalized,
+                    "识别置信度过低 (<" + String.format("%.0f", confidenceThreshold) + "%)");
+        }
+
+        // 计算有效字符率（清理前后的比例，按码点计算）
+        double validCharRatio = (double) sanitizer.filteredCodePoints() / sanitizer.normalizedCodePoints() * 100;
+
+        // 如果有效字符率低于阈值，也认为置信度不足
+        if (validCharRatio < confidenceThreshold) {
+            return new OcrResult(imageFile, OcrResult.Status.LOW_CONFIDENCE, "", normalized, validCharRatio,
+                    "有效字符率过低 (" + String.format("%.1f", validCharRatio) + "% < "
+                            + String.format("%.0f", confidenceThreshold) + "%)", 0);
+        }
+
+        if (duplicateIndex != null) {
+            duplicateIndex.add(hash, profile(), validCharRatio, imageFile.getAbsolutePath(), filtered);
         }
-        // 使用正则表达式去除所有空白字符（包括空格、换行符 \n、回车符 \r、制表符 \t 等）
-        return text.replaceAll("\\s+", "").trim();
+        return new OcrResult(imageFile, OcrResult.Status.OK, filtered, normalized, validCharRatio, null, 0);
     }
 
     /**
-     * 过滤低置信度字符
-     * 仅保留: 中文字符、英文字母、数字
-     * 移除: 所有符号、特殊字符、标点等
+     * 调用 Tesseract 识别图片
+     * 已由 ImageDecoder 解码时先预处理，常驻模式下再以灰度直接缓冲区交给原生句柄；
+     * 未解码（旧模式且未启用预处理、近似重复检测）时走 doOCR(File) 的完整流程。
+     * 常驻模式下启用文字区域检测时只识别检测到的区域，区域中识别不出有效文字时再识别整张图片；
+     * 启用分级识别时先快速识别，Tesseract 置信度不足时再完整识别
      *
-     * @param text 原始文本
-     * @return 过滤后的文本
+     * @param imageFile 图片文件
+     * @param image     已解码的图片，null 表示未解码
+     * @return 原始识别文本
      */
-    private static String filterLowConfidenceChars(String text) {
-        if (text == null || text.isEmpty()) {
-            return "";
+    private String runEngine(File imageFile, BufferedImage image) throws Exception {
+        if (image == null) {
+            return tesseract.doOCR(imageFile);
+        }
+        if (preprocessor != null) {
+            long start = System.nanoTime();
+            image = preprocessor.process(image);
+            preprocessNanos += System.nanoTime() - start;
+        }
+        if (!persistent) {
+            return tesseract.doOCR(image);
+        }
+        ByteBuffer gray = decoder.toGray(image);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        List<Rectangle> regions = Collections.emptyList();
+        if (regionDetector != null) {
+            long start = System.nanoTime();
+            regions = regionDetector.detect(gray, width, height);
+            preprocessNanos += System.nanoTime() - start;
+        }
+
+        if (ladder != null) {
+            BufferedImage fast = ladder.prepareFast(image);
+            PersistentTesseract engine = fastEngine();
+            String text;
+            if (fast == image) {
+                text = recognize(engine, gray, width, height, regions);
+            } else {
+                List<Rectangle> fastRegions = TextRegionDetector.scale(regions, (double) fast.getWidth() / width,
+                        (double) fast.getHeight() / height, fast.getWidth(), fast.getHeight());
+                text = recognize(engine, decoder.toGray(fast), fast.getWidth(), fast.getHeight(), fastRegions);
+                // 灰度缓冲区已被缩小后的图片覆盖
+                gray = decoder.toGray(image);
+            }
+            sanitizer.sanitize(text);
+            if (!ladder.shouldEscalate(engine.getLastMeanConfidence(), engine.getLastWordCount(),
+                    sanitizer.filteredCodePoints(), confidenceThreshold)) {
+                return finish(engine, text, RecognitionLadder.TIER_FAST, regions.size());
+            }
         }
-        
-        StringBuilder result = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            // 保留: 中文字符 (4E00-9FFF)、英文字母、数字
-            if (isChinese(c) || Character.isLetter(c) || Character.isDigit(c)) {
-                result.append(c);
+
+        String text = recognize(tesseract, gray, width, height, regions);
+        if (!regions.isEmpty()) {
+            sanitizer.sanitize(text);
+            if (sanitizer.filteredCodePoints() == 0) {
+                // 检测到的区域中没有有效文字，退回识别整张图片
+                regions = Collections.emptyList();
+                text = tesseract.recognizeGray(gray, width, height);
             }
-            // 其他字符（符号、标点等）都会被过滤掉
         }
-        
-        return result.toString();
+        return finish(tesseract, text, ladder == null ? null : RecognitionLadder.TIER_FULL, regions.size());
     }
 
     /**
-     * 检查字符是否为中文
+     * 依次识别多帧图片的关键帧，合并各帧的文本
+     * 有效字符率达到阈值的帧才参与合并，都达不到时合并所有帧（由 evaluate 判定为置信度不足）；
+     * 结果的 Tesseract 置信度取参与合并的帧中最高的一个
      *
-     * @param c 待检查的字符
-     * @return true 如果是中文字符
+     * @param imageFile 图片文件
+     * @param frames    关键帧
+     * @return 合并后的识别文本
      */
-    private static boolean isChinese(char c) {
-        Character.UnicodeBlock ub = Character.UnicodeBlock.of(c);
-        return ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_C ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_D ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_E ||
-               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_F ||
-               ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS;
+    private String runFrames(File imageFile, List<BufferedImage> frames) throws Exception {
+        List<String> accepted = new ArrayList<>();
+        List<String> all = new ArrayList<>();
+        int bestConfidence = -1;
+        String bestTier = null;
+        for (BufferedImage frame : frames) {
+            lastEngineConfidence = -1;
+            lastTier = null;
+            sanitizer.sanitize(runEngine(imageFile, frame));
+            String normalized = sanitizer.normalized();
+            all.add(normalized);
+            if (sanitizer.normalizedCodePoints() > 0 && (double) sanitizer.filteredCodePoints()
+                    / sanitizer.normalizedCodePoints() * 100 >= confidenceThreshold) {
+                accepted.add(normalized);
+                if (lastEngineConfidence > bestConfidence) {
+                    bestConfidence = lastEngineConfidence;
+                    bestTier = lastTier;
+                }
+            }
+        }
+        lastEngineConfidence = bestConfidence;
+        lastTier = bestTier;
+        return FrameSampler.merge(accepted.isEmpty() ? all : accepted);
+    }
+
+    /**
+     * 识别整张图片或只识别其中的文字区域
+     */
+    private static String recognize(PersistentTesseract engine, ByteBuffer gray, int width, int height,
+                                    List<Rectangle> regions) throws Exception {
+        return regions.isEmpty()
+                ? engine.recognizeGray(gray, width, height)
+                : engine.recognizeGrayRegions(gray, width, height, regions);
+    }
+
+    /**
+     * 记录得到结果的引擎的置信度、识别级别和识别的区域数
+     */
+    private String finish(PersistentTesseract engine, String text, String tier, int regionCount) {
+        lastEngineConfidence = engine.getLastMeanConfidence();
+        lastTier = tier;
+        if (tier != null) {
+            ladder.recordFinished(tier);
+        }
+        if (regionDetector != null) {
+            regionDetector.recordRecognized(regionCount);
+        }
+        return text;
+    }
+
+    /**
+     * 快速识别引擎，第一次使用时创建
+     */
+    private PersistentTesseract fastEngine() {
+        if (fastTesseract == null) {
+            fastTesseract = new PersistentTesseract();
+            if (TESSDATA_PATH != null) {
+                fastTesseract.setDatapath(TESSDATA_PATH);
+            }
+            fastTesseract.setPageSegMode(ladder.getFastPageSegMode());
+        }
+        // 语言与上次相同时不会重新初始化原生句柄
+        fastTesseract.setLanguage(getLadderFastLanguage());
+        return fastTesseract;
+    }
+
+    /**
+     * 识别参数，参数相同的识别结果才能作为近似重复复用
+     */
+    private String profile() {
+        return language + "|" + String.format("%.2f", confidenceThreshold) + "|" + getRecognitionFingerprint();
+    }
+
+    private void record(File imageFile, RunMetrics.Stage stage, long nanos) {
+        if (metrics != null) {
+            metrics.record(imageFile, stage, nanos);
+        }
+    }
+
+    private static OcrResult failure(File imageFile, OcrResult.Status status, String rawText, String message) {
+        return new OcrResult(imageFile, status, "", rawText, 0, message, 0);
     }
 
     /**
-     * 检查文件是否为支持的图片格式
+     * 根据异常类型生成友好的提示
      *
-     * @param filePath 文件路径
-     * @return true 如果是支持的格式
+     * @param e 识别过程中的异常
+     * @return 提示信息
      */
-    private static boolean isSupportedFormat(String filePath) {
-        String lowerPath = filePath.toLowerCase();
-        return lowerPath.endsWith(".png") ||
-               lowerPath.endsWith(".jpg") ||
-               lowerPath.endsWith(".jpeg") ||
-               lowerPath.endsWith(".bmp") ||
-               lowerPath.endsWith(".tiff") ||
-               lowerPath.endsWith(".gif");
+    private static String describeError(Exception e) {
+        String errorMsg = e.getMessage();
+        if (errorMsg == null) {
+            errorMsg = e.getClass().getSimpleName();
+        }
+
+        if (errorMsg.contains("JFIF") || errorMsg.contains("JPEG")) {
+            return "图片文件格式有问题（非标准 JPEG）";
+        } else if (errorMsg.contains("图片") || errorMsg.contains("不存在")) {
+            return "图片文件问题";
+        }
+        return "OCR 识别异常: " + errorMsg;
     }
 
     /**
      * 设置识别语言
-     * 
+     * 常驻模式下语言变化会在下次识别时重新初始化原生句柄
+     *
      * @param language 语言代码 (例如: "chi_sim" 简体中文, "eng" 英文)
      */
-    public static void setLanguage(String language) {
+    public void setLanguage(String language) {
+        this.language = language;
         tesseract.setLanguage(language);
     }
 
     /**
-     * 设置置信度阈值（百分比）
-     * 低于此阈值的识别结果将被过滤
+     * 设置置信度阈值
+     *
+     * @param confidenceThreshold 置信度阈值，范围 0-100
+     */
+    public void setConfidenceThreshold(double confidenceThreshold) {
+        if (confidenceThreshold < 0 || confidenceThreshold > 100) {
+            throw new IllegalArgumentException("置信度阈值应在 0-100 之间: " + confidenceThreshold);
+        }
+        this.confidenceThreshold = confidenceThreshold;
+    }
+
+    /**
+     * 设置是否跟随配置：开启后每张图片识别前按当前配置和图片所在目录的覆盖配置更新语言和置信度阈值，
+     * 长时间运行时修改配置文件不需要重新启动
+     *
+     * @param followConfig true 表示跟随配置，false 表示始终使用创建时的语言和阈值
+     */
+    public void setFollowConfig(boolean followConfig) {
+        this.followConfig = followConfig;
+    }
+
+    /**
+     * 跟随配置时，按图片适用的配置更新语言、置信度阈值和分级识别的快速识别语言（语言变化时下次识别重新初始化原生句柄）
+     * 计算缓存键之前调用，缓存键与实际识别使用相同的语言和阈值
      *
-     * @param threshold 置信度阈值，范围 0-100，默认 50
-     *                  - 50: 保守（过滤大多数低质量识别）
-     *                  - 30: 宽松（接受较低质量识别）
-     *                  - 70: 严格（仅接受高质量识别）
+     * @param imageFile 即将识别的图片
      */
-    public static void setConfidenceThreshold(double threshold) {
-        if (threshold < 0 || threshold > 100) {
-            System.err.println("警告: 置信度阈值应在 0-100 之间，保持原值: " + confidenceThreshold);
+    public void configureFor(File imageFile) {
+        if (!followConfig) {
             return;
         }
-        confidenceThreshold = threshold;
-        System.out.println("✓ 置信度阈值已设置为: " + String.format("%.0f", threshold) + "%");
+        OcrSettings settings = OcrConfig.forFile(imageFile);
+        if (!settings.getLanguage().equals(language)) {
+            setLanguage(settings.getLanguage());
+        }
+        confidenceThreshold = settings.getConfidenceThreshold();
+        if (ladder != null) {
+            fastLanguage = RecognitionLadder.fastLanguageFor(settings.getLadderFastLanguage(), settings.getLanguage());
+        }
+    }
+
+    /**
+     * @return 分级识别当前使用的快速识别语言，未启用分级识别时返回空字符串
+     */
+    public String getLadderFastLanguage() {
+        if (ladder == null) {
+            return "";
+        }
+        return fastLanguage != null ? fastLanguage : ladder.getFastLanguage();
+    }
+
+    /**
+     * 设置分级识别的快速识别语言（子进程按主进程传来的语言识别）
+     *
+     * @param fastLanguage 快速识别语言，null 或空字符串表示使用分级识别策略创建时的语言
+     */
+    public void setLadderFastLanguage(String fastLanguage) {
+        this.fastLanguage = fastLanguage == null || fastLanguage.isEmpty() ? null : fastLanguage;
+    }
+
+    /**
+     * 设置近似重复索引
+     * 识别前先与索引中的图片比较，近似重复时直接复用识别文本；识别成功的图片会加入索引
+     *
+     * @param duplicateIndex 近似重复索引，null 表示不检测
+     */
+    public void setDuplicateIndex(PerceptualHashIndex duplicateIndex) {
+        this.duplicateIndex = duplicateIndex;
+    }
+
+    /**
+     * 设置分阶段耗时统计
+     *
+     * @param metrics 运行统计，可以被多个实例共享；null 表示不统计
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 设置文字区域检测器，只在常驻模式下生效
+     *
+     * @param regionDetector 文字区域检测器，可以被多个实例共享；null 表示总是识别整张图片
+     */
+    public void setRegionDetector(TextRegionDetector regionDetector) {
+        this.regionDetector = persistent ? regionDetector : null;
+    }
+
+    /**
+     * 设置解码像素预算，所有工作线程共享，限制同时解码的图片占用的堆内存
+     *
+     * @param pixelBudget 像素预算，null 表示不限制
+     */
+    public void setPixelBudget(PixelBudget pixelBudget) {
+        decoder.setLimits(OcrConfig.getDecodeMaxPixels(), pixelBudget);
+    }
+
+    /**
+     * 设置多帧图片的关键帧采样器
+     * 动图 GIF、多页 TIFF 识别若干个画面有变化的关键帧并合并文本，而不是只识别第一帧
+     *
+     * @param frameSampler 关键帧采样器，可以被多个实例共享；null 表示只识别第一帧
+     */
+    public void setFrameSampler(FrameSampler frameSampler) {
+        this.frameSampler = frameSampler;
+    }
+
+    /**
+     * 设置分级识别策略，只在常驻模式下生效（旧模式拿不到 Tesseract 的置信度）
+     *
+     * @param ladder 分级识别策略，可以被多个实例共享；null 表示每张图片都直接完整识别
+     */
+    public void setLadder(RecognitionLadder ladder) {
+        if (fastTesseract != null) {
+            fastTesseract.close();
+            fastTesseract = null;
+        }
+        this.ladder = persistent ? ladder : null;
+    }
+
+    /**
+     * 设置页面分割模式
+     * 常驻模式下模式变化会在下次识别时重新初始化原生句柄
+     *
+     * @param mode Tesseract 页面分割模式 (例如: 3 自动, 6 单个文本块, 7 单行)
+     */
+    public void setPageSegMode(int mode) {
+        tesseract.setPageSegMode(mode);
+    }
+
+    /**
+     * @return 当前识别语言
+     */
+    public String getLanguage() {
+        return language;
     }
 
     /**
@@ -216,7 +601,58 @@ public class OCRService {
      *
      * @return 当前置信度阈值
      */
-    public static double getConfidenceThreshold() {
+    public double getConfidenceThreshold() {
         return confidenceThreshold;
     }
+
+    /**
+     * @return 是否为常驻模式
+     */
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * @return 描述图片预处理方式、文字区域检测和分级识别参数的字符串（缓存键的一部分，方式不同的结果不能互相复用）
+     */
+    public String getRecognitionFingerprint() {
+        String fingerprint = preprocessor == null ? "raw" : preprocessor.fingerprint();
+        if (regionDetector != null) {
+            fingerprint += "+" + regionDetector.fingerprint();
+        }
+        return ladder == null ? fingerprint : fingerprint + "+" + ladder.fingerprint(getLadderFastLanguage());
+    }
+
+    /**
+     * 某个文件的识别方式：多帧图片（GIF、TIFF）还包括关键帧采样参数，其他图片与 getRecognitionFingerprint() 相同，
+     * 启用关键帧采样不会使其他图片的缓存失效
+     *
+     * @param imageFile 图片文件
+     * @return 识别方式描述（缓存键的一部分）
+     */
+    public String getRecognitionFingerprint(File imageFile) {
+        String fingerprint = getRecognitionFingerprint();
+        if (frameSampler != null && FrameSampler.isCandidate(imageFile)) {
+            fingerprint += "+" + frameSampler.fingerprint();
+        }
+        return fingerprint;
+    }
+
+    /**
+     * @return 原生句柄被初始化的次数（包括快速识别引擎）
+     */
+    public int getEngineInitCount() {
+        return tesseract.getInitCount() + (fastTesseract == null ? 0 : fastTesseract.getInitCount());
+    }
+
+    /**
+     * 释放常驻的原生句柄
+     */
+    @Override
+    public void close() {
+        tesseract.close();
+        if (fastTesseract != null) {
+            fastTesseract.close();
+        }
+    }
 }
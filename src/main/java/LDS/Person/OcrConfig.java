@@ -1,44 +1,298 @@
 package LDS.Person;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * OCR 配置加载器
- * 从 ocr.properties 文件中读取配置
+ * 先读取 classpath 中的 ocr.properties，再叠加外部配置文件（--config 参数或 -Docr.config=路径），
+ * 一次性解析为不可变的 OcrSettings 并整体替换；getter 只读取当前快照，不加锁、不解析字符串。
+ *
+ * 长时间运行时可以调用 startWatching() 监听外部配置文件，修改保存后自动重新加载，
+ * 通过 addReloadListener() 注册的回调（例如调整工作线程数）随后执行。
+ * IMG 下的子目录中可以放置 .ocr.properties 覆盖该目录（及其子目录）中图片的配置，见 forFile()
  */
 public class OcrConfig {
     private static final String CONFIG_FILE = "ocr.properties";
-    private static final Properties properties = new Properties();
-    
-    // 默认值常量
-    private static final String DEFAULT_LANGUAGE = "chi_sim+eng";
-    private static final double DEFAULT_CONFIDENCE_THRESHOLD = 50.0;
-    private static final boolean DEFAULT_ENABLE_CHAR_FILTER = true;
-    private static final boolean DEFAULT_ENABLE_VERBOSE = false;
+    // 指定外部配置文件的系统属性
+    public static final String CONFIG_PROPERTY = "ocr.config";
+    // 目录覆盖文件名
+    public static final String OVERRIDE_FILE = ".ocr.properties";
+    // 目录覆盖文件的检查间隔，间隔内直接使用缓存的结果
+    private static final long OVERRIDE_RECHECK_MS = 2000;
+    // 配置文件变化后等待编辑器写完再重新加载
+    private static final long RELOAD_DEBOUNCE_MS = 300;
+
+    private static final AtomicReference<OcrSettings> current = new AtomicReference<>();
+    private static final Map<Path, DirectorySettings> directories = new ConcurrentHashMap<>();
+    private static final List<Consumer<OcrSettings>> listeners = new CopyOnWriteArrayList<>();
+    private static volatile Path configFile;
+    private static volatile Path overrideRoot;
+    private static WatchService watcher;
 
     static {
-        loadConfig();
+        String path = System.getProperty(CONFIG_PROPERTY);
+        if (path != null && !path.trim().isEmpty()) {
+            configFile = Paths.get(path.trim()).toAbsolutePath().normalize();
+        }
+        OcrSettings settings;
+        try {
+            settings = new OcrSettings(loadConfig());
+            System.out.println("✓ 已加载 OCR 配置文件" + (configFile != null ? "（外部配置: " + configFile + "）" : ""));
+        } catch (IOException e) {
+            System.err.println("错误: 无法读取外部配置文件 " + configFile + ": " + e.getMessage() + "，只使用 " + CONFIG_FILE);
+            settings = new OcrSettings(loadClasspathConfig());
+        }
+        current.set(settings);
+    }
+
+    /**
+     * 某个目录解析好的配置（叠加了该目录及上级目录中的覆盖文件）
+     */
+    private static final class DirectorySettings {
+        final OcrSettings base;
+        final OcrSettings settings;
+        // 覆盖文件的修改时间和大小的组合，文件变化时重新解析
+        final long stamp;
+        volatile long checkedAtMs;
+
+        DirectorySettings(OcrSettings base, OcrSettings settings, long stamp, long checkedAtMs) {
+            this.base = base;
+            this.settings = settings;
+            this.stamp = stamp;
+            this.checkedAtMs = checkedAtMs;
+        }
     }
 
     /**
-     * 加载配置文件
+     * 读取 classpath 中的配置文件和外部配置文件
+     *
+     * @return 合并后的配置项
+     * @throws IOException 外部配置文件不存在或无法读取
      */
-    private static void loadConfig() {
+    private static Properties loadConfig() throws IOException {
+        Properties properties = loadClasspathConfig();
+        Path file = configFile;
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+        }
+        return properties;
+    }
+
+    private static Properties loadClasspathConfig() {
+        Properties properties = new Properties();
         try (InputStream input = OcrConfig.class.getClassLoader().getResourceAsStream(CONFIG_FILE)) {
             if (input == null) {
                 System.err.println("警告: 未找到 " + CONFIG_FILE + " 文件，使用默认配置");
-                return;
+                return properties;
             }
             
             properties.load(input);
-            System.out.println("✓ 已加载 OCR 配置文件");
             
         } catch (IOException e) {
             System.err.println("错误: 无法读取 " + CONFIG_FILE + " 文件");
             e.printStackTrace();
         }
+        return properties;
+    }
+
+    /**
+     * @return 当前的配置快照
+     */
+    public static OcrSettings settings() {
+        return current.get();
+    }
+
+    /**
+     * 使用外部配置文件（叠加在 classpath 中的 ocr.properties 之上）并立即重新加载
+     *
+     * @param file 配置文件路径
+     * @return false 表示文件无法读取，配置保持不变
+     */
+    public static boolean useConfigFile(Path file) {
+        Path previous = configFile;
+        configFile = file.toAbsolutePath().normalize();
+        if (!reload()) {
+            configFile = previous;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return 外部配置文件，未使用时为 null
+     */
+    public static Path getConfigFile() {
+        return configFile;
+    }
+
+    /**
+     * 设置目录覆盖的根目录：只有该目录下的图片会查找 .ocr.properties
+     *
+     * @param root 根目录（通常是 IMG 文件夹），null 表示不使用目录覆盖
+     */
+    public static void setOverrideRoot(Path root) {
+        overrideRoot = root == null ? null : root.toAbsolutePath().normalize();
+        directories.clear();
+    }
+
+    /**
+     * 获取某张图片适用的配置：当前配置叠加从根目录到图片所在目录的各级 .ocr.properties（近的优先）
+     * 结果按目录缓存，覆盖文件每隔几秒才重新检查一次，识别线程调用时不加锁
+     *
+     * @param imageFile 图片文件
+     * @return 配置快照
+     */
+    public static OcrSettings forFile(File imageFile) {
+        OcrSettings base = current.get();
+        Path root = overrideRoot;
+        File parent = imageFile.getAbsoluteFile().getParentFile();
+        if (root == null || parent == null) {
+            return base;
+        }
+        Path dir = parent.toPath().normalize();
+        if (!dir.startsWith(root)) {
+            return base;
+        }
+        long now = System.currentTimeMillis();
+        DirectorySettings cached = directories.get(dir);
+        if (cached != null && cached.base == base && now - cached.checkedAtMs < OVERRIDE_RECHECK_MS) {
+            return cached.settings;
+        }
+        List<Path> chain = new ArrayList<>();
+        for (Path path = dir; path != null && path.startsWith(root); path = path.getParent()) {
+            chain.add(0, path.resolve(OVERRIDE_FILE));
+        }
+        long stamp = 17;
+        for (Path file : chain) {
+            File override = file.toFile();
+            stamp = stamp * 31 + override.lastModified();
+            stamp = stamp * 31 + override.length();
+        }
+        if (cached != null && cached.base == base && cached.stamp == stamp) {
+            cached.checkedAtMs = now;
+            return cached.settings;
+        }
+        OcrSettings settings = resolve(base, chain, dir);
+        directories.put(dir, new DirectorySettings(base, settings, stamp, now));
+        return settings;
+    }
+
+    private static OcrSettings resolve(OcrSettings base, List<Path> chain, Path dir) {
+        Properties overrides = new Properties();
+        boolean found = false;
+        for (Path file : chain) {
+            if (!Files.isRegularFile(file)) {
+                continue;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                overrides.load(reader);
+                found = true;
+            } catch (IOException | IllegalArgumentException e) {
+                AsyncLogger.warn("警告: 无法读取目录配置 " + file + "，忽略: " + e.getMessage());
+            }
+        }
+        if (!found) {
+            return base;
+        }
+        AsyncLogger.info("✓ 目录配置生效: " + dir);
+        return base.with(overrides);
+    }
+
+    /**
+     * 注册配置重新加载后的回调（在重新加载的线程中执行，配置项没有变化时不回调）
+     *
+     * @param listener 回调，参数为新的配置
+     */
+    public static void addReloadListener(Consumer<OcrSettings> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 监听外部配置文件，文件修改后自动重新加载（未使用外部配置文件时不监听）
+     *
+     * @return true 表示已开始监听
+     */
+    public static synchronized boolean startWatching() {
+        Path file = configFile;
+        if (file == null || watcher != null || file.getParent() == null) {
+            return watcher != null;
+        }
+        try {
+            WatchService service = file.getFileSystem().newWatchService();
+            file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            Thread thread = new Thread(() -> watch(service, file), "config-watcher");
+            thread.setDaemon(true);
+            thread.start();
+            watcher = service;
+            return true;
+        } catch (IOException e) {
+            System.err.println("警告: 无法监听配置文件，修改后需要重新启动: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 停止监听配置文件
+     */
+    public static synchronized void stopWatching() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                // 监听线程随之结束
+            }
+            watcher = null;
+        }
+    }
+
+    private static void watch(WatchService service, Path file) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // 编辑器保存时可能产生多个事件，等写完后只加载一次
+                Thread.sleep(RELOAD_DEBOUNCE_MS);
+                while ((key = service.poll()) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 停止监听
+        }
     }
 
     /**
@@ -47,7 +301,7 @@ public class OcrConfig {
      * @return 语言代码（如 "chi_sim", "eng", "chi_sim+eng"）
      */
     public static String getLanguage() {
-        return properties.getProperty("ocr.language", DEFAULT_LANGUAGE);
+        return current.get().getLanguage();
     }
 
     /**
@@ -56,20 +310,350 @@ public class OcrConfig {
      * @return 置信度阈值（0-100）
      */
     public static double getConfidenceThreshold() {
-        String threshold = properties.getProperty("ocr.confidence.threshold", 
-                                                 String.valueOf(DEFAULT_CONFIDENCE_THRESHOLD));
-        try {
-            double value = Double.parseDouble(threshold);
-            // 检查范围
-            if (value < 0 || value > 100) {
-                System.err.println("警告: 置信度阈值超出范围 (0-100)，使用默认值 " + DEFAULT_CONFIDENCE_THRESHOLD);
-                return DEFAULT_CONFIDENCE_THRESHOLD;
-            }
-            return value;
-        } catch (NumberFormatException e) {
-            System.err.println("警告: 置信度阈值格式错误，使用默认值 " + DEFAULT_CONFIDENCE_THRESHOLD);
-            return DEFAULT_CONFIDENCE_THRESHOLD;
-        }
+        return current.get().getConfidenceThreshold();
+    }
+
+    /**
+     * 获取 OCR 工作线程数
+     * 配置为 0 或负数时使用 CPU 核数
+     *
+     * @return 工作线程数（至少为 1）
+     */
+    public static int getWorkerCount() {
+        return current.get().getWorkerCount();
+    }
+
+    /**
+     * 是否使用常驻 OCR 引擎
+     *
+     * @return true 表示每个工作线程只初始化一次 Tesseract 并复用
+     */
+    public static boolean isPersistentEngine() {
+        return current.get().isPersistentEngine();
+    }
+
+    /**
+     * 是否启用 OCR 结果缓存
+     *
+     * @return true 表示相同内容的图片直接复用之前的识别结果
+     */
+    public static boolean isCacheEnabled() {
+        return current.get().isCacheEnabled();
+    }
+
+    /**
+     * 获取 OCR 结果缓存的最大条目数
+     *
+     * @return 最大条目数（至少为 1）
+     */
+    public static int getCacheMaxEntries() {
+        return current.get().getCacheMaxEntries();
+    }
+
+    /**
+     * 获取扫描队列容量（扫描到但尚未开始识别的文件数上限）
+     *
+     * @return 队列容量（至少为 1）
+     */
+    public static int getScanQueueCapacity() {
+        return current.get().getScanQueueCapacity();
+    }
+
+    /**
+     * 获取并行遍历目录的线程数
+     *
+     * @return 线程数（至少为 1）
+     */
+    public static int getScanParallelism() {
+        return current.get().getScanParallelism();
+    }
+
+    /**
+     * 获取每批重命名的最大文件数
+     *
+     * @return 批大小（至少为 1）
+     */
+    public static int getRenameBatchSize() {
+        return current.get().getRenameBatchSize();
+    }
+
+    /**
+     * 监听模式下，新文件的大小和修改时间需要保持不变多久才开始识别
+     *
+     * @return 防抖时间（毫秒）
+     */
+    public static int getWatchDebounceMs() {
+        return current.get().getWatchDebounceMs();
+    }
+
+    /**
+     * 监听模式下，从发现新文件到重命名完成的目标延迟
+     *
+     * @return 目标延迟（毫秒）
+     */
+    public static int getWatchLatencyTargetMs() {
+        return current.get().getWatchLatencyTargetMs();
+    }
+
+    /**
+     * 是否在识别前预处理图片（缩小、灰度化、二值化、裁边）
+     *
+     * @return true 表示启用预处理
+     */
+    public static boolean isPreprocessEnabled() {
+        return current.get().isPreprocessEnabled();
+    }
+
+    /**
+     * 预处理缩小图片时的目标文字行高
+     *
+     * @return 文字行高（像素）
+     */
+    public static int getPreprocessTextHeight() {
+        return current.get().getPreprocessTextHeight();
+    }
+
+    /**
+     * 预处理缩小图片时的最小缩放比例
+     *
+     * @return 缩放比例 (0-1]
+     */
+    public static double getPreprocessMinScale() {
+        return current.get().getPreprocessMinScale();
+    }
+
+    /**
+     * 预处理时是否自适应二值化
+     *
+     * @return true 表示二值化，false 表示只做灰度化
+     */
+    public static boolean isPreprocessBinarize() {
+        return current.get().isPreprocessBinarize();
+    }
+
+    /**
+     * 预处理时是否裁掉空白边框
+     *
+     * @return true 表示裁边
+     */
+    public static boolean isPreprocessTrim() {
+        return current.get().isPreprocessTrim();
+    }
+
+    /**
+     * 是否检测近似重复图片（感知哈希），近似重复时复用之前的识别文本
+     *
+     * @return true 表示启用
+     */
+    public static boolean isPhashEnabled() {
+        return current.get().isPhashEnabled();
+    }
+
+    /**
+     * 视为近似重复的最大汉明距离
+     *
+     * @return 最大汉明距离 (0-31)
+     */
+    public static int getPhashMaxDistance() {
+        return current.get().getPhashMaxDistance();
+    }
+
+    /**
+     * 是否启用分级识别：先快速识别，置信度不足时再完整识别（需要常驻引擎）
+     *
+     * @return true 表示启用
+     */
+    public static boolean isLadderEnabled() {
+        return current.get().isLadderEnabled();
+    }
+
+    /**
+     * 快速识别使用的语言
+     *
+     * @return 语言代码，空字符串表示取 ocr.language 中的第一个语言
+     */
+    public static String getLadderFastLanguage() {
+        return current.get().getLadderFastLanguage();
+    }
+
+    /**
+     * 快速识别使用的页面分割模式
+     *
+     * @return 页面分割模式 (0-13)
+     */
+    public static int getLadderFastPageSegMode() {
+        return current.get().getLadderFastPageSegMode();
+    }
+
+    /**
+     * 快速识别时图片的最长边，更大的图片先缩小
+     *
+     * @return 最长边（像素）
+     */
+    public static int getLadderFastMaxSide() {
+        return current.get().getLadderFastMaxSide();
+    }
+
+    /**
+     * 是否只识别检测到的文字区域（需要常驻引擎），找不到区域时识别整张图片
+     *
+     * @return true 表示启用
+     */
+    public static boolean isRegionEnabled() {
+        return current.get().isRegionEnabled();
+    }
+
+    /**
+     * 文字区域占图片面积的最大比例，超过时识别整张图片
+     *
+     * @return 最大覆盖比例 (0-1]
+     */
+    public static double getRegionMaxCoverage() {
+        return current.get().getRegionMaxCoverage();
+    }
+
+    /**
+     * 是否记录分阶段耗时并在运行结束时写出运行报告（run-reports 目录）
+     *
+     * @return true 表示启用
+     */
+    public static boolean isMetricsEnabled() {
+        return current.get().isMetricsEnabled();
+    }
+
+    /**
+     * 单张图片解码后的最大像素数，超过时降采样解码（极长的截图只读取开头部分）
+     *
+     * @return 像素数（至少为 1）
+     */
+    public static int getDecodeMaxPixels() {
+        return current.get().getDecodeMaxPixels();
+    }
+
+    /**
+     * 所有工作线程同时解码的图片最多占用的堆内存比例（相对 -Xmx）
+     *
+     * @return 比例 (0-1]
+     */
+    public static double getDecodeHeapShare() {
+        return current.get().getDecodeHeapShare();
+    }
+
+    /**
+     * 是否识别动图 GIF、多页 TIFF 的多个关键帧（否则只识别第一帧）
+     *
+     * @return true 表示启用
+     */
+    public static boolean isFramesEnabled() {
+        return current.get().isFramesEnabled();
+    }
+
+    /**
+     * 每张多帧图片最多识别的关键帧数
+     *
+     * @return 帧数（至少为 1）
+     */
+    public static int getFramesMax() {
+        return current.get().getFramesMax();
+    }
+
+    /**
+     * 作为新关键帧的最小画面变化（缩略图中变化最大区块的平均像素差）
+     *
+     * @return 像素差 (0-255)
+     */
+    public static double getFramesDiffThreshold() {
+        return current.get().getFramesDiffThreshold();
+    }
+
+    /**
+     * 是否在子进程中识别（原生 Tesseract 崩溃或内存增长不影响主进程）
+     *
+     * @return true 表示每个工作线程使用一个 OCR 子进程
+     */
+    public static boolean isWorkerProcessEnabled() {
+        return current.get().isWorkerProcessEnabled();
+    }
+
+    /**
+     * 每个 OCR 子进程最多识别的图片数，达到后换成新的子进程
+     *
+     * @return 图片数（至少为 1）
+     */
+    public static int getWorkerProcessMaxImages() {
+        return current.get().getWorkerProcessMaxImages();
+    }
+
+    /**
+     * OCR 子进程识别单张图片的最长时间，超时视为子进程卡死
+     *
+     * @return 超时时间（毫秒）
+     */
+    public static int getWorkerProcessTimeoutMs() {
+        return current.get().getWorkerProcessTimeoutMs();
+    }
+
+    /**
+     * 是否按估计耗时调度识别（耗时长的图片先识别）
+     *
+     * @return true 表示启用，false 表示按扫描顺序识别
+     */
+    public static boolean isScheduleEnabled() {
+        return current.get().isScheduleEnabled();
+    }
+
+    /**
+     * 调度窗口：同时提交给工作线程池、参与按耗时排序的最大文件数
+     *
+     * @return 窗口大小（至少为 1）
+     */
+    public static int getScheduleWindow() {
+        return current.get().getScheduleWindow();
+    }
+
+    /**
+     * 耗时估计模型：每张图片的基础耗时
+     *
+     * @return 耗时（毫秒）
+     */
+    public static double getScheduleCostBaseMs() {
+        return current.get().getScheduleCostBaseMs();
+    }
+
+    /**
+     * 耗时估计模型：每百万像素的耗时
+     *
+     * @return 耗时（毫秒）
+     */
+    public static double getScheduleCostPerMegapixelMs() {
+        return current.get().getScheduleCostPerMegapixelMs();
+    }
+
+    /**
+     * 耗时估计模型：每 MB 文件大小的耗时
+     *
+     * @return 耗时（毫秒）
+     */
+    public static double getScheduleCostPerMegabyteMs() {
+        return current.get().getScheduleCostPerMegabyteMs();
+    }
+
+    /**
+     * 是否把识别文字记入全文索引（供 CaptionSearch 查询）
+     *
+     * @return true 表示启用
+     */
+    public static boolean isIndexEnabled() {
+        return current.get().isIndexEnabled();
+    }
+
+    /**
+     * 全文索引每个段的记录数，攒够后写出一个新段
+     *
+     * @return 每个段的记录数
+     */
+    public static int getIndexSegmentSize() {
+        return current.get().getIndexSegmentSize();
     }
 
     /**
@@ -78,9 +662,7 @@ public class OcrConfig {
      * @return true 表示启用（仅保留中文、英文、数字）
      */
     public static boolean isEnableCharFilter() {
-        String value = properties.getProperty("ocr.enable.char.filter", 
-                                             String.valueOf(DEFAULT_ENABLE_CHAR_FILTER));
-        return Boolean.parseBoolean(value);
+        return current.get().isEnableCharFilter();
     }
 
     /**
@@ -89,9 +671,7 @@ public class OcrConfig {
      * @return true 表示启用详细输出
      */
     public static boolean isEnableVerbose() {
-        String value = properties.getProperty("ocr.enable.verbose", 
-                                            String.valueOf(DEFAULT_ENABLE_VERBOSE));
-        return Boolean.parseBoolean(value);
+        return current.get().isEnableVerbose();
     }
 
     /**
@@ -101,17 +681,52 @@ public class OcrConfig {
         System.out.println("========================================");
         System.out.println("       当前 OCR 配置");
         System.out.println("========================================");
+        System.out.println("配置文件: " + CONFIG_FILE + (configFile != null ? " + " + configFile : ""));
         System.out.println("语言: " + getLanguage());
         System.out.println("置信度阈值: " + String.format("%.0f", getConfidenceThreshold()) + "%");
+        System.out.println("工作线程数: " + getWorkerCount());
+        System.out.println("常驻引擎: " + (isPersistentEngine() ? "开启" : "关闭"));
+        System.out.println("图片预处理: " + (isPreprocessEnabled() ? "开启" : "关闭"));
+        System.out.println("分级识别: " + (isLadderEnabled() ? "开启 (快速识别最长边 " + getLadderFastMaxSide()
+                + "px, 页面分割模式 " + getLadderFastPageSegMode() + ")" : "关闭"));
+        System.out.println("文字区域检测: " + (isRegionEnabled() ? "开启 (最大覆盖 "
+                + String.format("%.0f", getRegionMaxCoverage() * 100) + "%)" : "关闭"));
+        System.out.println("近似重复检测: " + (isPhashEnabled() ? "开启 (最大距离 " + getPhashMaxDistance() + ")" : "关闭"));
+        System.out.println("详细日志: " + (isEnableVerbose() ? "开启 (输出每个文件的识别详情)" : "关闭 (只输出进度和跳过的文件)"));
+        System.out.println("结果缓存: " + (isCacheEnabled() ? "开启 (最多 " + getCacheMaxEntries() + " 条)" : "关闭"));
+        System.out.println("解码内存: 单张最多 " + getDecodeMaxPixels() / 1000000 + " 百万像素，同时解码最多占用堆内存的 "
+                + String.format("%.0f", getDecodeHeapShare() * 100) + "%");
+        System.out.println("多帧图片: " + (isFramesEnabled() ? "开启 (每张最多识别 " + getFramesMax() + " 个关键帧)" : "关闭 (只识别第一帧)"));
+        System.out.println("子进程识别: " + (isWorkerProcessEnabled() ? "开启 (每个子进程最多 " + getWorkerProcessMaxImages()
+                + " 张，堆内存上限 " + OcrWorkerProcess.childHeapMb() + "MB)" : "关闭"));
+        System.out.println("文字索引: " + (isIndexEnabled() ? "开启 (每段 " + getIndexSegmentSize() + " 条)" : "关闭"));
+        System.out.println("耗时调度: " + (isScheduleEnabled() ? "开启 (大图优先，窗口 " + getScheduleWindow() + " 个文件)" : "关闭"));
         System.out.println("========================================");
         System.out.println();
     }
 
     /**
      * 重新加载配置文件
+     * 解析成功后整体替换当前配置，配置项有变化时通知回调；读取失败时保留当前配置
+     *
+     * @return false 表示读取失败
      */
-    public static void reload() {
-        properties.clear();
-        loadConfig();
+    public static boolean reload() {
+        OcrSettings settings;
+        try {
+            settings = new OcrSettings(loadConfig());
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("警告: 无法读取配置文件 " + configFile + "，保留当前配置: " + e.getMessage());
+            return false;
+        }
+        OcrSettings previous = current.getAndSet(settings);
+        directories.clear();
+        if (!settings.sameAs(previous)) {
+            AsyncLogger.info("✓ 已重新加载 OCR 配置" + (configFile != null ? ": " + configFile : ""));
+            for (Consumer<OcrSettings> listener : listeners) {
+                listener.accept(settings);
+            }
+        }
+        return true;
     }
 }
@@ -0,0 +1,186 @@
+package LDS.Person;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单张图片识别耗时和准确率对比工具
+ * 在同一组图片上分别以旧模式（每次 doOCR 重新初始化 Tesseract）、
+ * 常驻模式（原生句柄只初始化一次）、常驻 + 图片预处理模式和常驻 + 分级识别模式识别，输出每张图片的耗时统计。
+ * 准确率以文件名（去掉扩展名）为参考答案计算字符准确率，适用于已人工校对过文件名的样本集；
+ * 同时统计每张图片在识别线程上的平均堆内存分配量（需要 HotSpot 的线程分配统计）
+ * 注意：本工具只识别，不会重命名文件
+ */
+public class OcrLatencyCompare {
+    // 每种模式的预热轮数，避免 JIT 和文件缓存影响第一种模式
+    private static final int WARMUP_ROUNDS = 1;
+
+    public static void main(String[] args) {
+        System.out.println("========================================");
+        System.out.println("    OCR 单张耗时对比 - Latency Compare");
+        System.out.println("========================================");
+        System.out.println();
+
+        String projectRoot = System.getProperty("user.dir");
+        String imgFolder = args.length > 0 ? args[0] : projectRoot + File.separator + "IMG";
+        List<File> imageFiles = ImageScanner.scanImages(imgFolder);
+        if (imageFiles.isEmpty()) {
+            System.out.println("未找到任何支持的图片文件: " + imgFolder);
+            return;
+        }
+        System.out.println("图片文件数: " + imageFiles.size());
+        System.out.println();
+
+        String language = OcrConfig.getLanguage();
+        double threshold = OcrConfig.getConfidenceThreshold();
+
+        // 预处理模式总是与当前路径对比，配置中未启用时使用配置中的参数临时创建
+        ImagePreprocessor preprocessor = new ImagePreprocessor(OcrConfig.getPreprocessTextHeight(),
+                OcrConfig.getPreprocessMinScale(), OcrConfig.isPreprocessBinarize(), OcrConfig.isPreprocessTrim());
+
+        List<Long> legacy = measure(new OCRService(language, threshold, false, null), imageFiles, "旧模式 doOCR(File)");
+        List<Long> persistent = measure(new OCRService(language, threshold, true, null), imageFiles, "常驻模式");
+        List<Long> preprocessed = measure(new OCRService(language, threshold, true, preprocessor), imageFiles,
+                "常驻 + 预处理");
+
+        // 分级识别同样总是参与对比，参数取自配置文件
+        RecognitionLadder ladder = RecognitionLadder.fromConfigParameters(language);
+        OCRService laddered = new OCRService(language, threshold, true, null);
+        laddered.setLadder(ladder);
+        List<Long> tiered = measure(laddered, imageFiles, "常驻 + 分级识别");
+        System.out.println("  分级识别: 快速识别完成 " + ladder.getFastCount() + " 张，升级为完整识别 "
+                + ladder.getFullCount() + " 张");
+        System.out.println();
+
+        System.out.println("========================================");
+        double legacyAvg = average(legacy);
+        double persistentAvg = average(persistent);
+        double preprocessedAvg = average(preprocessed);
+        double tieredAvg = average(tiered);
+        if (persistentAvg > 0) {
+            System.out.println("常驻模式平均耗时加速比: " + String.format("%.2f", legacyAvg / persistentAvg) + "x");
+        }
+        if (preprocessedAvg > 0) {
+            System.out.println("预处理平均耗时加速比(相对常驻模式): "
+                    + String.format("%.2f", persistentAvg / preprocessedAvg) + "x");
+        }
+        if (tieredAvg > 0) {
+            System.out.println("分级识别平均耗时加速比(相对常驻模式): "
+                    + String.format("%.2f", persistentAvg / tieredAvg) + "x");
+        }
+        System.out.println("========================================");
+    }
+
+    /**
+     * 使用指定引擎识别所有图片并输出耗时统计
+     *
+     * @param service    OCR 服务
+     * @param imageFiles 图片列表
+     * @param label      模式名称
+     * @return 每张图片的耗时（毫秒）
+     */
+    private static List<Long> measure(OCRService service, List<File> imageFiles, String label) {
+        List<Long> durations = new ArrayList<>();
+        double accuracySum = 0;
+        int successCount = 0;
+        try (service) {
+            for (int round = 0; round < WARMUP_ROUNDS; round++) {
+                service.recognize(imageFiles.get(0));
+            }
+            long allocatedBefore = allocatedBytes();
+            for (File imageFile : imageFiles) {
+                long startTime = System.nanoTime();
+                OcrResult result = service.recognize(imageFile);
+                durations.add((System.nanoTime() - startTime) / 1_000_000);
+                accuracySum += characterAccuracy(result.getText(), referenceText(imageFile));
+                if (result.isSuccess()) {
+                    successCount++;
+                }
+            }
+            long allocated = allocatedBytes() - allocatedBefore;
+
+            List<Long> sorted = new ArrayList<>(durations);
+            Collections.sort(sorted);
+            System.out.println("[" + label + "]");
+            System.out.println("  平均: " + String.format("%.1f", average(durations)) + "ms");
+            System.out.println("  p50: " + percentile(sorted, 50) + "ms");
+            System.out.println("  p95: " + percentile(sorted, 95) + "ms");
+            System.out.println("  最大: " + sorted.get(sorted.size() - 1) + "ms");
+            if (allocatedBefore >= 0) {
+                System.out.println("  平均堆分配: " + allocated / imageFiles.size() / 1024 + "KB/张");
+            }
+            System.out.println("  识别成功: " + successCount + "/" + imageFiles.size());
+            System.out.println("  字符准确率(以文件名为参考): "
+                    + String.format("%.1f", accuracySum / imageFiles.size() * 100) + "%");
+            if (service.isPersistent()) {
+                System.out.println("  原生句柄初始化次数: " + service.getEngineInitCount());
+            }
+            System.out.println();
+        }
+        return durations;
+    }
+
+    /**
+     * 以文件名（去掉扩展名和重名后缀 _2、_3 等）作为参考答案
+     */
+    private static String referenceText(File imageFile) {
+        String name = imageFile.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        return TextSanitizer.normalize(name.replaceFirst("_\\d+$", ""));
+    }
+
+    /**
+     * 字符准确率 = 1 - 编辑距离 / 参考文本长度，最低为 0
+     */
+    private static double characterAccuracy(String recognized, String reference) {
+        if (reference.isEmpty()) {
+            return recognized.isEmpty() ? 1 : 0;
+        }
+        int[] previous = new int[reference.length() + 1];
+        int[] current = new int[reference.length() + 1];
+        for (int j = 0; j <= reference.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= recognized.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= reference.length(); j++) {
+                int cost = recognized.charAt(i - 1) == reference.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.max(0, 1 - (double) previous[reference.length()] / reference.length());
+    }
+
+    /**
+     * @return 当前线程累计分配的堆内存字节数，JVM 不支持时返回 -1
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean
+                && threadBean.isThreadAllocatedMemorySupported()) {
+            return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static double average(List<Long> values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return values.isEmpty() ? 0 : (double) sum / values.size();
+    }
+
+    private static long percentile(List<Long> sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
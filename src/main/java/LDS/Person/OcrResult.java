@@ -0,0 +1,197 @@
+package LDS.Person;
+
+import java.io.File;
+
+/**
+ * 单张图片的 OCR 识别结果
+ * 由 OCRService 返回，不在识别过程中直接打印，便于多线程下按文件输出
+ */
+public class OcrResult {
+
+    /**
+     * 识别状态
+     */
+    public enum Status {
+        /** 识别成功 */
+        OK,
+        /** 未识别到文字 */
+        EMPTY,
+        /** 置信度（有效字符率）过低 */
+        LOW_CONFIDENCE,
+        /** 图片文件不存在 */
+        MISSING,
+        /** 不支持的图片格式 */
+        UNSUPPORTED,
+        /** 识别过程中出现异常 */
+        ERROR
+    }
+
+    private final File file;
+    private final Status status;
+    private final String text;
+    private final String rawText;
+    private final double confidence;
+    private final String message;
+    private final long durationMs;
+    private final boolean cached;
+    private final String duplicateOf;
+    private final double engineConfidence;
+    private final String tier;
+    private final double estimatedCostMs;
+
+    public OcrResult(File file, Status status, String text, String rawText,
+                     double confidence, String message, long durationMs) {
+        this(file, status, text, rawText, confidence, message, durationMs, false, null, -1, null, -1);
+    }
+
+    private OcrResult(File file, Status status, String text, String rawText,
+                      double confidence, String message, long durationMs, boolean cached, String duplicateOf,
+                      double engineConfidence, String tier, double estimatedCostMs) {
+        this.file = file;
+        this.status = status;
+        this.text = text == null ? "" : text;
+        this.rawText = rawText == null ? "" : rawText;
+        this.confidence = confidence;
+        this.message = message;
+        this.durationMs = durationMs;
+        this.cached = cached;
+        this.duplicateOf = duplicateOf;
+        this.engineConfidence = engineConfidence;
+        this.tier = tier;
+        this.estimatedCostMs = estimatedCostMs;
+    }
+
+    /**
+     * 复制当前结果并替换耗时
+     *
+     * @param durationMs 新的耗时（毫秒）
+     * @return 新的结果对象
+     */
+    public OcrResult withDuration(long durationMs) {
+        return new OcrResult(file, status, text, rawText, confidence, message, durationMs, cached, duplicateOf,
+                engineConfidence, tier, estimatedCostMs);
+    }
+
+    /**
+     * 复制当前结果并标记为来自缓存
+     *
+     * @return 新的结果对象
+     */
+    public OcrResult asCached() {
+        return new OcrResult(file, status, text, rawText, confidence, message, durationMs, true, duplicateOf,
+                engineConfidence, tier, estimatedCostMs);
+    }
+
+    /**
+     * 复制当前结果并标记为近似重复（识别文本取自另一张图片）
+     *
+     * @param source 最初识别出该文本的图片路径
+     * @return 新的结果对象
+     */
+    public OcrResult asDuplicateOf(String source) {
+        return new OcrResult(file, status, text, rawText, confidence, message, durationMs, cached, source,
+                engineConfidence, tier, estimatedCostMs);
+    }
+
+    /**
+     * 复制当前结果并附加 Tesseract 给出的置信度
+     *
+     * @param engineConfidence Tesseract 平均置信度 (0-100)
+     * @param tier             得到结果的识别级别（参见 RecognitionLadder），未分级时为 null
+     * @return 新的结果对象
+     */
+    public OcrResult withEngineConfidence(double engineConfidence, String tier) {
+        return new OcrResult(file, status, text, rawText, confidence, message, durationMs, cached, duplicateOf,
+                engineConfidence, tier, estimatedCostMs);
+    }
+
+    /**
+     * 复制当前结果并附加调度时估计的识别耗时
+     *
+     * @param estimatedCostMs 估计耗时（毫秒，参见 CostEstimator）
+     * @return 新的结果对象
+     */
+    public OcrResult withEstimatedCost(double estimatedCostMs) {
+        return new OcrResult(file, status, text, rawText, confidence, message, durationMs, cached, duplicateOf,
+                engineConfidence, tier, estimatedCostMs);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return 最终识别文本（已过滤），识别失败时为空字符串
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return 规范化后、过滤前的原始识别文本
+     */
+    public String getRawText() {
+        return rawText;
+    }
+
+    /**
+     * @return 置信度（有效字符率，0-100）
+     */
+    public double getConfidence() {
+        return confidence;
+    }
+
+    /**
+     * @return 附加说明（失败原因等），可能为 null
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    /**
+     * @return 是否直接取自 OCR 结果缓存（未实际识别）
+     */
+    public boolean isCached() {
+        return cached;
+    }
+
+    /**
+     * @return 近似重复时为最初识别出该文本的图片路径，否则为 null
+     */
+    public String getDuplicateOf() {
+        return duplicateOf;
+    }
+
+    /**
+     * @return Tesseract 给出的平均置信度 (0-100)，未知时（旧模式、缓存结果等）为 -1
+     */
+    public double getEngineConfidence() {
+        return engineConfidence;
+    }
+
+    /**
+     * @return 得到结果的识别级别，未分级时为 null
+     */
+    public String getTier() {
+        return tier;
+    }
+
+    /**
+     * @return 调度时估计的识别耗时（毫秒），未估计时为 -1
+     */
+    public double getEstimatedCostMs() {
+        return estimatedCostMs;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.OK && !text.isEmpty();
+    }
+}
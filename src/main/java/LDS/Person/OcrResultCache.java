@@ -0,0 +1,362 @@
+package LDS.Person;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于内容哈希的 OCR 结果缓存
+ * 以 "图片内容 SHA-256 + 语言 + tessdata 文件 + 置信度阈值" 作为键，
+ * 持久化保存识别文本和置信度，重复运行或重复上传的图片可以直接复用结果。
+ *
+ * 缓存文件位于项目根目录的 .ocr-cache 文件夹：
+ * - ocr-results.tsv : 识别结果，运行期间逐条追加，关闭时按 LRU 顺序压缩重写
+ * - file-hashes.tsv : 路径 -> (大小, 修改时间, 内容哈希)，未变化的文件无需重新计算哈希；
+ *                     同样逐条追加、关闭时压缩，进程中断后下次运行（例如 --resume）仍可复用已计算的哈希
+ *
+ * 两张表都按 LRU 淘汰，条目数上限由 ocr.cache.max.entries 配置。线程安全
+ */
+public class OcrResultCache implements AutoCloseable {
+    private static final String CACHE_DIR = ".ocr-cache";
+    private static final String RESULTS_FILE = "ocr-results.tsv";
+    private static final String HASHES_FILE = "file-hashes.tsv";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path cacheDir;
+    private final Map<String, Entry> entries;
+    private final Map<String, FileStamp> stamps;
+    private final Map<String, String> tessdataFingerprints = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private BufferedWriter appendWriter;
+    private BufferedWriter stampWriter;
+
+    /**
+     * 缓存的识别结果
+     */
+    private static class Entry {
+        final OcrResult.Status status;
+        final double confidence;
+        final String rawText;
+        final String text;
+        final String message;
+
+        Entry(OcrResult.Status status, double confidence, String rawText, String text, String message) {
+            this.status = status;
+            this.confidence = confidence;
+            this.rawText = rawText;
+            this.text = text;
+            this.message = message;
+        }
+    }
+
+    /**
+     * 文件状态快照，大小和修改时间不变时直接复用内容哈希
+     */
+    private static class FileStamp {
+        final long size;
+        final long lastModified;
+        final String contentHash;
+
+        FileStamp(long size, long lastModified, String contentHash) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = contentHash;
+        }
+    }
+
+    /**
+     * 打开（或创建）缓存
+     *
+     * @param projectRoot 项目根目录
+     * @param maxEntries  最大条目数
+     * @throws IOException 缓存目录无法创建
+     */
+    public OcrResultCache(String projectRoot, int maxEntries) throws IOException {
+        this.cacheDir = Paths.get(projectRoot, CACHE_DIR);
+        this.entries = lruMap(maxEntries);
+        this.stamps = lruMap(maxEntries);
+        Files.createDirectories(cacheDir);
+        loadResults();
+        loadStamps();
+        this.appendWriter = Files.newBufferedWriter(cacheDir.resolve(RESULTS_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.stampWriter = Files.newBufferedWriter(cacheDir.resolve(HASHES_FILE), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 根据配置文件打开缓存
+     *
+     * @param projectRoot 项目根目录
+     * @return 缓存实例，未启用或无法打开时返回 null
+     */
+    public static OcrResultCache openFromConfig(String projectRoot) {
+        if (!OcrConfig.isCacheEnabled()) {
+            return null;
+        }
+        try {
+            return new OcrResultCache(projectRoot, OcrConfig.getCacheMaxEntries());
+        } catch (IOException e) {
+            System.err.println("警告: 无法打开 OCR 结果缓存，本次运行不使用缓存: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static <V> Map<String, V> lruMap(int maxEntries) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * 计算缓存键
+     * 文件大小和修改时间未变化时复用之前计算的内容哈希
+     *
+     * @param imageFile           图片文件
+     * @param language            识别语言
+     * @param confidenceThreshold 置信度阈值
+     * @param preprocess          图片预处理和分级识别方式（参见 OCRService.getRecognitionFingerprint）
+     * @return 缓存键
+     * @throws IOException 文件读取失败
+     */
+    public String keyFor(File imageFile, String language, double confidenceThreshold, String preprocess)
+            throws IOException {
+        return contentHash(imageFile) + "|" + language + "|" + tessdataFingerprint(language)
+                + "|" + String.format("%.2f", confidenceThreshold) + "|" + preprocess;
+    }
+
+    /**
+     * 获取文件内容的 SHA-256
+     */
+    private String contentHash(File imageFile) throws IOException {
+        String path = imageFile.getAbsolutePath();
+        long size = imageFile.length();
+        long lastModified = imageFile.lastModified();
+        synchronized (this) {
+            FileStamp stamp = stamps.get(path);
+            if (stamp != null && stamp.size == size && stamp.lastModified == lastModified) {
+                return stamp.contentHash;
+            }
+        }
+
+        String hash = sha256(imageFile);
+        synchronized (this) {
+            putStamp(path, new FileStamp(size, lastModified, hash));
+        }
+        return hash;
+    }
+
+    private static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("JVM 不支持 SHA-256", e);
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream input = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * 计算语言对应 traineddata 文件的指纹（文件名、大小、修改时间）
+     * 更换语言包后旧的缓存条目自然失效
+     */
+    private synchronized String tessdataFingerprint(String language) {
+        return tessdataFingerprints.computeIfAbsent(language, lang -> {
+            StringBuilder fingerprint = new StringBuilder();
+            File tessdataDir = new File(System.getProperty("user.dir"), "tessdata");
+            for (String part : lang.split("\\+")) {
+                File trainedData = new File(tessdataDir, part + ".traineddata");
+                fingerprint.append(part).append(':')
+                        .append(trainedData.length()).append(':')
+                        .append(trainedData.lastModified()).append(';');
+            }
+            return Integer.toHexString(fingerprint.toString().hashCode());
+        });
+    }
+
+    /**
+     * 查找缓存的识别结果
+     *
+     * @param imageFile 图片文件（用于构造结果）
+     * @param key       缓存键
+     * @return 缓存的结果，未命中时返回 null
+     */
+    public synchronized OcrResult lookup(File imageFile, String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new OcrResult(imageFile, entry.status, entry.text, entry.rawText,
+                entry.confidence, entry.message, 0).asCached();
+    }
+
+    /**
+     * 保存识别结果
+     * 只缓存确定性的结果（成功、无文字、置信度不足），异常和文件问题不缓存
+     *
+     * @param key    缓存键
+     * @param result 识别结果
+     */
+    public synchronized void store(String key, OcrResult result) {
+        OcrResult.Status status = result.getStatus();
+        if (status != OcrResult.Status.OK && status != OcrResult.Status.EMPTY
+                && status != OcrResult.Status.LOW_CONFIDENCE) {
+            return;
+        }
+        Entry entry = new Entry(status, result.getConfidence(), result.getRawText(), result.getText(),
+                result.getMessage() == null ? "" : result.getMessage());
+        entries.put(key, entry);
+        try {
+            appendWriter.write(formatEntry(key, entry));
+            appendWriter.newLine();
+            appendWriter.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入 OCR 缓存失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 文件被重命名后更新路径快照，下次运行无需重新计算哈希
+     *
+     * @param from 原文件
+     * @param to   新文件
+     */
+    public synchronized void moved(File from, File to) {
+        FileStamp stamp = stamps.remove(from.getAbsolutePath());
+        if (stamp != null) {
+            putStamp(to.getAbsolutePath(), new FileStamp(to.length(), to.lastModified(), stamp.contentHash));
+        }
+    }
+
+    /**
+     * 记录路径快照并立即追加到 file-hashes.tsv
+     * 原路径的旧记录留在文件中，关闭时压缩掉；中断时留下的旧记录只会指向已不存在的路径，不影响正确性
+     */
+    private void putStamp(String path, FileStamp stamp) {
+        stamps.put(path, stamp);
+        try {
+            stampWriter.write(formatStamp(path, stamp));
+            stampWriter.newLine();
+            stampWriter.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入文件哈希快照失败: " + e.getMessage());
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * 识别文本已去除所有空白字符，因此可以直接用制表符分隔字段
+     */
+    private static String formatEntry(String key, Entry entry) {
+        return key + FIELD_SEPARATOR + entry.status + FIELD_SEPARATOR + entry.confidence
+                + FIELD_SEPARATOR + entry.rawText + FIELD_SEPARATOR + entry.text
+                + FIELD_SEPARATOR + entry.message.replace('\t', ' ');
+    }
+
+    private static String formatStamp(String path, FileStamp stamp) {
+        return path + FIELD_SEPARATOR + stamp.size + FIELD_SEPARATOR + stamp.lastModified
+                + FIELD_SEPARATOR + stamp.contentHash;
+    }
+
+    private void loadResults() throws IOException {
+        Path file = cacheDir.resolve(RESULTS_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        // 追加写入的日志，后出现的条目覆盖先出现的
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length < 6) {
+                continue;
+            }
+            try {
+                entries.put(fields[0], new Entry(OcrResult.Status.valueOf(fields[1]),
+                        Double.parseDouble(fields[2]), fields[3], fields[4], fields[5]));
+            } catch (IllegalArgumentException e) {
+                // 忽略损坏的行（例如进程中断时写了一半）
+            }
+        }
+    }
+
+    private void loadStamps() throws IOException {
+        Path file = cacheDir.resolve(HASHES_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        // 与结果文件一样是追加写入的日志，后出现的快照覆盖先出现的
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length < 4) {
+                continue;
+            }
+            try {
+                stamps.put(fields[0], new FileStamp(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+            } catch (NumberFormatException e) {
+                // 忽略损坏的行（例如进程中断时写了一半）
+            }
+        }
+    }
+
+    /**
+     * 压缩重写两个缓存文件（先写临时文件再原子替换），并关闭追加写入
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            appendWriter.close();
+            stampWriter.close();
+            writeAtomically(RESULTS_FILE, entries.entrySet().stream()
+                    .map(e -> formatEntry(e.getKey(), e.getValue())).toList());
+            writeAtomically(HASHES_FILE, stamps.entrySet().stream()
+                    .map(e -> formatStamp(e.getKey(), e.getValue())).toList());
+        } catch (IOException e) {
+            System.err.println("警告: 保存 OCR 缓存失败: " + e.getMessage());
+        }
+    }
+
+    private void writeAtomically(String fileName, List<String> lines) throws IOException {
+        Path target = cacheDir.resolve(fileName);
+        Path temp = cacheDir.resolve(fileName + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,453 @@
+package LDS.Person;
+
+import java.util.Properties;
+
+/**
+ * 一份解析好的 OCR 配置（不可变）
+ * 由 OcrConfig 从配置文件读取后一次性解析和校验（格式错误或超出范围的项输出警告并使用默认值），
+ * 之后整体替换，读取时不再解析字符串；各线程拿到的总是同一份完整的配置，不会看到改了一半的设置。
+ * 各配置项的含义见 OcrConfig 中对应的 getter 和 ocr.properties
+ */
+public final class OcrSettings {
+    // 默认值常量
+    private static final String DEFAULT_LANGUAGE = "chi_sim+eng";
+    private static final double DEFAULT_CONFIDENCE_THRESHOLD = 50.0;
+    private static final boolean DEFAULT_ENABLE_CHAR_FILTER = true;
+    private static final boolean DEFAULT_ENABLE_VERBOSE = false;
+    private static final int DEFAULT_WORKER_COUNT = 0;
+    private static final boolean DEFAULT_PERSISTENT_ENGINE = true;
+    private static final boolean DEFAULT_CACHE_ENABLED = true;
+    private static final int DEFAULT_CACHE_MAX_ENTRIES = 200000;
+    private static final int DEFAULT_SCAN_QUEUE_CAPACITY = 1024;
+    private static final int DEFAULT_SCAN_PARALLELISM = 4;
+    private static final int DEFAULT_RENAME_BATCH_SIZE = 64;
+    private static final int DEFAULT_WATCH_DEBOUNCE_MS = 1000;
+    private static final int DEFAULT_WATCH_LATENCY_TARGET_MS = 5000;
+    private static final boolean DEFAULT_PREPROCESS_ENABLED = false;
+    private static final int DEFAULT_PREPROCESS_TEXT_HEIGHT = 40;
+    private static final double DEFAULT_PREPROCESS_MIN_SCALE = 0.5;
+    private static final boolean DEFAULT_PREPROCESS_BINARIZE = true;
+    private static final boolean DEFAULT_PREPROCESS_TRIM = true;
+    private static final boolean DEFAULT_PHASH_ENABLED = false;
+    private static final int DEFAULT_PHASH_MAX_DISTANCE = 6;
+    private static final boolean DEFAULT_LADDER_ENABLED = false;
+    private static final String DEFAULT_LADDER_FAST_LANGUAGE = "";
+    // 6 = PSM_SINGLE_BLOCK：整张图片视为一个文本块，跳过版面分析
+    private static final int DEFAULT_LADDER_FAST_PSM = 6;
+    private static final int DEFAULT_LADDER_FAST_MAX_SIDE = 1000;
+    private static final boolean DEFAULT_REGION_ENABLED = false;
+    private static final double DEFAULT_REGION_MAX_COVERAGE = 0.6;
+    private static final boolean DEFAULT_METRICS_ENABLED = true;
+    private static final boolean DEFAULT_SCHEDULE_ENABLED = true;
+    private static final int DEFAULT_DECODE_MAX_PIXELS = 24000000;
+    private static final double DEFAULT_DECODE_HEAP_SHARE = 0.5;
+    private static final boolean DEFAULT_FRAMES_ENABLED = true;
+    private static final int DEFAULT_FRAMES_MAX = 6;
+    private static final double DEFAULT_FRAMES_DIFF_THRESHOLD = 12;
+    private static final boolean DEFAULT_WORKER_PROCESS_ENABLED = false;
+    private static final int DEFAULT_WORKER_PROCESS_MAX_IMAGES = 500;
+    private static final int DEFAULT_WORKER_PROCESS_TIMEOUT_MS = 120000;
+    private static final int DEFAULT_SCHEDULE_WINDOW = 256;
+    private static final double DEFAULT_SCHEDULE_COST_BASE_MS = 150;
+    private static final double DEFAULT_SCHEDULE_COST_PER_MEGAPIXEL_MS = 400;
+    private static final double DEFAULT_SCHEDULE_COST_PER_MEGABYTE_MS = 50;
+    private static final boolean DEFAULT_INDEX_ENABLED = true;
+    private static final int DEFAULT_INDEX_SEGMENT_SIZE = 5000;
+
+    // 解析前的配置项（副本），用于叠加目录覆盖和判断配置是否变化
+    private final Properties source;
+
+    private final String language;
+    private final double confidenceThreshold;
+    private final int workerCount;
+    private final boolean enableCharFilter;
+    private final boolean enableVerbose;
+    private final boolean persistentEngine;
+    private final boolean cacheEnabled;
+    private final int cacheMaxEntries;
+    private final int scanQueueCapacity;
+    private final int scanParallelism;
+    private final int renameBatchSize;
+    private final int watchDebounceMs;
+    private final int watchLatencyTargetMs;
+    private final boolean preprocessEnabled;
+    private final int preprocessTextHeight;
+    private final double preprocessMinScale;
+    private final boolean preprocessBinarize;
+    private final boolean preprocessTrim;
+    private final boolean phashEnabled;
+    private final int phashMaxDistance;
+    private final boolean ladderEnabled;
+    private final String ladderFastLanguage;
+    private final int ladderFastPageSegMode;
+    private final int ladderFastMaxSide;
+    private final boolean regionEnabled;
+    private final double regionMaxCoverage;
+    private final boolean metricsEnabled;
+    private final int decodeMaxPixels;
+    private final double decodeHeapShare;
+    private final boolean framesEnabled;
+    private final int framesMax;
+    private final double framesDiffThreshold;
+    private final boolean workerProcessEnabled;
+    private final int workerProcessMaxImages;
+    private final int workerProcessTimeoutMs;
+    private final boolean scheduleEnabled;
+    private final int scheduleWindow;
+    private final double scheduleCostBaseMs;
+    private final double scheduleCostPerMegapixelMs;
+    private final double scheduleCostPerMegabyteMs;
+    private final boolean indexEnabled;
+    private final int indexSegmentSize;
+
+    /**
+     * 解析并校验配置项
+     *
+     * @param properties 配置项（会复制一份，之后修改传入的对象不影响本实例）
+     */
+    public OcrSettings(Properties properties) {
+        this.source = new Properties();
+        this.source.putAll(properties);
+
+        this.language = source.getProperty("ocr.language", DEFAULT_LANGUAGE).trim();
+        this.confidenceThreshold = parseConfidenceThreshold();
+        this.workerCount = parseWorkerCount();
+        this.enableCharFilter = bool("ocr.enable.char.filter", DEFAULT_ENABLE_CHAR_FILTER);
+        this.enableVerbose = bool("ocr.enable.verbose", DEFAULT_ENABLE_VERBOSE);
+        this.persistentEngine = bool("ocr.engine.persistent", DEFAULT_PERSISTENT_ENGINE);
+        this.cacheEnabled = bool("ocr.cache.enabled", DEFAULT_CACHE_ENABLED);
+        this.cacheMaxEntries = positiveInt("ocr.cache.max.entries", DEFAULT_CACHE_MAX_ENTRIES);
+        this.scanQueueCapacity = positiveInt("ocr.scan.queue.capacity", DEFAULT_SCAN_QUEUE_CAPACITY);
+        this.scanParallelism = positiveInt("ocr.scan.parallelism", DEFAULT_SCAN_PARALLELISM);
+        this.renameBatchSize = positiveInt("ocr.rename.batch.size", DEFAULT_RENAME_BATCH_SIZE);
+        this.watchDebounceMs = positiveInt("ocr.watch.debounce.ms", DEFAULT_WATCH_DEBOUNCE_MS);
+        this.watchLatencyTargetMs = positiveInt("ocr.watch.latency.target.ms", DEFAULT_WATCH_LATENCY_TARGET_MS);
+        this.preprocessEnabled = bool("ocr.preprocess.enabled", DEFAULT_PREPROCESS_ENABLED);
+        this.preprocessTextHeight = positiveInt("ocr.preprocess.text.height", DEFAULT_PREPROCESS_TEXT_HEIGHT);
+        this.preprocessMinScale = fraction("ocr.preprocess.min.scale", DEFAULT_PREPROCESS_MIN_SCALE, "最小缩放比例");
+        this.preprocessBinarize = bool("ocr.preprocess.binarize", DEFAULT_PREPROCESS_BINARIZE);
+        this.preprocessTrim = bool("ocr.preprocess.trim", DEFAULT_PREPROCESS_TRIM);
+        this.phashEnabled = bool("ocr.phash.enabled", DEFAULT_PHASH_ENABLED);
+        this.phashMaxDistance = rangedInt("ocr.phash.max.distance", DEFAULT_PHASH_MAX_DISTANCE, 0, 31, "最大汉明距离");
+        this.ladderEnabled = bool("ocr.ladder.enabled", DEFAULT_LADDER_ENABLED);
+        this.ladderFastLanguage = source.getProperty("ocr.ladder.fast.language", DEFAULT_LADDER_FAST_LANGUAGE).trim();
+        this.ladderFastPageSegMode = rangedInt("ocr.ladder.fast.psm", DEFAULT_LADDER_FAST_PSM, 0, 13, "页面分割模式");
+        this.ladderFastMaxSide = positiveInt("ocr.ladder.fast.max.side", DEFAULT_LADDER_FAST_MAX_SIDE);
+        this.regionEnabled = bool("ocr.region.enabled", DEFAULT_REGION_ENABLED);
+        this.regionMaxCoverage = fraction("ocr.region.max.coverage", DEFAULT_REGION_MAX_COVERAGE, "文字区域最大覆盖比例");
+        this.metricsEnabled = bool("ocr.metrics.enabled", DEFAULT_METRICS_ENABLED);
+        this.decodeMaxPixels = positiveInt("ocr.decode.max.pixels", DEFAULT_DECODE_MAX_PIXELS);
+        this.decodeHeapShare = fraction("ocr.decode.heap.share", DEFAULT_DECODE_HEAP_SHARE, "解码内存比例");
+        this.framesEnabled = bool("ocr.frames.enabled", DEFAULT_FRAMES_ENABLED);
+        this.framesMax = positiveInt("ocr.frames.max", DEFAULT_FRAMES_MAX);
+        this.framesDiffThreshold = nonNegativeDouble("ocr.frames.diff.threshold", DEFAULT_FRAMES_DIFF_THRESHOLD);
+        this.workerProcessEnabled = bool("ocr.worker.process.enabled", DEFAULT_WORKER_PROCESS_ENABLED);
+        this.workerProcessMaxImages = positiveInt("ocr.worker.process.max.images", DEFAULT_WORKER_PROCESS_MAX_IMAGES);
+        this.workerProcessTimeoutMs = positiveInt("ocr.worker.process.timeout.ms", DEFAULT_WORKER_PROCESS_TIMEOUT_MS);
+        this.scheduleEnabled = bool("ocr.schedule.enabled", DEFAULT_SCHEDULE_ENABLED);
+        this.scheduleWindow = positiveInt("ocr.schedule.window", DEFAULT_SCHEDULE_WINDOW);
+        this.scheduleCostBaseMs = nonNegativeDouble("ocr.schedule.cost.base.ms", DEFAULT_SCHEDULE_COST_BASE_MS);
+        this.scheduleCostPerMegapixelMs = nonNegativeDouble("ocr.schedule.cost.per.megapixel.ms",
+                DEFAULT_SCHEDULE_COST_PER_MEGAPIXEL_MS);
+        this.scheduleCostPerMegabyteMs = nonNegativeDouble("ocr.schedule.cost.per.megabyte.ms",
+                DEFAULT_SCHEDULE_COST_PER_MEGABYTE_MS);
+        this.indexEnabled = bool("ocr.index.enabled", DEFAULT_INDEX_ENABLED);
+        this.indexSegmentSize = positiveInt("ocr.index.segment.size", DEFAULT_INDEX_SEGMENT_SIZE);
+    }
+
+    /**
+     * 在本配置上叠加若干配置项，解析得到新的配置（用于目录覆盖）
+     *
+     * @param overrides 覆盖的配置项
+     * @return 新的配置
+     */
+    public OcrSettings with(Properties overrides) {
+        Properties merged = new Properties();
+        merged.putAll(source);
+        merged.putAll(overrides);
+        return new OcrSettings(merged);
+    }
+
+    /**
+     * @param other 另一份配置
+     * @return 两份配置的配置项是否完全相同
+     */
+    public boolean sameAs(OcrSettings other) {
+        return other != null && source.equals(other.source);
+    }
+
+    private double parseConfidenceThreshold() {
+        String threshold = source.getProperty("ocr.confidence.threshold",
+                                              String.valueOf(DEFAULT_CONFIDENCE_THRESHOLD));
+        try {
+            double value = Double.parseDouble(threshold.trim());
+            // 检查范围
+            if (value < 0 || value > 100) {
+                System.err.println("警告: 置信度阈值超出范围 (0-100)，使用默认值 " + DEFAULT_CONFIDENCE_THRESHOLD);
+                return DEFAULT_CONFIDENCE_THRESHOLD;
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: 置信度阈值格式错误，使用默认值 " + DEFAULT_CONFIDENCE_THRESHOLD);
+            return DEFAULT_CONFIDENCE_THRESHOLD;
+        }
+    }
+
+    private int parseWorkerCount() {
+        String value = source.getProperty("ocr.worker.count", String.valueOf(DEFAULT_WORKER_COUNT));
+        try {
+            int count = Integer.parseInt(value.trim());
+            if (count <= 0) {
+                return Runtime.getRuntime().availableProcessors();
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: 工作线程数格式错误，使用 CPU 核数");
+            return Runtime.getRuntime().availableProcessors();
+        }
+    }
+
+    private boolean bool(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(source.getProperty(key, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * 读取正整数配置项，缺失或格式错误时使用默认值
+     */
+    private int positiveInt(String key, int defaultValue) {
+        String value = source.getProperty(key, String.valueOf(defaultValue));
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed <= 0) {
+                System.err.println("警告: " + key + " 必须大于 0，使用默认值 " + defaultValue);
+                return defaultValue;
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: " + key + " 格式错误，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取指定范围内的整数配置项，超出范围或格式错误时使用默认值
+     */
+    private int rangedInt(String key, int defaultValue, int min, int max, String name) {
+        String value = source.getProperty(key, String.valueOf(defaultValue));
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed < min || parsed > max) {
+                System.err.println("警告: " + name + "超出范围 (" + min + "-" + max + ")，使用默认值 " + defaultValue);
+                return defaultValue;
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: " + name + "格式错误，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取 (0-1] 之间的比例配置项，超出范围或格式错误时使用默认值
+     */
+    private double fraction(String key, double defaultValue, String name) {
+        String value = source.getProperty(key, String.valueOf(defaultValue));
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed <= 0 || parsed > 1) {
+                System.err.println("警告: " + name + "超出范围 (0-1]，使用默认值 " + defaultValue);
+                return defaultValue;
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: " + name + "格式错误，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 读取非负小数配置项，缺失或格式错误时使用默认值
+     */
+    private double nonNegativeDouble(String key, double defaultValue) {
+        String value = source.getProperty(key, String.valueOf(defaultValue));
+        try {
+            double parsed = Double.parseDouble(value.trim());
+            if (parsed < 0 || Double.isNaN(parsed) || Double.isInfinite(parsed)) {
+                System.err.println("警告: " + key + " 不能为负数，使用默认值 " + defaultValue);
+                return defaultValue;
+            }
+            return parsed;
+        } catch (NumberFormatException e) {
+            System.err.println("警告: " + key + " 格式错误，使用默认值 " + defaultValue);
+            return defaultValue;
+        }
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public double getConfidenceThreshold() {
+        return confidenceThreshold;
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    public boolean isEnableCharFilter() {
+        return enableCharFilter;
+    }
+
+    public boolean isEnableVerbose() {
+        return enableVerbose;
+    }
+
+    public boolean isPersistentEngine() {
+        return persistentEngine;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public int getScanQueueCapacity() {
+        return scanQueueCapacity;
+    }
+
+    public int getScanParallelism() {
+        return scanParallelism;
+    }
+
+    public int getRenameBatchSize() {
+        return renameBatchSize;
+    }
+
+    public int getWatchDebounceMs() {
+        return watchDebounceMs;
+    }
+
+    public int getWatchLatencyTargetMs() {
+        return watchLatencyTargetMs;
+    }
+
+    public boolean isPreprocessEnabled() {
+        return preprocessEnabled;
+    }
+
+    public int getPreprocessTextHeight() {
+        return preprocessTextHeight;
+    }
+
+    public double getPreprocessMinScale() {
+        return preprocessMinScale;
+    }
+
+    public boolean isPreprocessBinarize() {
+        return preprocessBinarize;
+    }
+
+    public boolean isPreprocessTrim() {
+        return preprocessTrim;
+    }
+
+    public boolean isPhashEnabled() {
+        return phashEnabled;
+    }
+
+    public int getPhashMaxDistance() {
+        return phashMaxDistance;
+    }
+
+    public boolean isLadderEnabled() {
+        return ladderEnabled;
+    }
+
+    public String getLadderFastLanguage() {
+        return ladderFastLanguage;
+    }
+
+    public int getLadderFastPageSegMode() {
+        return ladderFastPageSegMode;
+    }
+
+    public int getLadderFastMaxSide() {
+        return ladderFastMaxSide;
+    }
+
+    public boolean isRegionEnabled() {
+        return regionEnabled;
+    }
+
+    public double getRegionMaxCoverage() {
+        return regionMaxCoverage;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public int getDecodeMaxPixels() {
+        return decodeMaxPixels;
+    }
+
+    public double getDecodeHeapShare() {
+        return decodeHeapShare;
+    }
+
+    public boolean isFramesEnabled() {
+        return framesEnabled;
+    }
+
+    public int getFramesMax() {
+        return framesMax;
+    }
+
+    public double getFramesDiffThreshold() {
+        return framesDiffThreshold;
+    }
+
+    public boolean isWorkerProcessEnabled() {
+        return workerProcessEnabled;
+    }
+
+    public int getWorkerProcessMaxImages() {
+        return workerProcessMaxImages;
+    }
+
+    public int getWorkerProcessTimeoutMs() {
+        return workerProcessTimeoutMs;
+    }
+
+    public boolean isScheduleEnabled() {
+        return scheduleEnabled;
+    }
+
+    public int getScheduleWindow() {
+        return scheduleWindow;
+    }
+
+    public double getScheduleCostBaseMs() {
+        return scheduleCostBaseMs;
+    }
+
+    public double getScheduleCostPerMegapixelMs() {
+        return scheduleCostPerMegapixelMs;
+    }
+
+    public double getScheduleCostPerMegabyteMs() {
+        return scheduleCostPerMegabyteMs;
+    }
+
+    public boolean isIndexEnabled() {
+        return indexEnabled;
+    }
+
+    public int getIndexSegmentSize() {
+        return indexSegmentSize;
+    }
+}
@@ -0,0 +1,273 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * OCR 工作线程池
+ * 每个工作线程对应一个独立的 OCRService 实例（各自持有 Tesseract），
+ * 多张图片可以同时识别，吞吐量随 CPU 核数近似线性增长
+ *
+ * 设置耗时估计（setCostEstimator）后，等待中的图片按估计耗时从长到短分配给空闲的工作线程：
+ * 大图不会排在最后单独拖长整批的完成时间，所有工作线程共享同一个优先队列，空闲线程总是取剩余最耗时的图片
+ *
+ * 运行中可以用 resize() 调整工作线程数（例如配置热加载后），增加时立即创建引擎，减少时多出的引擎在归还时关闭
+ */
+public class OcrWorkerPool implements AutoCloseable {
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<OCRService> idleEngines = new LinkedBlockingQueue<>();
+    private final Supplier<OCRService> engineFactory;
+    // 以下两项由 resize() 和归还引擎时在 this 上同步修改
+    private volatile int workerCount;
+    private int engineCount;
+    private final OcrResultCache cache;
+    // 相同估计耗时的任务按提交顺序执行
+    private final AtomicLong sequence = new AtomicLong();
+    private CostEstimator costEstimator;
+
+    /**
+     * 使用配置文件中的工作线程数和 OCR 设置创建线程池
+     */
+    public OcrWorkerPool() {
+        this(OcrConfig.getWorkerCount(), OCRService::new);
+    }
+
+    /**
+     * 创建 OCR 工作线程池
+     *
+     * @param workerCount   工作线程数，必须大于 0
+     * @param engineFactory 为每个工作线程创建 OCR 引擎的工厂
+     */
+    public OcrWorkerPool(int workerCount, Supplier<OCRService> engineFactory) {
+        this(workerCount, engineFactory, null);
+    }
+
+    /**
+     * 创建带结果缓存的 OCR 工作线程池
+     *
+     * @param workerCount   工作线程数，必须大于 0
+     * @param engineFactory 为每个工作线程创建 OCR 引擎的工厂
+     * @param cache         OCR 结果缓存，为 null 时不使用缓存（缓存由调用方负责关闭）
+     */
+    public OcrWorkerPool(int workerCount, Supplier<OCRService> engineFactory, OcrResultCache cache) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("工作线程数必须大于 0: " + workerCount);
+        }
+        this.workerCount = workerCount;
+        this.engineFactory = engineFactory;
+        this.cache = cache;
+        for (int i = 0; i < workerCount; i++) {
+            idleEngines.add(engineFactory.get());
+        }
+        this.engineCount = workerCount;
+
+        AtomicInteger threadIndex = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ocr-worker-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 设置耗时估计，启用按估计耗时从长到短调度
+     *
+     * @param costEstimator 耗时估计，为 null 时按提交顺序识别
+     */
+    public void setCostEstimator(CostEstimator costEstimator) {
+        this.costEstimator = costEstimator;
+    }
+
+    /**
+     * 提交一张图片进行异步识别
+     *
+     * @param imageFile 图片文件
+     * @return 识别结果的 Future，不会以异常结束
+     */
+    public CompletableFuture<OcrResult> submit(File imageFile) {
+        CostEstimator estimator = costEstimator;
+        CostEstimator.Estimate estimate = estimator == null ? null : estimator.estimate(imageFile);
+        Task task = new Task(imageFile, estimator, estimate, sequence.getAndIncrement());
+        executor.execute(task);
+        return task.future;
+    }
+
+    /**
+     * 一张图片的识别任务；估计耗时长的先执行，相同时先提交的先执行
+     */
+    private final class Task implements Runnable, Comparable<Task> {
+        private final File imageFile;
+        private final CostEstimator estimator;
+        private final CostEstimator.Estimate estimate;
+        private final long sequence;
+        private final CompletableFuture<OcrResult> future = new CompletableFuture<>();
+
+        Task(File imageFile, CostEstimator estimator, CostEstimator.Estimate estimate, long sequence) {
+            this.imageFile = imageFile;
+            this.estimator = estimator;
+            this.estimate = estimate;
+            this.sequence = sequence;
+        }
+
+        private double cost() {
+            return estimate == null ? 0 : estimate.getCostMs();
+        }
+
+        @Override
+        public void run() {
+            OcrResult result = recognize(imageFile);
+            if (estimate != null) {
+                // 只有实际识别过的结果才能反映识别耗时
+                if (!result.isCached() && result.getDuplicateOf() == null && isRecognized(result.getStatus())) {
+                    estimator.record(estimate, result.getDurationMs());
+                }
+                result = result.withEstimatedCost(estimate.getCostMs());
+            }
+            future.complete(result);
+        }
+
+        private boolean isRecognized(OcrResult.Status status) {
+            return status == OcrResult.Status.OK || status == OcrResult.Status.EMPTY
+                    || status == OcrResult.Status.LOW_CONFIDENCE;
+        }
+
+        @Override
+        public int compareTo(Task other) {
+            int byCost = Double.compare(other.cost(), cost());
+            return byCost != 0 ? byCost : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * 在当前工作线程上借用一个空闲引擎进行识别
+     * 线程数不超过引擎数，因此借用不会阻塞（减少线程数的过程中可能短暂等待其他线程归还）
+     */
+    private OcrResult recognize(File imageFile) {
+        OCRService engine;
+        try {
+            engine = idleEngines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new OcrResult(imageFile, OcrResult.Status.ERROR, "", "", 0, "识别被中断", 0);
+        }
+        try {
+            engine.configureFor(imageFile);
+            if (cache == null) {
+                return engine.recognize(imageFile);
+            }
+            return recognizeWithCache(engine, imageFile);
+        } catch (RuntimeException | LinkageError e) {
+            // 例如找不到 Tesseract 原生库：转换为失败结果，保证 Future 不会以异常结束
+            return new OcrResult(imageFile, OcrResult.Status.ERROR, "", "", 0,
+                    "OCR 引擎异常: " + e, 0);
+        } finally {
+            giveBack(engine);
+        }
+    }
+
+    /**
+     * 归还引擎；线程数减少后多出的引擎直接关闭
+     */
+    private void giveBack(OCRService engine) {
+        synchronized (this) {
+            if (engineCount <= workerCount) {
+                idleEngines.add(engine);
+                return;
+            }
+            engineCount--;
+        }
+        engine.close();
+    }
+
+    /**
+     * 调整工作线程数，正在识别的图片不受影响
+     * 增加时先创建引擎再增加线程；减少时先减少线程，空闲的多余引擎立即关闭，其余在归还时关闭
+     *
+     * @param newCount 新的工作线程数，必须大于 0
+     */
+    public synchronized void resize(int newCount) {
+        if (newCount <= 0) {
+            throw new IllegalArgumentException("工作线程数必须大于 0: " + newCount);
+        }
+        if (newCount == workerCount || executor.isShutdown()) {
+            return;
+        }
+        if (newCount > workerCount) {
+            for (; engineCount < newCount; engineCount++) {
+                idleEngines.add(engineFactory.get());
+            }
+            workerCount = newCount;
+            executor.setMaximumPoolSize(newCount);
+            executor.setCorePoolSize(newCount);
+            return;
+        }
+        workerCount = newCount;
+        executor.setCorePoolSize(newCount);
+        executor.setMaximumPoolSize(newCount);
+        OCRService engine;
+        while (engineCount > newCount && (engine = idleEngines.poll()) != null) {
+            engineCount--;
+            engine.close();
+        }
+    }
+
+    /**
+     * 先查缓存，未命中时再识别并写入缓存
+     * 哈希计算在工作线程上进行，与识别一样可以并行
+     */
+    private OcrResult recognizeWithCache(OCRService engine, File imageFile) {
+        long startTime = System.currentTimeMillis();
+        String key;
+        try {
+            key = cache.keyFor(imageFile, engine.getLanguage(), engine.getConfidenceThreshold(),
+                    engine.getRecognitionFingerprint(imageFile));
+        } catch (IOException e) {
+            // 读取失败时交给引擎处理（会给出文件不存在等具体原因）
+            return engine.recognize(imageFile);
+        }
+        OcrResult cached = cache.lookup(imageFile, key);
+        if (cached != null) {
+            return cached.withDuration(System.currentTimeMillis() - startTime);
+        }
+        OcrResult result = engine.recognize(imageFile);
+        cache.store(key, result);
+        return result;
+    }
+
+    /**
+     * @return 工作线程数
+     */
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * 关闭线程池，等待正在执行的任务完成后释放所有引擎
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        OCRService engine;
+        while ((engine = idleEngines.poll()) != null) {
+            engine.close();
+        }
+    }
+}
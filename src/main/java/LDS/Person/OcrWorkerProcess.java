@@ -0,0 +1,459 @@
+package LDS.Person;
+
+import net.sourceforge.tess4j.Tesseract;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 子进程 OCR 引擎（ocr.worker.process.enabled=true）
+ * Tesseract 是原生代码，长时间运行时原生内存会持续增长，损坏的图片还可能让整个 JVM 崩溃。
+ * 本类在主进程中代替 OCRService：每个实例对应一个子 JVM，识别在子进程中完成，
+ * 通过本机回环地址上的 Socket 以紧凑的二进制协议传递图片路径（及该图片适用的语言、阈值和快速识别语言）和识别结果。
+ *
+ * - 子进程识别 ocr.worker.process.max.images 张图片后自动换成新的子进程，释放积累的原生内存；
+ *   各实例第一次更换的时间错开，不会所有工作线程同时重启
+ * - 子进程崩溃或超过 ocr.worker.process.timeout.ms 没有返回时强制结束并重新启动，正在识别的图片重新提交一次，
+ *   再次失败时按识别失败处理，不会反复拖垮子进程
+ *
+ * 子进程的 classpath 取自实际加载本类的类加载器（参见 childClassPath），
+ * 通过 mvn exec:java 启动时 java.class.path 只有 Maven 自身的启动器，不能直接使用；
+ * 主程序在扫描之前调用 verifyStartup() 确认子进程能够启动，启动失败时直接退出，而不是把每张图片都记为识别失败。
+ * 每个子进程的堆内存上限 (-Xmx) 是主进程堆内存上限按工作线程数的平均分配（参见 childHeapMb），
+ * 子进程各自按 ocr.decode.heap.share 计算的解码像素预算加起来仍不超过主进程的比例，不会随工作线程数成倍增长。
+ * 子进程的输出和错误信息追加到状态目录中的 ocr-worker.log。
+ * 近似重复检测需要所有引擎共享同一个索引，子进程模式下不可用；分级识别、文字区域检测和多帧采样在子进程中各自进行。
+ * 每个实例同时只能由一个线程使用（由 OcrWorkerPool 保证）
+ */
+public class OcrWorkerProcess extends OCRService {
+    public static final String LOG_FILE = "ocr-worker.log";
+
+    private static final int OP_QUIT = 0;
+    private static final int OP_RECOGNIZE = 1;
+    private static final int CONNECT_TIMEOUT_MS = 60000;
+    private static final int ACCEPT_POLL_MS = 200;
+    private static final int QUIT_TIMEOUT_MS = 5000;
+    // 同一张图片最多提交的次数（子进程崩溃后重新提交一次）
+    private static final int MAX_ATTEMPTS = 2;
+    // 子进程堆内存的下限（MB），至少能解码一张 ocr.decode.max.pixels 默认大小的图片
+    private static final long MIN_CHILD_HEAP_MB = 256;
+
+    private static final AtomicInteger startCount = new AtomicInteger();
+    private static final AtomicInteger recycleCount = new AtomicInteger();
+    private static final AtomicInteger crashCount = new AtomicInteger();
+
+    private final int maxImages;
+    private final long timeoutMs;
+    private final Path logFile;
+    private RunMetrics metrics;
+
+    private Process process;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    // 当前子进程还能识别的图片数
+    private int remainingImages;
+
+    /**
+     * 创建子进程 OCR 引擎（子进程在第一次识别时启动）
+     *
+     * @param language            识别语言
+     * @param confidenceThreshold 置信度阈值
+     * @param index               实例序号（从 0 开始），用于错开各实例第一次更换子进程的时间
+     * @param count               实例总数（运行中增加工作线程后序号可能超过总数，此时不再错开）
+     * @param maxImages           每个子进程最多识别的图片数
+     * @param timeoutMs           单张图片的最长识别时间（毫秒）
+     * @param logFile             子进程输出的日志文件
+     */
+    public OcrWorkerProcess(String language, double confidenceThreshold, int index, int count,
+                            int maxImages, long timeoutMs, Path logFile) {
+        super(language, confidenceThreshold);
+        this.maxImages = maxImages;
+        this.timeoutMs = timeoutMs;
+        this.logFile = logFile;
+        this.remainingImages = Math.max(1, (int) Math.min(maxImages, (long) maxImages * (index + 1) / Math.max(1, count)));
+    }
+
+    /**
+     * 记录子进程往返的识别耗时（子进程内部的分阶段耗时不回传）
+     */
+    @Override
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 在子进程中识别图片；子进程崩溃或超时时重新启动并重新提交
+     *
+     * @param imageFile 图片文件
+     * @return 识别结果，不会抛出异常
+     */
+    @Override
+    public OcrResult recognize(File imageFile) {
+        long startTime = System.currentTimeMillis();
+        configureFor(imageFile);
+        String failure = null;
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            try {
+                if (process == null) {
+                    start();
+                }
+                long start = System.nanoTime();
+                OcrResult result = request(imageFile);
+                if (metrics != null) {
+                    metrics.addBytesRead(imageFile.length());
+                    metrics.record(imageFile, RunMetrics.Stage.OCR, System.nanoTime() - start);
+                }
+                if (--remainingImages <= 0) {
+                    recycleCount.incrementAndGet();
+                    stop();
+                }
+                return result.withDuration(System.currentTimeMillis() - startTime);
+            } catch (IOException e) {
+                crashCount.incrementAndGet();
+                failure = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+                AsyncLogger.warn("⚠ OCR 子进程异常（" + failure + "），重新启动"
+                        + (attempt < MAX_ATTEMPTS ? "并重新提交: " : "，放弃: ") + imageFile.getName());
+                kill();
+            }
+        }
+        return new OcrResult(imageFile, OcrResult.Status.ERROR, "", "", 0,
+                "OCR 子进程崩溃或超时: " + failure, System.currentTimeMillis() - startTime);
+    }
+
+    private OcrResult request(File imageFile) throws IOException {
+        out.writeByte(OP_RECOGNIZE);
+        writeString(out, imageFile.getAbsolutePath());
+        // 语言、阈值和快速识别语言随每个请求发送，配置热加载和目录覆盖不需要重启子进程
+        writeString(out, getLanguage());
+        out.writeDouble(getConfidenceThreshold());
+        writeString(out, getLadderFastLanguage());
+        out.flush();
+
+        OcrResult.Status[] statuses = OcrResult.Status.values();
+        int status = in.readUnsignedByte();
+        if (status >= statuses.length) {
+            throw new IOException("子进程返回了无效的状态: " + status);
+        }
+        String text = readString(in);
+        String rawText = readString(in);
+        double confidence = in.readDouble();
+        String message = in.readBoolean() ? readString(in) : null;
+        double engineConfidence = in.readDouble();
+        String tier = in.readBoolean() ? readString(in) : null;
+        return new OcrResult(imageFile, statuses[status], text, rawText, confidence, message, 0)
+                .withEngineConfidence(engineConfidence, tier);
+    }
+
+    /**
+     * 启动子进程并等待它连接到本进程的回环端口
+     * 子进程通过随机令牌证明身份，本机其他程序无法冒充
+     */
+    private void start() throws IOException {
+        long token = new SecureRandom().nextLong();
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_POLL_MS);
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+            long heapMb = childHeapMb();
+            if (heapMb > 0) {
+                command.add("-Xmx" + heapMb + "m");
+            }
+            if (OcrConfig.getConfigFile() != null) {
+                command.add("-D" + OcrConfig.CONFIG_PROPERTY + "=" + OcrConfig.getConfigFile());
+            }
+            command.add("-cp");
+            command.add(childClassPath());
+            command.add(OcrWorkerProcess.class.getName());
+            command.add(String.valueOf(server.getLocalPort()));
+            command.add(Long.toString(token));
+            command.add(getLanguage());
+            command.add(String.valueOf(getConfidenceThreshold()));
+            ProcessBuilder builder = new ProcessBuilder(command)
+                    .directory(new File(System.getProperty("user.dir")))
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(logFile.toFile()));
+            process = builder.start();
+            startCount.incrementAndGet();
+
+            // 子进程启动失败（例如找不到类）时不必等到连接超时
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MS;
+            while (socket == null) {
+                try {
+                    socket = server.accept();
+                } catch (SocketTimeoutException e) {
+                    if (!process.isAlive()) {
+                        throw new IOException("子进程启动失败，退出码 " + process.exitValue() + "（详见 " + logFile + "）");
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        throw new IOException("子进程启动超时");
+                    }
+                }
+            }
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout((int) Math.min(Integer.MAX_VALUE, timeoutMs));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (in.readLong() != token) {
+                throw new IOException("子进程令牌不匹配");
+            }
+        } catch (IOException e) {
+            kill();
+            throw e;
+        }
+    }
+
+    /**
+     * 子进程的堆内存上限：主进程的堆内存上限按当前工作线程数平均分配，不低于 MIN_CHILD_HEAP_MB
+     * 运行中增加工作线程后新启动的子进程按新的线程数分配，已有的子进程在下次更换时生效
+     *
+     * @return 堆内存上限（MB），主进程没有上限时返回 0（不指定）
+     */
+    static long childHeapMb() {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        if (maxMemory == Long.MAX_VALUE) {
+            return 0;
+        }
+        long share = maxMemory / Math.max(1, OcrConfig.getWorkerCount());
+        return Math.max(MIN_CHILD_HEAP_MB, share >> 20);
+    }
+
+    /**
+     * 子进程的 classpath
+     * exec:java 在 Maven 进程内用独立的 URLClassLoader 加载项目类和依赖，java.class.path 只有 Maven 的启动器；
+     * 因此优先使用加载本类的 URLClassLoader 的 URL，普通 java -cp 启动时才使用 java.class.path。
+     * 最后补上本类和 Tesseract 所在的位置，保证至少能找到入口类和 Tess4J
+     *
+     * @return 以路径分隔符连接的 classpath
+     */
+    static String childClassPath() {
+        Set<String> entries = new LinkedHashSet<>();
+        ClassLoader loader = OcrWorkerProcess.class.getClassLoader();
+        if (loader instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) loader).getURLs()) {
+                addLocation(entries, url);
+            }
+        } else {
+            for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+                if (!entry.isEmpty()) {
+                    entries.add(entry);
+                }
+            }
+        }
+        for (Class<?> type : new Class<?>[]{OcrWorkerProcess.class, Tesseract.class}) {
+            CodeSource source = type.getProtectionDomain().getCodeSource();
+            if (source != null) {
+                addLocation(entries, source.getLocation());
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void addLocation(Set<String> entries, URL url) {
+        if (url == null || !"file".equals(url.getProtocol())) {
+            return;
+        }
+        try {
+            entries.add(Paths.get(url.toURI()).toString());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            // 无法转换为本地路径的位置子进程也无法使用
+        }
+    }
+
+    /**
+     * 启动一个子进程并立即让它退出，确认当前的启动方式下子进程能够运行
+     *
+     * @param language            识别语言
+     * @param confidenceThreshold 置信度阈值
+     * @param logFile             子进程输出的日志文件
+     * @throws IOException 子进程无法启动或无法连接
+     */
+    public static void verifyStartup(String language, double confidenceThreshold, Path logFile) throws IOException {
+        OcrWorkerProcess probe = new OcrWorkerProcess(language, confidenceThreshold, 0, 1, 1,
+                CONNECT_TIMEOUT_MS, logFile);
+        try {
+            probe.start();
+            probe.stop();
+        } finally {
+            // 检查用的子进程不计入统计
+            startCount.decrementAndGet();
+            probe.close();
+        }
+    }
+
+    /**
+     * 通知子进程退出，超时未退出时强制结束
+     */
+    private void stop() {
+        try {
+            out.writeByte(OP_QUIT);
+            out.flush();
+            if (!process.waitFor(QUIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            // 子进程已经退出
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        kill();
+    }
+
+    /**
+     * 强制结束子进程并释放连接，下次识别时重新启动
+     */
+    private void kill() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // 忽略
+            }
+        }
+        if (process != null) {
+            process.destroyForcibly();
+        }
+        socket = null;
+        in = null;
+        out = null;
+        process = null;
+        if (remainingImages <= 0) {
+            remainingImages = maxImages;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (process != null) {
+            stop();
+        }
+        super.close();
+    }
+
+    /**
+     * @return 启动过的子进程数
+     */
+    public static int getStartCount() {
+        return startCount.get();
+    }
+
+    /**
+     * @return 达到识别数量上限后更换子进程的次数
+     */
+    public static int getRecycleCount() {
+        return recycleCount.get();
+    }
+
+    /**
+     * @return 子进程崩溃或超时的次数
+     */
+    public static int getCrashCount() {
+        return crashCount.get();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 16 * 1024 * 1024) {
+            throw new IOException("子进程返回了无效的字符串长度: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 子进程入口：连接主进程，逐个识别收到的图片，直到收到退出命令或连接断开
+     *
+     * @param args 主进程端口、令牌、识别语言、置信度阈值
+     */
+    public static void main(String[] args) throws IOException {
+        int port = Integer.parseInt(args[0]);
+        long token = Long.parseLong(args[1]);
+        String language = args[2];
+        double confidenceThreshold = Double.parseDouble(args[3]);
+
+        OCRService engine = new OCRService(language, confidenceThreshold);
+        engine.setFrameSampler(FrameSampler.fromConfig());
+        engine.setPixelBudget(PixelBudget.fromConfig());
+        if (OcrConfig.isPersistentEngine()) {
+            engine.setLadder(RecognitionLadder.fromConfig(language));
+            engine.setRegionDetector(TextRegionDetector.fromConfig());
+        }
+        try (engine;
+             Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeLong(token);
+            out.flush();
+            while (true) {
+                int op;
+                try {
+                    op = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    // 主进程已退出
+                    return;
+                }
+                if (op != OP_RECOGNIZE) {
+                    return;
+                }
+                File imageFile = new File(readString(in));
+                String imageLanguage = readString(in);
+                double imageThreshold = in.readDouble();
+                String imageFastLanguage = readString(in);
+                OcrResult result;
+                try {
+                    engine.setLanguage(imageLanguage);
+                    engine.setConfidenceThreshold(imageThreshold);
+                    engine.setLadderFastLanguage(imageFastLanguage);
+                    result = engine.recognize(imageFile);
+                } catch (RuntimeException | LinkageError e) {
+                    result = new OcrResult(imageFile, OcrResult.Status.ERROR, "", "", 0, "OCR 引擎异常: " + e, 0);
+                }
+                out.writeByte(result.getStatus().ordinal());
+                writeString(out, result.getText());
+                writeString(out, result.getRawText());
+                out.writeDouble(result.getConfidence());
+                out.writeBoolean(result.getMessage() != null);
+                if (result.getMessage() != null) {
+                    writeString(out, result.getMessage());
+                }
+                out.writeDouble(result.getEngineConfidence());
+                out.writeBoolean(result.getTier() != null);
+                if (result.getTier() != null) {
+                    writeString(out, result.getTier());
+                }
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package LDS.Person;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 感知哈希近似重复索引
+ * 表情包经常以重新压缩、缩放、轻微裁剪的副本出现，内容哈希缓存无法命中。
+ * 识别前先计算图片的 64 位 dHash，与已识别图片的哈希比较，
+ * 汉明距离不超过 ocr.phash.max.distance 时直接复用之前的识别文本。
+ *
+ * 查找使用多索引哈希：64 位哈希切成 (最大距离 + 1) 段，每段各建一张表。
+ * 由抽屉原理，距离不超过最大距离的两个哈希至少有一段完全相同，
+ * 因此只需比较与查询哈希某一段相同的候选，百万条目下查找也只需微秒级。
+ *
+ * 索引保存在 .ocr-cache/phash-index.tsv，追加写入，下次运行时加载。
+ * 来源图片被重命名后追加一行 "=>\t原路径\t新路径"，加载时同样生效，复用结果时给出的来源始终是当前文件名。线程安全
+ */
+public class PerceptualHashIndex implements AutoCloseable {
+    private static final String CACHE_DIR = ".ocr-cache";
+    private static final String INDEX_FILE = "phash-index.tsv";
+    private static final String FIELD_SEPARATOR = "\t";
+    // 重命名记录的首列，不会与十六进制哈希混淆
+    private static final String MOVED_MARKER = "=>";
+    // dHash 采样网格：9 x 8 个格子，比较每行相邻两格得到 8 x 8 = 64 位
+    private static final int HASH_COLUMNS = 9;
+    private static final int HASH_ROWS = 8;
+    // 每个格子内的采样点数（每个方向）
+    private static final int SAMPLES_PER_CELL = 10;
+
+    private final int maxDistance;
+    private final int[] chunkShifts;
+    private final long[] chunkMasks;
+    private final List<Map<Long, IdList>> tables = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+    // 与 entries 一一对应的哈希值，连续存放，比较时不需要访问 Entry 对象
+    private long[] hashes = new long[1024];
+    // 来源图片路径 -> 条目编号
+    private final Map<String, IdList> idsBySource = new HashMap<>();
+    // 本次运行中重命名过的来源：原路径 -> 新路径，用于更新识别时已取得的旧来源路径
+    private final Map<String, String> movedSources = new HashMap<>();
+    private final BufferedWriter writer;
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * 已识别图片的哈希和识别结果
+     */
+    private static class Entry {
+        final long hash;
+        // 识别参数（语言、阈值、预处理），参数不同的结果不能互相复用
+        final String profile;
+        final double confidence;
+        // 来源图片被重命名时更新（由索引的锁保护）
+        String source;
+        final String text;
+
+        Entry(long hash, String profile, double confidence, String source, String text) {
+            this.hash = hash;
+            this.profile = profile;
+            this.confidence = confidence;
+            this.source = source;
+            this.text = text;
+        }
+    }
+
+    /**
+     * 某一段取值相同的条目编号列表
+     */
+    private static class IdList {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * 近似重复的查找结果
+     */
+    public static class Match {
+        private final String text;
+        private final double confidence;
+        private final String source;
+        private final int distance;
+
+        Match(Entry entry, int distance) {
+            this.text = entry.text;
+            this.confidence = entry.confidence;
+            this.source = entry.source;
+            this.distance = distance;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        /**
+         * @return 最初识别出该文本的图片路径
+         */
+        public String getSource() {
+            return source;
+        }
+
+        /**
+         * @return 汉明距离
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    /**
+     * 打开（或创建）索引
+     *
+     * @param indexFile   索引文件
+     * @param maxDistance 视为近似重复的最大汉明距离 (0-31)
+     * @throws IOException 索引文件无法读写
+     */
+    public PerceptualHashIndex(Path indexFile, int maxDistance) throws IOException {
+        if (maxDistance < 0 || maxDistance > 31) {
+            throw new IllegalArgumentException("最大汉明距离应在 0-31 之间: " + maxDistance);
+        }
+        this.maxDistance = maxDistance;
+        int chunks = maxDistance + 1;
+        this.chunkShifts = new int[chunks];
+        this.chunkMasks = new long[chunks];
+        int shift = 0;
+        for (int i = 0; i < chunks; i++) {
+            // 64 位尽量均分，前面的段多分 1 位
+            int bits = 64 / chunks + (i < 64 % chunks ? 1 : 0);
+            chunkShifts[i] = shift;
+            chunkMasks[i] = bits == 64 ? -1L : (1L << bits) - 1;
+            shift += bits;
+            tables.add(new HashMap<>());
+        }
+        Files.createDirectories(indexFile.toAbsolutePath().getParent());
+        if (Files.exists(indexFile)) {
+            load(indexFile);
+        }
+        this.writer = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 根据配置文件打开项目根目录下的索引
+     *
+     * @param projectRoot 项目根目录
+     * @return 索引实例，未启用或无法打开时返回 null
+     */
+    public static PerceptualHashIndex openFromConfig(String projectRoot) {
+        if (!OcrConfig.isPhashEnabled()) {
+            return null;
+        }
+        try {
+            return new PerceptualHashIndex(Paths.get(projectRoot, CACHE_DIR, INDEX_FILE),
+                    OcrConfig.getPhashMaxDistance());
+        } catch (IOException e) {
+            System.err.println("警告: 无法打开近似重复索引，本次运行不检测近似重复: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void load(Path indexFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields[0].equals(MOVED_MARKER)) {
+                    if (fields.length >= 3 && !fields[1].isEmpty() && !fields[2].isEmpty()) {
+                        move(fields[1], fields[2]);
+                    }
+                    continue;
+                }
+                if (fields.length < 5 || fields[4].isEmpty()) {
+                    continue;
+                }
+                try {
+                    insert(new Entry(Long.parseUnsignedLong(fields[0], 16), fields[1],
+                            Double.parseDouble(fields[2]), fields[3], fields[4]));
+                } catch (NumberFormatException e) {
+                    // 忽略损坏的行（例如进程中断时写了一半）
+                }
+            }
+        }
+    }
+
+    /**
+     * 计算 64 位 dHash
+     * 把图片划分为 9 x 8 个格子，每个格子取若干采样点的平均亮度，
+     * 每行相邻两个格子比较亮度得到一位。对缩放、重新压缩不敏感
+     *
+     * @param image 图片
+     * @return 哈希值
+     */
+    public static long dHash(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] luma = new int[HASH_COLUMNS * HASH_ROWS];
+        for (int row = 0; row < HASH_ROWS; row++) {
+            for (int column = 0; column < HASH_COLUMNS; column++) {
+                int sum = 0;
+                for (int sy = 0; sy < SAMPLES_PER_CELL; sy++) {
+                    int y = (int) ((row + (sy + 0.5) / SAMPLES_PER_CELL) * height / HASH_ROWS);
+                    for (int sx = 0; sx < SAMPLES_PER_CELL; sx++) {
+                        int x = (int) ((column + (sx + 0.5) / SAMPLES_PER_CELL) * width / HASH_COLUMNS);
+                        int argb = image.getRGB(Math.min(x, width - 1), Math.min(y, height - 1));
+                        int alpha = argb >>> 24;
+                        int gray = (((argb >> 16) & 0xFF) * 299 + ((argb >> 8) & 0xFF) * 587 + (argb & 0xFF) * 114) / 1000;
+                        // 透明像素按白色背景合成
+                        sum += (gray * alpha + 255 * (255 - alpha)) / 255;
+                    }
+                }
+                luma[row * HASH_COLUMNS + column] = sum;
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < HASH_ROWS; row++) {
+            for (int column = 0; column < HASH_COLUMNS - 1; column++) {
+                hash <<= 1;
+                if (luma[row * HASH_COLUMNS + column] > luma[row * HASH_COLUMNS + column + 1]) {
+                    hash |= 1;
+                }
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 查找近似重复的已识别图片
+     *
+     * @param hash    查询图片的 dHash
+     * @param profile 识别参数
+     * @return 距离最近的匹配，没有时返回 null
+     */
+    public synchronized Match find(long hash, String profile) {
+        Entry best = null;
+        int bestDistance = maxDistance + 1;
+        for (int i = 0; i < tables.size(); i++) {
+            IdList candidates = tables.get(i).get(chunk(hash, i));
+            if (candidates == null) {
+                continue;
+            }
+            int[] ids = candidates.ids;
+            for (int j = 0; j < candidates.size; j++) {
+                int distance = Long.bitCount(hashes[ids[j]] ^ hash);
+                if (distance < bestDistance) {
+                    Entry entry = entries.get(ids[j]);
+                    if (entry.profile.equals(profile)) {
+                        best = entry;
+                        bestDistance = distance;
+                    }
+                }
+            }
+            if (bestDistance == 0) {
+                break;
+            }
+        }
+        if (best == null) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return new Match(best, bestDistance);
+    }
+
+    /**
+     * 加入一张已识别图片，立即写入磁盘
+     *
+     * @param hash       图片的 dHash
+     * @param profile    识别参数
+     * @param confidence 置信度
+     * @param source     图片路径
+     * @param text       识别文本（已去除空白字符）
+     */
+    public synchronized void add(long hash, String profile, double confidence, String source, String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(hash, profile, confidence, source.replace('\t', ' '), text);
+        insert(entry);
+        try {
+            writer.write(Long.toHexString(hash) + FIELD_SEPARATOR + profile + FIELD_SEPARATOR + confidence
+                    + FIELD_SEPARATOR + entry.source + FIELD_SEPARATOR + text);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入近似重复索引失败: " + e.getMessage());
+        }
+    }
+
+    private void insert(Entry entry) {
+        int id = entries.size();
+        entries.add(entry);
+        if (id == hashes.length) {
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        hashes[id] = entry.hash;
+        for (int i = 0; i < tables.size(); i++) {
+            tables.get(i).computeIfAbsent(chunk(entry.hash, i), k -> new IdList()).add(id);
+        }
+        idsBySource.computeIfAbsent(entry.source, k -> new IdList()).add(id);
+        // 新路径上出现了新的来源，旧的转发记录不再适用
+        movedSources.remove(entry.source);
+    }
+
+    /**
+     * 来源图片被重命名后更新索引中的路径，立即写入磁盘
+     * 不是任何条目来源的文件直接忽略
+     *
+     * @param from 原文件
+     * @param to   新文件
+     */
+    public synchronized void moved(File from, File to) {
+        String fromPath = from.getAbsolutePath().replace('\t', ' ');
+        String toPath = to.getAbsolutePath().replace('\t', ' ');
+        if (fromPath.equals(toPath) || !move(fromPath, toPath)) {
+            return;
+        }
+        try {
+            writer.write(MOVED_MARKER + FIELD_SEPARATOR + fromPath + FIELD_SEPARATOR + toPath);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入近似重复索引失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把来源为 from 的条目改为 to
+     *
+     * @return false 表示没有以 from 为来源的条目
+     */
+    private boolean move(String from, String to) {
+        IdList ids = idsBySource.remove(from);
+        if (ids == null) {
+            return false;
+        }
+        for (int i = 0; i < ids.size; i++) {
+            entries.get(ids.ids[i]).source = to;
+        }
+        IdList existing = idsBySource.get(to);
+        if (existing == null) {
+            idsBySource.put(to, ids);
+        } else {
+            for (int i = 0; i < ids.size; i++) {
+                existing.add(ids.ids[i]);
+            }
+        }
+        // 目标路径不再转发，因此转发链总是以当前路径结束，不会成环
+        movedSources.remove(to);
+        movedSources.put(from, to);
+        return true;
+    }
+
+    /**
+     * 获取来源图片的当前路径
+     * 识别时取得的来源路径可能在重命名之前（例如来源在之前的批次中才被重命名）
+     *
+     * @param source 查找时得到的来源路径
+     * @return 来源图片当前的路径，未被重命名时原样返回
+     */
+    public synchronized String currentSource(String source) {
+        String current = source;
+        String next;
+        while ((next = movedSources.get(current)) != null) {
+            current = next;
+        }
+        return current;
+    }
+
+    private long chunk(long hash, int index) {
+        return (hash >>> chunkShifts[index]) & chunkMasks[index];
+    }
+
+    /**
+     * @return 索引中的图片数
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return 命中近似重复的次数
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("警告: 关闭近似重复索引失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package LDS.Person;
+
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.Tesseract;
+import net.sourceforge.tess4j.TesseractException;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 常驻的 Tesseract 引擎
+ * Tesseract.doOCR 每次调用都会创建原生 TessBaseAPI、加载 traineddata 再销毁，
+ * 本类只在第一次识别时初始化原生句柄，之后每张图片复用同一个句柄，
+ * 仅在语言或页面分割模式变化时重新初始化。
+ * 每次识别后读取整体平均置信度（Tesseract 自身的评分）并从结果迭代器统计识别出的词数。
+ * 不是线程安全的，每个工作线程应持有各自的实例
+ */
+public class PersistentTesseract extends Tesseract implements AutoCloseable {
+    // 未设置页面分割模式时 Tesseract 使用其内置默认值
+    private static final int DEFAULT_PAGE_SEG_MODE = -1;
+
+    private String language = "eng";
+    private int pageSegMode = DEFAULT_PAGE_SEG_MODE;
+    private boolean initialized = false;
+    private int initCount = 0;
+
+    // 上一次识别的平均置信度 (0-100) 和识别出的词数
+    private int lastMeanConfidence = 0;
+    private int lastWordCount = 0;
+
+    @Override
+    public void setLanguage(String language) {
+        if (!language.equals(this.language)) {
+            reset();
+            this.language = language;
+        }
+        super.setLanguage(language);
+    }
+
+    @Override
+    public void setPageSegMode(int mode) {
+        if (mode != this.pageSegMode) {
+            reset();
+            this.pageSegMode = mode;
+        }
+        super.setPageSegMode(mode);
+    }
+
+    /**
+     * 识别图片中的文字，复用已初始化的原生句柄
+     *
+     * @param image 待识别图片
+     * @return 识别的原始文本
+     * @throws TesseractException 识别失败
+     */
+    public String recognize(BufferedImage image) throws TesseractException {
+        return recognize(() -> setImage(image, null), null);
+    }
+
+    /**
+     * 识别 8 位灰度像素，原生引擎直接读取直接缓冲区中的像素，不再复制
+     *
+     * @param pixels 灰度像素（直接缓冲区，每行 width 字节）
+     * @param width  图片宽度
+     * @param height 图片高度
+     * @return 识别的原始文本
+     * @throws TesseractException 识别失败
+     */
+    public String recognizeGray(ByteBuffer pixels, int width, int height) throws TesseractException {
+        return recognize(() -> setImage(width, height, pixels, null, 8), null);
+    }
+
+    /**
+     * 只识别 8 位灰度像素中的若干区域
+     * 图片只向原生句柄设置一次，之后逐个区域设置识别矩形（SetRectangle），结果按区域顺序以换行连接
+     *
+     * @param pixels  灰度像素（直接缓冲区，每行 width 字节）
+     * @param width   图片宽度
+     * @param height  图片高度
+     * @param regions 待识别区域，按阅读顺序排列
+     * @return 识别的原始文本
+     * @throws TesseractException 识别失败
+     */
+    public String recognizeGrayRegions(ByteBuffer pixels, int width, int height, List<Rectangle> regions)
+            throws TesseractException {
+        return recognize(() -> setImage(width, height, pixels, null, 8), regions);
+    }
+
+    /**
+     * 向原生句柄设置待识别的图片
+     */
+    private interface ImageLoader {
+        void load() throws IOException;
+    }
+
+    /**
+     * @param regions 待识别区域，null 表示识别整张图片
+     */
+    private String recognize(ImageLoader loader, List<Rectangle> regions) throws TesseractException {
+        ensureInitialized();
+        lastWordCount = 0;
+        try {
+            loader.load();
+            if (regions == null) {
+                String text = getOCRText("", 1);
+                lastMeanConfidence = readConfidences();
+                return text;
+            }
+            StringBuilder text = new StringBuilder();
+            // 整体平均置信度按各区域的词数加权
+            long weightedConfidence = 0;
+            for (Rectangle region : regions) {
+                getAPI().TessBaseAPISetRectangle(getHandle(), region.x, region.y, region.width, region.height);
+                int wordsBefore = lastWordCount;
+                text.append(getOCRText("", 1)).append('\n');
+                weightedConfidence += (long) readConfidences() * (lastWordCount - wordsBefore);
+            }
+            lastMeanConfidence = lastWordCount == 0 ? 0 : (int) (weightedConfidence / lastWordCount);
+            return text.toString();
+        } catch (Exception e) {
+            // 原生句柄状态未知，下次识别时重新初始化
+            reset();
+            throw new TesseractException(e);
+        } finally {
+            if (initialized) {
+                // 只清除本次识别结果，保留已加载的模型
+                getAPI().TessBaseAPIClear(getHandle());
+            }
+        }
+    }
+
+    /**
+     * 在清除识别结果之前读取平均置信度，并遍历结果迭代器把识别出的词数累加到 lastWordCount
+     *
+     * @return 本次识别的平均置信度
+     */
+    private int readConfidences() {
+        int meanConfidence = getAPI().TessBaseAPIMeanTextConf(getHandle());
+        ITessAPI.TessResultIterator iterator = getAPI().TessBaseAPIGetIterator(getHandle());
+        if (iterator == null) {
+            return meanConfidence;
+        }
+        try {
+            do {
+                Pointer word = getAPI().TessResultIteratorGetUTF8Text(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD);
+                if (word == null) {
+                    // 迭代器没有指向任何词（空页面）
+                    break;
+                }
+                getAPI().TessDeleteText(word);
+                lastWordCount++;
+            } while (getAPI().TessResultIteratorNext(iterator, ITessAPI.TessPageIteratorLevel.RIL_WORD) != 0);
+        } finally {
+            getAPI().TessResultIteratorDelete(iterator);
+        }
+        return meanConfidence;
+    }
+
+    /**
+     * @return 上一次识别的平均置信度 (0-100)，由 Tesseract 按字符数加权
+     */
+    public int getLastMeanConfidence() {
+        return lastMeanConfidence;
+    }
+
+    /**
+     * @return 上一次识别出的词数
+     */
+    public int getLastWordCount() {
+        return lastWordCount;
+    }
+
+    /**
+     * 确保原生句柄已经初始化
+     */
+    private void ensureInitialized() {
+        if (!initialized) {
+            init();
+            setVariables();
+            initialized = true;
+            initCount++;
+        }
+    }
+
+    /**
+     * 释放原生句柄，下次识别时重新初始化
+     */
+    private void reset() {
+        if (initialized) {
+            initialized = false;
+            dispose();
+        }
+    }
+
+    /**
+     * @return 原生句柄被初始化的次数（用于确认句柄是否被复用）
+     */
+    public int getInitCount() {
+        return initCount;
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+}
@@ -0,0 +1,99 @@
+package LDS.Person;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 解码像素预算
+ * 所有工作线程共享一个以像素计的信号量：解码前按解码后的像素数申请，识别结束后归还。
+ * 几张超大长截图同时解码时，后来的线程等待前面的识别完成，堆内存占用不会超过 -Xmx 的配置比例。
+ * 单张图片需要的像素超过整个预算时只申请整个预算（独占），保证总能继续处理
+ *
+ * 线程安全
+ */
+public class PixelBudget {
+    // 每个像素在堆上的估计占用：解码结果 (4 字节 ARGB) + 预处理灰度图 + 缩放等中间结果
+    public static final int BYTES_PER_PIXEL = 6;
+    // 信号量的一个许可代表的像素数（int 许可数即可覆盖很大的堆）
+    private static final int PIXELS_PER_PERMIT = 1024;
+
+    private final Semaphore permits;
+    private final int totalPermits;
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong subsampledCount = new AtomicLong();
+
+    /**
+     * 创建像素预算
+     *
+     * @param budgetPixels 同时解码的最大像素数
+     */
+    public PixelBudget(long budgetPixels) {
+        this.totalPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, budgetPixels / PIXELS_PER_PERMIT));
+        this.permits = new Semaphore(totalPermits, true);
+    }
+
+    /**
+     * 根据配置的堆内存比例 (ocr.decode.heap.share) 和当前 -Xmx 创建像素预算
+     *
+     * @return 像素预算
+     */
+    public static PixelBudget fromConfig() {
+        long heapBytes = (long) (Runtime.getRuntime().maxMemory() * OcrConfig.getDecodeHeapShare());
+        return new PixelBudget(heapBytes / BYTES_PER_PIXEL);
+    }
+
+    /**
+     * 申请解码像素，预算不足时等待其他线程归还
+     *
+     * @param pixels 解码后的像素数
+     * @return 实际持有的许可数，归还时传给 release()
+     * @throws InterruptedException 等待时被中断
+     */
+    public int acquire(long pixels) throws InterruptedException {
+        int needed = (int) Math.max(1, Math.min(totalPermits, (pixels + PIXELS_PER_PERMIT - 1) / PIXELS_PER_PERMIT));
+        if (!permits.tryAcquire(needed)) {
+            waitCount.incrementAndGet();
+            permits.acquire(needed);
+        }
+        return needed;
+    }
+
+    /**
+     * 归还 acquire() 申请的许可
+     *
+     * @param held acquire() 的返回值
+     */
+    public void release(int held) {
+        if (held > 0) {
+            permits.release(held);
+        }
+    }
+
+    /**
+     * 记录一张按像素上限降采样或裁剪后解码的图片
+     */
+    public void recordSubsampled() {
+        subsampledCount.incrementAndGet();
+    }
+
+    /**
+     * @return 预算总像素数
+     */
+    public long getBudgetPixels() {
+        return (long) totalPermits * PIXELS_PER_PERMIT;
+    }
+
+    /**
+     * @return 因预算不足而等待的次数
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * @return 降采样或裁剪后解码的图片数
+     */
+    public long getSubsampledCount() {
+        return subsampledCount.get();
+    }
+}
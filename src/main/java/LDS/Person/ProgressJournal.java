@@ -0,0 +1,219 @@
+package LDS.Person;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 逐文件的处理进度日志
+ * 每个文件的状态变化（待处理、已识别、已重命名、已跳过）都会立即追加写入，
+ * 进程中断后使用 --resume 重新运行时，可以从中断处继续，已识别的文件不会重新识别。
+ *
+ * 日志格式为每行一条记录，字段用制表符分隔：
+ * - PENDING   路径
+ * - OCR_DONE  路径  置信度  识别文本
+ * - RENAMED   原路径  新路径
+ * - SKIPPED   路径  原因
+ */
+public class ProgressJournal implements AutoCloseable {
+    public static final String JOURNAL_FILE = "progress.journal";
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /**
+     * 文件处理状态
+     */
+    public enum State {
+        /** 等待识别 */
+        PENDING,
+        /** 已识别，尚未重命名 */
+        OCR_DONE,
+        /** 已重命名 */
+        RENAMED,
+        /** 已跳过（未识别到有效文字或重命名失败） */
+        SKIPPED
+    }
+
+    /**
+     * 某个文件最近一次记录的状态
+     */
+    public static class Record {
+        private final State state;
+        private final String[] fields;
+
+        Record(State state, String[] fields) {
+            this.state = state;
+            this.fields = fields;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return OCR_DONE 记录中的置信度
+         */
+        public double getConfidence() {
+            return Double.parseDouble(fields[2]);
+        }
+
+        /**
+         * @return OCR_DONE 记录中的识别文本
+         */
+        public String getText() {
+            return fields[3];
+        }
+    }
+
+    private final Map<String, Record> latest = new HashMap<>();
+    private final Set<String> renamedTargets = new HashSet<>();
+    private final BufferedWriter writer;
+
+    /**
+     * 打开进度日志
+     *
+     * @param journalFile 日志文件
+     * @param resume      true 表示读取已有日志并继续追加；false 表示开始新的一轮，清空旧日志
+     * @throws IOException 日志文件无法读写
+     */
+    public ProgressJournal(Path journalFile, boolean resume) throws IOException {
+        if (resume && Files.exists(journalFile)) {
+            load(journalFile);
+            this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        }
+    }
+
+    private void load(Path journalFile) throws IOException {
+        for (String line : Files.readAllLines(journalFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length < 2) {
+                continue;
+            }
+            State state;
+            try {
+                state = State.valueOf(fields[0]);
+            } catch (IllegalArgumentException e) {
+                // 忽略损坏的行（例如进程中断时写了一半）
+                continue;
+            }
+            if (state == State.OCR_DONE && fields.length < 4
+                    || state == State.RENAMED && fields.length < 3) {
+                continue;
+            }
+            latest.put(fields[1], new Record(state, fields));
+            if (state == State.RENAMED) {
+                renamedTargets.add(fields[2]);
+            }
+        }
+    }
+
+    /**
+     * 获取文件最近一次记录的状态
+     *
+     * @param file 文件
+     * @return 状态记录，从未记录过时返回 null
+     */
+    public synchronized Record get(File file) {
+        return latest.get(key(file));
+    }
+
+    /**
+     * 文件是否已处理完毕（已重命名、已跳过，或本身就是之前重命名得到的文件）
+     *
+     * @param file 文件
+     * @return true 表示无需再处理
+     */
+    public synchronized boolean isFinished(File file) {
+        String key = key(file);
+        if (renamedTargets.contains(key)) {
+            return true;
+        }
+        Record record = latest.get(key);
+        return record != null && (record.state == State.RENAMED || record.state == State.SKIPPED);
+    }
+
+    /**
+     * 记录待识别的文件（已有记录的文件不重复记录）
+     */
+    public synchronized void pending(File file) {
+        if (!latest.containsKey(key(file))) {
+            append(State.PENDING, key(file));
+            flush();
+        }
+    }
+
+    /**
+     * 记录识别完成
+     */
+    public synchronized void ocrDone(File file, double confidence, String text) {
+        append(State.OCR_DONE, key(file), String.valueOf(confidence), text);
+        flush();
+    }
+
+    /**
+     * 记录重命名完成
+     */
+    public synchronized void renamed(File from, File to) {
+        append(State.RENAMED, key(from), key(to));
+        renamedTargets.add(key(to));
+        flush();
+    }
+
+    /**
+     * 记录跳过
+     * 原因可能来自异常信息，其中的制表符和换行符会破坏逐行解析，统一替换为空格
+     */
+    public synchronized void skipped(File file, String reason) {
+        append(State.SKIPPED, key(file), reason == null ? ""
+                : reason.replace('\t', ' ').replace('\n', ' ').replace('\r', ' '));
+        flush();
+    }
+
+    private void append(State state, String... values) {
+        String[] fields = new String[values.length + 1];
+        fields[0] = state.name();
+        System.arraycopy(values, 0, fields, 1, values.length);
+        latest.put(values[0], new Record(state, fields));
+        try {
+            writer.write(String.join(FIELD_SEPARATOR, fields));
+            writer.newLine();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入进度日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 每次状态变化后立即刷新，进程被终止时已完成的状态不会丢失
+     */
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入进度日志失败: " + e.getMessage());
+        }
+    }
+
+    private static String key(File file) {
+        return file.getAbsolutePath();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("警告: 关闭进度日志失败: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package LDS.Person;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 分级识别策略
+ * 先用低成本的快速识别（缩小图片、单一语言、单文本块的页面分割模式），
+ * Tesseract 给出的平均置信度达到阈值时直接采用；否则再用完整配置重新识别。
+ * 大多数表情包文字清晰、排版简单，快速识别即可得到可靠结果。
+ *
+ * 配置不可变，统计计数是线程安全的，可以被多个 OCRService 共享
+ */
+public class RecognitionLadder {
+    /** 快速识别 */
+    public static final String TIER_FAST = "快速识别";
+    /** 完整识别 */
+    public static final String TIER_FULL = "完整识别";
+
+    private final String fastLanguage;
+    private final int fastPageSegMode;
+    private final int fastMaxSide;
+
+    private final AtomicInteger fastCount = new AtomicInteger();
+    private final AtomicInteger fullCount = new AtomicInteger();
+
+    /**
+     * 创建分级识别策略
+     *
+     * @param fastLanguage    快速识别使用的语言，例如 "chi_sim"
+     * @param fastPageSegMode 快速识别使用的页面分割模式 (0-13)
+     * @param fastMaxSide     快速识别时图片最长边（像素），更大的图片先缩小
+     */
+    public RecognitionLadder(String fastLanguage, int fastPageSegMode, int fastMaxSide) {
+        if (fastLanguage == null || fastLanguage.isEmpty()) {
+            throw new IllegalArgumentException("快速识别语言不能为空");
+        }
+        if (fastPageSegMode < 0 || fastPageSegMode > 13) {
+            throw new IllegalArgumentException("页面分割模式应在 0-13 之间: " + fastPageSegMode);
+        }
+        if (fastMaxSide <= 0) {
+            throw new IllegalArgumentException("最长边应大于 0: " + fastMaxSide);
+        }
+        this.fastLanguage = fastLanguage;
+        this.fastPageSegMode = fastPageSegMode;
+        this.fastMaxSide = fastMaxSide;
+    }
+
+    /**
+     * 根据配置文件创建分级识别策略
+     *
+     * @param language 完整识别使用的语言，未配置快速识别语言时取其中第一个语言
+     * @return 分级识别策略，配置中未启用时返回 null
+     */
+    public static RecognitionLadder fromConfig(String language) {
+        return OcrConfig.isLadderEnabled() ? fromConfigParameters(language) : null;
+    }
+
+    /**
+     * 使用配置文件中的参数创建分级识别策略，不检查是否启用（用于对比测试）
+     *
+     * @param language 完整识别使用的语言，未配置快速识别语言时取其中第一个语言
+     * @return 分级识别策略
+     */
+    public static RecognitionLadder fromConfigParameters(String language) {
+        return new RecognitionLadder(fastLanguageFor(OcrConfig.getLadderFastLanguage(), language),
+                OcrConfig.getLadderFastPageSegMode(), OcrConfig.getLadderFastMaxSide());
+    }
+
+    /**
+     * 快速识别使用的语言：配置了 ocr.ladder.fast.language 时使用该语言，否则取完整识别语言中的第一个
+     *
+     * @param configured 配置的快速识别语言，空字符串表示未配置
+     * @param language   完整识别使用的语言
+     * @return 快速识别语言
+     */
+    public static String fastLanguageFor(String configured, String language) {
+        if (!configured.isEmpty()) {
+            return configured;
+        }
+        int plus = language.indexOf('+');
+        return plus > 0 ? language.substring(0, plus) : language;
+    }
+
+    /**
+     * 缩小图片用于快速识别，最长边不超过限制时原样返回
+     *
+     * @param image 待识别图片
+     * @return 快速识别使用的图片
+     */
+    public BufferedImage prepareFast(BufferedImage image) {
+        int longest = Math.max(image.getWidth(), image.getHeight());
+        if (longest <= fastMaxSide) {
+            return image;
+        }
+        BufferedImage gray = image.getType() == BufferedImage.TYPE_BYTE_GRAY ? image : ImagePreprocessor.toGray(image);
+        return ImagePreprocessor.scale(gray, (double) fastMaxSide / longest);
+    }
+
+    /**
+     * 判断快速识别的结果是否需要升级为完整识别
+     *
+     * @param meanConfidence      Tesseract 平均置信度 (0-100)
+     * @param wordCount           识别出的词数
+     * @param keptCodePoints      过滤后保留的字符数
+     * @param confidenceThreshold 置信度阈值 (0-100)
+     * @return true 表示需要完整识别
+     */
+    public boolean shouldEscalate(int meanConfidence, int wordCount, int keptCodePoints, double confidenceThreshold) {
+        return wordCount == 0 || keptCodePoints == 0 || meanConfidence < confidenceThreshold;
+    }
+
+    /**
+     * 记录一张图片在哪一级结束识别
+     *
+     * @param tier TIER_FAST 或 TIER_FULL
+     */
+    public void recordFinished(String tier) {
+        (TIER_FAST.equals(tier) ? fastCount : fullCount).incrementAndGet();
+    }
+
+    /**
+     * @return 快速识别即得到结果的图片数
+     */
+    public int getFastCount() {
+        return fastCount.get();
+    }
+
+    /**
+     * @return 升级为完整识别的图片数
+     */
+    public int getFullCount() {
+        return fullCount.get();
+    }
+
+    public String getFastLanguage() {
+        return fastLanguage;
+    }
+
+    public int getFastPageSegMode() {
+        return fastPageSegMode;
+    }
+
+    /**
+     * @return 描述当前分级参数的字符串，用作缓存键的一部分
+     */
+    public String fingerprint() {
+        return fingerprint(fastLanguage);
+    }
+
+    /**
+     * @param fastLanguage 实际使用的快速识别语言（跟随配置时可能与创建时不同）
+     * @return 描述分级参数的字符串，用作缓存键的一部分
+     */
+    public String fingerprint(String fastLanguage) {
+        return "ladder:" + fastLanguage + ":" + fastPageSegMode + ":" + fastMaxSide;
+    }
+}
@@ -0,0 +1,234 @@
+package LDS.Person;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 追加写入的重命名日志（替代 OldNames.txt）
+ * 每次重命名成功后立即追加一行 "原路径 -> 新路径"，路径相对于项目根目录并统一使用 "/" 分隔。
+ * 加载时逐行流式读取，在内存中建立双向索引，可以按原路径或当前路径 O(1) 查找。
+ *
+ * 同一个文件被多次重命名时（例如 A -> B，之后 B -> C），索引中只保留 A -> C；
+ * 恢复原名本身也作为一次重命名记录（C -> A），记录后该文件从索引中移除。
+ *
+ * 文件格式：以 # 开头的行为注释，其余每行为 "原路径\t新路径"，
+ * 近似重复的图片（识别文本复用自另一张图片）附加第三列 "duplicate-of:来源路径"，恢复时忽略该列
+ */
+public class RenameJournal implements AutoCloseable {
+    public static final String JOURNAL_FILE = "rename-journal.tsv";
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String HEADER = "# Memes Renamer 重命名日志: 原路径<TAB>新路径（相对项目根目录）[<TAB>duplicate-of:来源]";
+    private static final String DUPLICATE_PREFIX = "duplicate-of:";
+
+    private final Path baseDir;
+    // 原路径 -> 当前路径（保持记录顺序）
+    private final Map<String, String> currentByOriginal = new LinkedHashMap<>();
+    // 当前路径 -> 原路径
+    private final Map<String, String> originalByCurrent = new HashMap<>();
+    private final BufferedWriter writer;
+
+    /**
+     * 打开项目根目录下的重命名日志，不存在时创建
+     *
+     * @param projectRoot 项目根目录
+     * @throws IOException 日志无法读写
+     */
+    public RenameJournal(Path projectRoot) throws IOException {
+        this(projectRoot, projectRoot.resolve(JOURNAL_FILE));
+    }
+
+    /**
+     * 打开指定的重命名日志，不存在时创建
+     *
+     * @param baseDir     路径的相对基准目录
+     * @param journalFile 日志文件
+     * @throws IOException 日志无法读写
+     */
+    public RenameJournal(Path baseDir, Path journalFile) throws IOException {
+        this.baseDir = baseDir.toAbsolutePath().normalize();
+        boolean exists = Files.exists(journalFile);
+        if (exists) {
+            load(journalFile);
+        }
+        this.writer = Files.newBufferedWriter(journalFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (!exists) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.flush();
+        }
+    }
+
+    private void load(Path journalFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields.length < 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+                    // 忽略损坏的行（例如进程中断时写了一半）
+                    continue;
+                }
+                apply(fields[0], fields[1]);
+            }
+        }
+    }
+
+    /**
+     * 更新内存索引
+     */
+    private void apply(String from, String to) {
+        String original = originalByCurrent.remove(from);
+        if (original == null) {
+            original = from;
+        }
+        if (original.equals(to)) {
+            // 已恢复为原名
+            currentByOriginal.remove(original);
+            return;
+        }
+        currentByOriginal.put(original, to);
+        originalByCurrent.put(to, original);
+    }
+
+    /**
+     * 记录一次重命名，立即写入磁盘
+     *
+     * @param from 重命名前的文件
+     * @param to   重命名后的文件
+     */
+    public void record(File from, File to) {
+        record(from, to, null);
+    }
+
+    /**
+     * 记录一次重命名，立即写入磁盘
+     *
+     * @param from        重命名前的文件
+     * @param to          重命名后的文件
+     * @param duplicateOf 近似重复时为识别文本的来源图片，否则为 null
+     */
+    public synchronized void record(File from, File to, String duplicateOf) {
+        String fromPath = relativize(from);
+        String toPath = relativize(to);
+        if (fromPath.equals(toPath)) {
+            return;
+        }
+        apply(fromPath, toPath);
+        try {
+            writer.write(fromPath + FIELD_SEPARATOR + toPath);
+            if (duplicateOf != null) {
+                writer.write(FIELD_SEPARATOR + DUPLICATE_PREFIX + relativize(new File(duplicateOf)));
+            }
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入重命名日志失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 把另一份重命名日志（例如分片的日志）中的记录按原顺序追加到本日志
+     * 两份日志的路径需要相对同一个项目根目录
+     *
+     * @param journalFile 另一份日志
+     * @return 合并的记录数
+     * @throws IOException 日志无法读取
+     */
+    public int merge(Path journalFile) throws IOException {
+        int merged = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(FIELD_SEPARATOR, -1);
+                if (fields.length < 2 || fields[0].isEmpty() || fields[1].isEmpty()) {
+                    continue;
+                }
+                String duplicateOf = fields.length > 2 && fields[2].startsWith(DUPLICATE_PREFIX)
+                        ? resolve(fields[2].substring(DUPLICATE_PREFIX.length())).getPath() : null;
+                record(resolve(fields[0]), resolve(fields[1]), duplicateOf);
+                merged++;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 按当前路径查找原路径
+     *
+     * @param current 当前文件
+     * @return 原路径（相对项目根目录），未记录时返回 null
+     */
+    public synchronized String originalOf(File current) {
+        return originalByCurrent.get(relativize(current));
+    }
+
+    /**
+     * 按原路径查找当前路径
+     *
+     * @param original 原文件
+     * @return 当前路径（相对项目根目录），未记录时返回 null
+     */
+    public synchronized String currentOf(File original) {
+        return currentByOriginal.get(relativize(original));
+    }
+
+    /**
+     * @return 所有尚未恢复的映射（原路径 -> 当前路径）的快照
+     */
+    public synchronized Map<String, String> mappings() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(currentByOriginal));
+    }
+
+    /**
+     * @return 尚未恢复的映射数量
+     */
+    public synchronized int size() {
+        return currentByOriginal.size();
+    }
+
+    /**
+     * 将日志中的路径解析为文件
+     *
+     * @param journalPath 日志中记录的路径
+     * @return 对应的文件
+     */
+    public File resolve(String journalPath) {
+        return baseDir.resolve(journalPath.replace('/', File.separatorChar)).toFile();
+    }
+
+    /**
+     * 转换为相对项目根目录、以 "/" 分隔的路径；不在项目根目录下时使用绝对路径
+     */
+    private String relativize(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (path.startsWith(baseDir)) {
+            path = baseDir.relativize(path);
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("警告: 关闭重命名日志失败: " + e.getMessage());
+        }
+    }
+}
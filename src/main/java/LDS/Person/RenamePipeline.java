@@ -0,0 +1,465 @@
+package LDS.Person;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 识别 + 重命名流水线
+ * 生产者线程（例如扫描线程）通过 offer() 不断送入文件，文件会根据进度日志跳过、
+ * 直接重命名或提交到 OCR 工作线程池；主线程调用 drain() 按完成顺序收集结果，
+ * 识别成功的文件攒成一批（达到批大小或暂时没有新结果时）交给 RenamePlanner 统一重命名，
+ * 再输出结果并同步进度日志、重命名日志、结果缓存和文字索引。
+ * 同时在途的识别任务数有上限，扫描速度不会把整棵目录树堆积在内存中
+ */
+public class RenamePipeline {
+    private static final long POLL_INTERVAL_MS = 200;
+    // 非详细模式下两次进度输出的最小间隔
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private final OcrWorkerPool pool;
+    private final OcrResultCache cache;
+    private final ProgressJournal journal;
+    private final RenameJournal renames;
+    private final Semaphore inFlight;
+    private final BlockingQueue<Completion> completed = new LinkedBlockingQueue<>();
+    private final RenamePlanner planner = new RenamePlanner();
+    private final int batchSize;
+
+    // 已送入 completed 队列（或即将送入）的文件数
+    private final AtomicInteger accepted = new AtomicInteger();
+    private final AtomicInteger alreadyFinished = new AtomicInteger();
+    private volatile boolean inputClosed = false;
+    private volatile Consumer<File> completionListener;
+    private RunMetrics metrics;
+    private Shard shard;
+    private CaptionIndex captionIndex;
+    private PerceptualHashIndex duplicateIndex;
+    private final AtomicInteger otherShard = new AtomicInteger();
+
+    // 以下计数仅由 drain() 所在线程修改
+    private int handled = 0;
+    private int renamedCount = 0;
+    private int recoveredCount = 0;
+    private int skippedCount = 0;
+    private long drainStartMs;
+    private long lastProgressMs;
+    // 识别成功、等待批量重命名的文件
+    private final List<Pending> batch = new ArrayList<>();
+
+    /**
+     * 完成的识别结果
+     */
+    private static class Completion {
+        final OcrResult result;
+        // true 表示识别结果取自进度日志，无需再次记录
+        final boolean recovered;
+
+        Completion(OcrResult result, boolean recovered) {
+            this.result = result;
+            this.recovered = recovered;
+        }
+    }
+
+    /**
+     * 等待批量重命名的识别结果
+     */
+    private static class Pending {
+        final OcrResult result;
+        // 收到结果时的进度标签
+        final String label;
+
+        Pending(OcrResult result, String label) {
+            this.result = result;
+            this.label = label;
+        }
+    }
+
+    /**
+     * 创建流水线
+     *
+     * @param pool        OCR 工作线程池
+     * @param cache       OCR 结果缓存，可以为 null
+     * @param journal     进度日志
+     * @param renames     重命名日志
+     * @param maxInFlight 同时在途的识别任务上限
+     * @param batchSize   每批重命名的最大文件数
+     */
+    public RenamePipeline(OcrWorkerPool pool, OcrResultCache cache, ProgressJournal journal,
+                          RenameJournal renames, int maxInFlight, int batchSize) {
+        this.pool = pool;
+        this.cache = cache;
+        this.journal = journal;
+        this.renames = renames;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 送入一个文件（可在任意线程调用）
+     * 在途任务达到上限时阻塞，直到有识别结果被处理
+     *
+     * @param imageFile 图片文件
+     * @return true 表示文件已接收，之后会在 drain() 中输出结果；false 表示进度日志显示已完成或不属于本分片
+     * @throws InterruptedException 等待被中断
+     */
+    public boolean offer(File imageFile) throws InterruptedException {
+        if (shard != null && !shard.owns(imageFile)) {
+            otherShard.incrementAndGet();
+            return false;
+        }
+        // 刚重命名出来的文件在进度日志记录之前就可能被扫描到；flush() 先记录进度日志再释放登记，
+        // 因此先检查登记再检查进度日志，两者之间不会漏掉
+        if (planner.isReserved(imageFile) || journal.isFinished(imageFile)) {
+            alreadyFinished.incrementAndGet();
+            return false;
+        }
+        ProgressJournal.Record record = journal.get(imageFile);
+        if (record != null && record.getState() == ProgressJournal.State.OCR_DONE) {
+            // 上次中断前已识别，直接重命名
+            accepted.incrementAndGet();
+            completed.add(new Completion(new OcrResult(imageFile, OcrResult.Status.OK, record.getText(),
+                    record.getText(), record.getConfidence(), "已从进度日志恢复识别结果", 0), true));
+            return true;
+        }
+        inFlight.acquire();
+        accepted.incrementAndGet();
+        journal.pending(imageFile);
+        pool.submit(imageFile).thenAccept(result -> completed.add(new Completion(result, false)));
+        return true;
+    }
+
+    /**
+     * 设置每个文件处理完毕（已输出、已重命名或已跳过）后的回调
+     * 回调在 drain() 所在线程执行，参数为送入时的原文件
+     *
+     * @param listener 回调，null 表示不回调
+     */
+    public void setCompletionListener(Consumer<File> listener) {
+        this.completionListener = listener;
+    }
+
+    /**
+     * 设置运行统计，记录重命名耗时和每个文件的处理结果（需要在 drain() 之前设置）
+     *
+     * @param metrics 运行统计，null 表示不统计
+     */
+    public void setMetrics(RunMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 设置分片，只处理属于本分片的文件（需要在送入文件之前设置）
+     * 同一目录可能同时被其他分片的进程重命名，重命名改用不会覆盖目标的硬链接方式
+     *
+     * @param shard 分片，null 表示处理所有文件
+     */
+    public void setShard(Shard shard) {
+        this.shard = shard;
+        planner.setExclusiveMoves(shard != null);
+    }
+
+    /**
+     * 设置文字索引，重命名成功的文件连同识别文字记入索引
+     *
+     * @param captionIndex 文字索引，null 表示不记录
+     */
+    public void setCaptionIndex(CaptionIndex captionIndex) {
+        this.captionIndex = captionIndex;
+    }
+
+    /**
+     * 设置近似重复索引，重命名成功后更新索引中的来源路径，
+     * 重命名日志中的 duplicate-of 来源也换成当前文件名
+     *
+     * @param duplicateIndex 近似重复索引，null 表示不使用
+     */
+    public void setDuplicateIndex(PerceptualHashIndex duplicateIndex) {
+        this.duplicateIndex = duplicateIndex;
+    }
+
+    /**
+     * 标记不会再有新的文件送入
+     */
+    public void closeInput() {
+        inputClosed = true;
+    }
+
+    /**
+     * 在当前线程处理完成的识别结果，直到输入关闭且所有文件都已处理
+     * 识别成功的文件攒够一批，或者一个轮询间隔内没有新结果时批量重命名
+     *
+     * @return false 表示等待被中断
+     */
+    public boolean drain() {
+        drainStartMs = System.currentTimeMillis();
+        try {
+            while (!inputClosed || handled < accepted.get()) {
+                Completion completion = completed.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (completion == null) {
+                    flush();
+                    continue;
+                }
+                handled++;
+                if (!completion.recovered) {
+                    inFlight.release();
+                } else {
+                    recoveredCount++;
+                }
+                accept(completion.result, !completion.recovered);
+                if (batch.size() >= batchSize) {
+                    flush();
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            flush();
+            printProgress(true);
+        }
+    }
+
+    /**
+     * 处理一个识别结果：失败的直接输出并跳过，成功的记录识别完成并加入待重命名的批次
+     *
+     * @param result    识别结果
+     * @param recordOcr 是否需要记录识别完成（从日志恢复的结果无需重复记录）
+     */
+    private void accept(OcrResult result, boolean recordOcr) {
+        File imageFile = result.getFile();
+        if (!result.isSuccess()) {
+            printResult(progressLabel(), result, null);
+            skippedCount++;
+            // 识别异常可能是暂时的，保持待处理状态，续跑时重试
+            if (result.getStatus() != OcrResult.Status.ERROR) {
+                journal.skipped(imageFile, result.getMessage());
+            }
+            finish(result, null);
+            return;
+        }
+        if (recordOcr) {
+            journal.ocrDone(imageFile, result.getConfidence(), result.getText());
+        }
+        batch.add(new Pending(result, progressLabel()));
+    }
+
+    /**
+     * 批量重命名当前批次，按收到结果的顺序输出日志，并同步进度日志和缓存
+     * 重命名日志在 RenamePlanner 执行每一步后立即写入
+     */
+    private void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<OcrResult> results = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            OcrResult result = pending.result;
+            // 识别时取得的来源可能已在之前的批次中被重命名
+            if (duplicateIndex != null && result.getDuplicateOf() != null) {
+                result = result.asDuplicateOf(duplicateIndex.currentSource(result.getDuplicateOf()));
+            }
+            results.add(result);
+        }
+        List<RenamePlanner.Step> steps = planner.plan(results);
+        planner.apply(steps, renames);
+
+        for (int i = 0; i < steps.size(); i++) {
+            RenamePlanner.Step step = steps.get(i);
+            OcrResult result = step.getResult();
+            File imageFile = result.getFile();
+            printResult(batch.get(i).label, result, step);
+            File renamedFile = step.getRenamedFile();
+            if (renamedFile == null) {
+                skippedCount++;
+                // 暂时性的错误（例如文件被占用）保持识别完成状态，续跑时直接重命名
+                if (step.getFailure() != null && !step.isRetryable()) {
+                    journal.skipped(imageFile, step.getFailure());
+                }
+            } else {
+                renamedCount++;
+                journal.renamed(imageFile, renamedFile);
+                if (cache != null) {
+                    cache.moved(imageFile, renamedFile);
+                }
+                if (duplicateIndex != null) {
+                    duplicateIndex.moved(imageFile, renamedFile);
+                }
+                if (captionIndex != null) {
+                    captionIndex.add(renamedFile, result.getRawText().isEmpty() ? result.getText() : result.getRawText());
+                }
+                if (metrics != null) {
+                    metrics.record(imageFile, RunMetrics.Stage.RENAME, step.getNanos());
+                }
+            }
+            finish(result, renamedFile);
+        }
+        // 重命名目标已记入进度日志，之后由进度日志判断
+        planner.release(steps);
+        batch.clear();
+    }
+
+    /**
+     * 记录运行统计并通知回调
+     *
+     * @param result      识别结果
+     * @param renamedFile 重命名后的文件，跳过或重命名失败时为 null
+     */
+    private void finish(OcrResult result, File renamedFile) {
+        if (metrics != null) {
+            metrics.finish(result, renamedFile);
+        }
+        Consumer<File> listener = completionListener;
+        if (listener != null) {
+            listener.accept(result.getFile());
+        }
+        printProgress(false);
+    }
+
+    /**
+     * 输出单个文件的结果：详细模式下输出完整的识别详情，否则只为跳过和失败的文件输出一行
+     * 仅在 drain() 所在线程调用，日志异步写出，不会阻塞流水线
+     *
+     * @param label  进度标签
+     * @param result 识别结果
+     * @param step   重命名步骤，识别失败时为 null
+     */
+    private void printResult(String label, OcrResult result, RenamePlanner.Step step) {
+        if (AsyncLogger.isDebugEnabled()) {
+            AsyncLogger.debug(() -> describe(label, result, step));
+            return;
+        }
+        String name = label + " " + result.getFile().getName();
+        if (!result.isSuccess()) {
+            AsyncLogger.warn("⚠ " + name + " 跳过: "
+                    + (result.getMessage() != null ? result.getMessage() : "未识别到有效文字"));
+        } else if (step.getFailure() != null) {
+            AsyncLogger.warn("✗ " + name + " 重命名失败: " + step.getFailure());
+        }
+    }
+
+    /**
+     * 单个文件的完整识别详情（详细模式）
+     */
+    private static String describe(String label, OcrResult result, RenamePlanner.Step step) {
+        File imageFile = result.getFile();
+        File currentFile = step != null && step.getRenamedFile() != null ? step.getRenamedFile() : imageFile;
+        StringBuilder detail = new StringBuilder();
+        String newLine = System.lineSeparator();
+        detail.append("-----------------------------------").append(newLine);
+        detail.append(label).append(" ").append(imageFile.getName()).append(newLine);
+        detail.append("路径: ").append(imageFile.getAbsolutePath()).append(newLine);
+        detail.append("大小: ").append(currentFile.length()).append(" 字节").append(newLine);
+
+        if (!result.isSuccess()) {
+            detail.append("  ✓ 耗时: ").append(result.getDurationMs()).append("ms").append(newLine);
+            if (result.getMessage() != null) {
+                detail.append("  ⚠ ").append(result.getMessage()).append(newLine);
+            }
+            if (!result.getRawText().isEmpty()) {
+                detail.append("    原始识别: ").append(result.getRawText()).append(newLine);
+            }
+            detail.append("  状态: 未识别到有效文字，跳过重命名").append(newLine);
+            return detail.toString();
+        }
+
+        String recognizedText = result.getText();
+        detail.append("✓ 识别成功 (耗时: ").append(result.getDurationMs()).append("ms")
+                .append(result.isCached() ? "，缓存命中" : "").append(")").append(newLine);
+        if (result.getDuplicateOf() != null) {
+            detail.append("  ≈ ").append(result.getMessage()).append("，复用 ").append(result.getDuplicateOf())
+                    .append(" 的识别结果").append(newLine);
+        }
+        detail.append("  有效字符率: ").append(String.format("%.1f", result.getConfidence())).append("%")
+                .append(newLine);
+        if (result.getEngineConfidence() >= 0) {
+            detail.append("  识别置信度: ").append(String.format("%.0f", result.getEngineConfidence())).append("%")
+                    .append(result.getTier() != null ? "（" + result.getTier() + "）" : "").append(newLine);
+        }
+        detail.append("  字符数: ").append(recognizedText.length()).append(newLine);
+        detail.append("  内容: ").append(recognizedText).append(newLine);
+
+        if (step.getFailure() != null) {
+            detail.append("  ✗ 重命名失败: ").append(step.getFailure()).append(newLine);
+        } else {
+            detail.append("  ✓ 重命名成功").append(newLine);
+            detail.append("    原文件名: ").append(imageFile.getName()).append(newLine);
+            detail.append("    新文件名: ").append(currentFile.getName())
+                    .append(step.isSuffixed() ? " (文件名重复，已添加序号)" : "").append(newLine);
+            if (!recognizedText.equals(FileRenamer.cleanInvalidChars(recognizedText))) {
+                detail.append("    (已自动移除非法字符)").append(newLine);
+            }
+        }
+        return detail.toString();
+    }
+
+    /**
+     * 非详细模式下每隔一段时间输出一行进度
+     *
+     * @param force true 表示无论间隔多久都输出（结束时）
+     */
+    private void printProgress(boolean force) {
+        if (AsyncLogger.isDebugEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        int done = renamedCount + skippedCount;
+        if (done == 0 || (!force && now - lastProgressMs < PROGRESS_INTERVAL_MS)) {
+            return;
+        }
+        lastProgressMs = now;
+        double seconds = Math.max(1, now - drainStartMs) / 1000.0;
+        AsyncLogger.info("进度: " + progressLabel() + " 已完成 " + done + " 个（重命名 " + renamedCount
+                + "，跳过 " + skippedCount + "），" + String.format("%.1f", done / seconds) + " 个/秒");
+    }
+
+    /**
+     * 扫描仍在进行时总数未知，显示为 "[序号/已发现+]"
+     */
+    private String progressLabel() {
+        return "[" + handled + "/" + accepted.get() + (inputClosed ? "" : "+") + "]";
+    }
+
+    /**
+     * @return 已处理（输出）的文件数
+     */
+    public int getHandledCount() {
+        return handled;
+    }
+
+    /**
+     * @return 进度日志显示已完成而跳过的文件数
+     */
+    public int getAlreadyFinishedCount() {
+        return alreadyFinished.get();
+    }
+
+    /**
+     * @return 属于其他分片而跳过的文件数
+     */
+    public int getOtherShardCount() {
+        return otherShard.get();
+    }
+
+    /**
+     * @return 从进度日志恢复识别结果的文件数
+     */
+    public int getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    public int getRenamedCount() {
+        return renamedCount;
+    }
+
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+}
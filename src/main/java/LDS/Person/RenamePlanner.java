@@ -0,0 +1,373 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 批量重命名计划器
+ * 收集一批识别结果后统一生成重命名计划，再执行：
+ * - 每个目录只列举一次，在内存中维护文件名索引（不区分大小写），判断新文件名是否被占用时不再逐个查询文件系统
+ * - 新文件名被占用时依次尝试 "文字_2"、"文字_3" ...；同一批中识别出相同文字的文件按原路径排序后分配，
+ *   结果与识别完成的先后顺序无关；识别文字过长时截断，完整文件名（含序号和扩展名）不超过 255 字节
+ * - 不同目录之间互不依赖，按目录并行执行，每一步使用原子移动；
+ *   某一步失败时只有该文件失败，其他文件照常重命名，只有暂时性的错误（例如文件被占用）在续跑时重试
+ *
+ * plan() 和 apply() 只能由同一个线程调用（apply 内部按目录并行）；isReserved() 可以在任意线程调用
+ */
+public class RenamePlanner {
+    // 索引过期（例如监听模式下新到达的文件）导致目标已存在时，最多重新分配的次数
+    private static final int MAX_RETRIES = 100;
+    // 常见文件系统的文件名长度上限（字节）；UTF-8 字节数不小于 UTF-16 字符数，同时满足 Windows 的 255 字符限制
+    private static final int MAX_NAME_BYTES = 255;
+    // 为 "_2" 等重名序号预留的字节数
+    private static final int SUFFIX_RESERVE_BYTES = 8;
+
+    // 目录 -> 目录中的文件名（小写），包括本批已分配但尚未执行的目标
+    private final Map<Path, Set<String>> names = new HashMap<>();
+    // 正在执行的批次中即将或已经移动到的目标路径，扫描线程据此忽略刚重命名出来的文件
+    private final Set<Path> reservedTargets = ConcurrentHashMap.newKeySet();
+    private int directoryListings = 0;
+    private boolean exclusiveMoves = false;
+
+    /**
+     * 计划中的一步重命名
+     */
+    public static class Step {
+        private final OcrResult result;
+        private final Path source;
+        private final String baseName;
+        private final String extension;
+        private Path target;
+        // 近似重复时识别文本的来源图片；来源在同一批中被重命名时指向新文件名
+        private String duplicateOf;
+        private String failure;
+        // 文件系统错误导致的失败可以在续跑时重试
+        private boolean retryable;
+        private long nanos;
+
+        Step(OcrResult result, String baseName, String extension) {
+            this.result = result;
+            this.source = result.getFile().toPath().toAbsolutePath().normalize();
+            this.baseName = baseName;
+            this.extension = extension;
+            this.duplicateOf = result.getDuplicateOf();
+        }
+
+        public OcrResult getResult() {
+            return result;
+        }
+
+        /**
+         * @return 重命名后的文件，失败时返回 null
+         */
+        public File getRenamedFile() {
+            return failure == null ? target.toFile() : null;
+        }
+
+        /**
+         * @return 失败原因，成功时返回 null
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return 失败是否由文件系统错误引起（续跑时可以重试）
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * @return 新文件名是否带有 _2 等重名后缀
+         */
+        public boolean isSuffixed() {
+            return isMove() && !target.getFileName().toString().equals(baseName + extension);
+        }
+
+        /**
+         * @return 执行该步骤（移动和写入重命名日志）的耗时（纳秒）
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        private boolean isMove() {
+            return failure == null && !target.equals(source);
+        }
+    }
+
+    /**
+     * 设置是否使用 "创建硬链接 + 删除原文件" 代替移动
+     * 多个进程（分片）同时在同一目录中重命名时，先检查再移动之间目标可能被其他进程占用，
+     * 而创建硬链接在目标已存在时一定失败，不会覆盖其他进程刚重命名的文件
+     *
+     * @param exclusiveMoves true 表示使用硬链接（文件系统不支持时退回普通移动）
+     */
+    public void setExclusiveMoves(boolean exclusiveMoves) {
+        this.exclusiveMoves = exclusiveMoves;
+    }
+
+    /**
+     * 为一批识别成功的结果生成重命名计划（不修改任何文件）
+     *
+     * @param results 识别结果
+     * @return 与 results 顺序相同的步骤
+     */
+    public List<Step> plan(List<OcrResult> results) {
+        List<Step> steps = new ArrayList<>(results.size());
+        for (OcrResult result : results) {
+            String fileName = result.getFile().getName();
+            int lastDotIndex = fileName.lastIndexOf('.');
+            String extension = (lastDotIndex > 0) ? fileName.substring(lastDotIndex) : "";
+            String baseName = truncate(FileRenamer.cleanInvalidChars(result.getText()),
+                    MAX_NAME_BYTES - SUFFIX_RESERVE_BYTES - extension.getBytes(StandardCharsets.UTF_8).length);
+            steps.add(new Step(result, baseName, extension));
+        }
+
+        List<Step> sorted = new ArrayList<>(steps);
+        sorted.sort(Comparator.comparing((Step step) -> step.source));
+        for (Step step : sorted) {
+            if (step.baseName.isEmpty()) {
+                step.failure = "识别结果中无有效字符";
+                continue;
+            }
+            Set<String> directoryNames = directoryNames(step.source.getParent());
+            // 监听模式下源文件可能在列举目录之后才出现
+            directoryNames.add(key(step.source.getFileName().toString()));
+            step.target = allocate(step, directoryNames);
+        }
+
+        // 来源图片在同一批中被重命名时，重命名日志记录来源的新文件名
+        Map<String, Path> targets = new HashMap<>();
+        for (Step step : steps) {
+            if (step.isMove()) {
+                targets.put(step.source.toString(), step.target);
+            }
+        }
+        for (Step step : steps) {
+            if (step.duplicateOf != null) {
+                Path target = targets.get(step.duplicateOf);
+                if (target != null) {
+                    step.duplicateOf = target.toString();
+                }
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * 按 UTF-8 字节数截断文件名，不拆开多字节字符
+     *
+     * @param baseName 文件名（不含扩展名）
+     * @param maxBytes 最大字节数
+     * @return 截断后的文件名
+     */
+    static String truncate(String baseName, int maxBytes) {
+        int bytes = 0;
+        for (int i = 0; i < baseName.length(); ) {
+            int codePoint = baseName.codePointAt(i);
+            bytes += codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes > maxBytes) {
+                return baseName.substring(0, i);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return baseName;
+    }
+
+    /**
+     * 在目录索引中分配第一个未被占用的文件名；与源文件名相同时保持不变
+     */
+    private static Path allocate(Step step, Set<String> directoryNames) {
+        String sourceName = step.source.getFileName().toString();
+        for (int index = 1; ; index++) {
+            String candidate = step.baseName + (index == 1 ? "" : "_" + index) + step.extension;
+            if (key(candidate).equals(key(sourceName))) {
+                return step.source;
+            }
+            if (directoryNames.add(key(candidate))) {
+                return step.source.resolveSibling(candidate);
+            }
+        }
+    }
+
+    /**
+     * 目录的文件名索引，第一次用到时一次性列出目录
+     */
+    private Set<String> directoryNames(Path directory) {
+        Set<String> directoryNames = names.get(directory);
+        if (directoryNames != null) {
+            return directoryNames;
+        }
+        directoryNames = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                directoryNames.add(key(path.getFileName().toString()));
+            }
+        } catch (IOException e) {
+            // 列举失败时索引为空，执行时仍会在目标已存在时重新分配
+            AsyncLogger.warn("警告: 无法列出目录 " + directory + ": " + e.getMessage());
+        }
+        directoryListings++;
+        names.put(directory, directoryNames);
+        return directoryNames;
+    }
+
+    /**
+     * Windows 文件名不区分大小写，索引统一使用小写
+     */
+    private static String key(String fileName) {
+        return fileName.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 按目录并行执行重命名计划
+     * 每一步执行后立即写入重命名日志，中断后日志仍能反映每个文件的真实位置
+     *
+     * @param steps   plan() 生成的步骤
+     * @param journal 重命名日志
+     */
+    public void apply(List<Step> steps, RenameJournal journal) {
+        Map<Path, List<Step>> byDirectory = new LinkedHashMap<>();
+        for (Step step : steps) {
+            if (step.isMove()) {
+                // 移动之前先登记，目标一出现在目录中就不会被当作新文件
+                reservedTargets.add(step.target);
+                byDirectory.computeIfAbsent(step.source.getParent(), d -> new ArrayList<>()).add(step);
+            }
+        }
+        // 每个目录的索引只由处理该目录的线程修改
+        byDirectory.entrySet().parallelStream()
+                .forEach(entry -> applyDirectory(entry.getValue(), names.get(entry.getKey()), journal));
+    }
+
+    /**
+     * 判断文件是否为正在执行的批次的重命名目标
+     * 扫描线程可能在移动之后、进度日志记录之前遍历到新文件，这些文件不应再次识别
+     *
+     * @param file 文件
+     * @return true 表示文件是本批次重命名出来的
+     */
+    public boolean isReserved(File file) {
+        return !reservedTargets.isEmpty() && reservedTargets.contains(file.toPath().toAbsolutePath().normalize());
+    }
+
+    /**
+     * 释放 apply() 登记的目标（进度日志记录重命名结果之后调用）
+     *
+     * @param steps apply() 执行过的步骤
+     */
+    public void release(List<Step> steps) {
+        for (Step step : steps) {
+            if (step.target != null) {
+                reservedTargets.remove(step.target);
+            }
+        }
+    }
+
+    private void applyDirectory(List<Step> steps, Set<String> directoryNames, RenameJournal journal) {
+        for (Step step : steps) {
+            long start = System.nanoTime();
+            try {
+                move(step, directoryNames);
+                journal.record(step.source.toFile(), step.target.toFile(), step.duplicateOf);
+                step.nanos = System.nanoTime() - start;
+                if (step.isMove()) {
+                    // 已移走的源文件名可以被之后的文件使用
+                    directoryNames.remove(key(step.source.getFileName().toString()));
+                }
+            } catch (IOException e) {
+                // 只有该文件失败，同一目录中其他文件的重命名不受影响
+                step.failure = "无法重命名文件: " + e.getMessage();
+                step.retryable = isTransient(e);
+                directoryNames.remove(key(step.target.getFileName().toString()));
+            }
+        }
+    }
+
+    /**
+     * 判断重命名失败是否是暂时的（续跑时重试）
+     * 文件被其他程序占用、目标名字一直被其他进程抢占，以及非文件系统的 I/O 错误（例如网络共享中断）可以重试；
+     * 源文件不存在、文件名过长等文件系统错误重试也不会成功，按跳过处理
+     */
+    private static boolean isTransient(IOException e) {
+        return e instanceof AccessDeniedException || e instanceof FileAlreadyExistsException
+                || !(e instanceof FileSystemException);
+    }
+
+    /**
+     * 移动到计划的目标；索引过期导致目标已存在时，把该名字加入索引并重新分配
+     * 重新分配的目标同样在移动之前登记（参见 isReserved）
+     */
+    private void move(Step step, Set<String> directoryNames) throws IOException {
+        for (int retry = 0; ; retry++) {
+            try {
+                atomicMove(step.source, step.target);
+                return;
+            } catch (FileAlreadyExistsException e) {
+                if (retry >= MAX_RETRIES) {
+                    throw e;
+                }
+                // 登记跟随实际的目标：旧名字属于已存在的其他文件，不能继续被忽略
+                reservedTargets.remove(step.target);
+                step.target = allocate(step, directoryNames);
+                if (step.target.equals(step.source)) {
+                    return;
+                }
+                reservedTargets.add(step.target);
+            }
+        }
+    }
+
+    /**
+     * 原子移动；目标已存在时不覆盖
+     */
+    private void atomicMove(Path from, Path to) throws IOException {
+        if (exclusiveMoves) {
+            try {
+                Files.createLink(to, from);
+                Files.delete(from);
+                return;
+            } catch (UnsupportedOperationException e) {
+                // 文件系统不支持硬链接，退回普通移动
+            }
+        }
+        // ATOMIC_MOVE 在 POSIX 上会直接覆盖已存在的目标，需要先检查
+        if (Files.exists(to, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(to.toString());
+        }
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to);
+        }
+    }
+
+    /**
+     * @return 列举过的目录数（每个目录只列举一次）
+     */
+    public int getDirectoryListings() {
+        return directoryListings;
+    }
+}
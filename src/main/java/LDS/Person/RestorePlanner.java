@@ -0,0 +1,381 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 恢复计划生成与执行器
+ * 先根据重命名日志生成完整的恢复计划，再执行：
+ * - 与文件列举顺序无关，按 "当前路径 -> 原路径" 的映射恢复
+ * - 目标被计划中另一个文件占用时先移走占用者（链式依赖按拓扑顺序执行）
+ * - 互换、循环（A -> B -> A）通过临时文件名打破
+ * - 目标被计划外的文件占用、多个文件恢复到同一目标时视为冲突，跳过并报告
+ * - 不同目录之间互不依赖，按目录并行执行，每一步使用原子移动；
+ *   某个目录执行失败时，该目录已执行的步骤按相反顺序回滚
+ */
+public class RestorePlanner {
+    private static final String TEMP_PREFIX = ".restore-tmp-";
+
+    /**
+     * 计划中的一步移动
+     */
+    public static class Step {
+        private final Path from;
+        private final Path to;
+
+        Step(Path from, Path to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Path getFrom() {
+            return from;
+        }
+
+        public Path getTo() {
+            return to;
+        }
+
+        /**
+         * @return 是否为打破循环而移动到临时文件名
+         */
+        public boolean isTemporary() {
+            return to.getFileName().toString().startsWith(TEMP_PREFIX);
+        }
+    }
+
+    /**
+     * 单个目录内按顺序执行的步骤
+     */
+    public static class DirectoryPlan {
+        private final Path directory;
+        private final List<Step> steps = new ArrayList<>();
+
+        DirectoryPlan(Path directory) {
+            this.directory = directory;
+        }
+
+        public Path getDirectory() {
+            return directory;
+        }
+
+        public List<Step> getSteps() {
+            return Collections.unmodifiableList(steps);
+        }
+    }
+
+    /**
+     * 完整的恢复计划
+     */
+    public static class Plan {
+        private final List<DirectoryPlan> directories = new ArrayList<>();
+        private final List<String> conflicts = new ArrayList<>();
+        private final List<String> missing = new ArrayList<>();
+        private int restoreCount;
+        private int cycleCount;
+
+        public List<DirectoryPlan> getDirectories() {
+            return Collections.unmodifiableList(directories);
+        }
+
+        /**
+         * @return 因目标被占用或重复而跳过的映射说明
+         */
+        public List<String> getConflicts() {
+            return Collections.unmodifiableList(conflicts);
+        }
+
+        /**
+         * @return 当前文件已不存在的映射说明
+         */
+        public List<String> getMissing() {
+            return Collections.unmodifiableList(missing);
+        }
+
+        /**
+         * @return 计划恢复的文件数
+         */
+        public int getRestoreCount() {
+            return restoreCount;
+        }
+
+        /**
+         * @return 需要借助临时文件名打破的循环数
+         */
+        public int getCycleCount() {
+            return cycleCount;
+        }
+    }
+
+    /**
+     * 执行结果
+     */
+    public static class Outcome {
+        private final AtomicInteger restored = new AtomicInteger();
+        private final AtomicInteger rolledBack = new AtomicInteger();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        public int getRestored() {
+            return restored.get();
+        }
+
+        /**
+         * @return 因所在目录执行失败而回滚的文件数
+         */
+        public int getRolledBack() {
+            return rolledBack.get();
+        }
+
+        public List<String> getFailures() {
+            return failures;
+        }
+    }
+
+    /**
+     * 根据重命名日志生成恢复计划（不修改任何文件）
+     *
+     * @param journal 重命名日志
+     * @return 恢复计划
+     * @throws IOException 目录无法读取
+     */
+    public static Plan plan(RenameJournal journal) throws IOException {
+        Plan plan = new Plan();
+
+        // 按目录分组：source -> target
+        Map<Path, Map<Path, Path>> movesByDirectory = new LinkedHashMap<>();
+        for (Map.Entry<String, String> mapping : journal.mappings().entrySet()) {
+            Path target = journal.resolve(mapping.getKey()).toPath();
+            Path source = journal.resolve(mapping.getValue()).toPath();
+            if (!Files.exists(source, LinkOption.NOFOLLOW_LINKS)) {
+                plan.missing.add(mapping.getValue() + " -> " + mapping.getKey());
+                continue;
+            }
+            Path directory = target.getParent();
+            if (!directory.equals(source.getParent())) {
+                // 程序只会在同一目录内重命名，跨目录的记录说明文件已被外部移动
+                plan.conflicts.add(mapping.getValue() + " -> " + mapping.getKey() + " (不在同一目录)");
+                continue;
+            }
+            movesByDirectory.computeIfAbsent(directory, d -> new LinkedHashMap<>()).put(source, target);
+        }
+
+        for (Map.Entry<Path, Map<Path, Path>> entry : movesByDirectory.entrySet()) {
+            DirectoryPlan directoryPlan = planDirectory(entry.getKey(), entry.getValue(), plan);
+            if (!directoryPlan.steps.isEmpty()) {
+                plan.directories.add(directoryPlan);
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 生成单个目录的执行顺序
+     */
+    private static DirectoryPlan planDirectory(Path directory, Map<Path, Path> moves, Plan plan) throws IOException {
+        DirectoryPlan directoryPlan = new DirectoryPlan(directory);
+        Set<Path> existing = listDirectory(directory);
+
+        // 目标 -> 源，用于发现重复目标并在源被腾出时找到等待它的移动
+        Map<Path, Path> sourceByTarget = new HashMap<>();
+        Map<Path, Path> pending = new LinkedHashMap<>();
+        for (Map.Entry<Path, Path> move : moves.entrySet()) {
+            if (sourceByTarget.containsKey(move.getValue())) {
+                plan.conflicts.add(describe(move.getKey(), move.getValue()) + " (多个文件恢复到同一目标)");
+                continue;
+            }
+            sourceByTarget.put(move.getValue(), move.getKey());
+            pending.put(move.getKey(), move.getValue());
+        }
+
+        // 目标被计划外的文件占用：跳过，并沿依赖链传播（等待被跳过文件腾出位置的移动也无法执行）
+        Deque<Path> blocked = new ArrayDeque<>();
+        for (Map.Entry<Path, Path> move : pending.entrySet()) {
+            if (existing.contains(move.getValue()) && !pending.containsKey(move.getValue())) {
+                blocked.add(move.getKey());
+            }
+        }
+        while (!blocked.isEmpty()) {
+            Path source = blocked.poll();
+            Path target = pending.remove(source);
+            if (target == null) {
+                continue;
+            }
+            sourceByTarget.remove(target);
+            plan.conflicts.add(describe(source, target) + " (目标文件名已存在)");
+            Path waiting = sourceByTarget.get(source);
+            if (waiting != null) {
+                blocked.add(waiting);
+            }
+        }
+
+        // 拓扑顺序：目标空闲的移动先执行，执行后腾出的源位置再让等待它的移动就绪
+        Deque<Path> ready = new ArrayDeque<>();
+        for (Map.Entry<Path, Path> move : pending.entrySet()) {
+            if (!pending.containsKey(move.getValue())) {
+                ready.add(move.getKey());
+            }
+        }
+        int tempIndex = 0;
+        while (!pending.isEmpty()) {
+            if (ready.isEmpty()) {
+                // 剩余的移动都在循环中：把其中一个先移到临时文件名
+                Path source = pending.keySet().iterator().next();
+                Path target = pending.remove(source);
+                Path temp = tempName(directory, source, tempIndex++, existing);
+                directoryPlan.steps.add(new Step(source, temp));
+                pending.put(temp, target);
+                sourceByTarget.put(target, temp);
+                plan.cycleCount++;
+                Path waiting = sourceByTarget.get(source);
+                if (waiting != null && pending.containsKey(waiting)) {
+                    ready.add(waiting);
+                }
+                continue;
+            }
+            Path source = ready.poll();
+            Path target = pending.remove(source);
+            directoryPlan.steps.add(new Step(source, target));
+            plan.restoreCount++;
+            Path waiting = sourceByTarget.get(source);
+            if (waiting != null && pending.containsKey(waiting)) {
+                ready.add(waiting);
+            }
+        }
+        return directoryPlan;
+    }
+
+    /**
+     * 一次性列出目录中的文件名，避免对每个目标单独查询文件系统
+     */
+    private static Set<Path> listDirectory(Path directory) throws IOException {
+        Set<Path> names = new HashSet<>();
+        if (!Files.isDirectory(directory)) {
+            return names;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                names.add(path);
+            }
+        }
+        return names;
+    }
+
+    private static Path tempName(Path directory, Path source, int index, Set<Path> existing) {
+        Path temp;
+        do {
+            temp = directory.resolve(TEMP_PREFIX + index + "-" + source.getFileName());
+            index++;
+        } while (existing.contains(temp));
+        existing.add(temp);
+        return temp;
+    }
+
+    private static String describe(Path source, Path target) {
+        return source.getFileName() + " -> " + target.getFileName() + " [" + source.getParent() + "]";
+    }
+
+    /**
+     * 按目录并行执行恢复计划
+     * 每一步执行后立即写入重命名日志（包括临时文件名），中断后日志仍能反映每个文件的真实位置
+     *
+     * @param plan    恢复计划
+     * @param journal 重命名日志
+     * @return 执行结果
+     */
+    public static Outcome apply(Plan plan, RenameJournal journal) {
+        Outcome outcome = new Outcome();
+        plan.directories.parallelStream().forEach(directoryPlan -> applyDirectory(directoryPlan, journal, outcome));
+        return outcome;
+    }
+
+    private static void applyDirectory(DirectoryPlan directoryPlan, RenameJournal journal, Outcome outcome) {
+        List<Step> applied = new ArrayList<>();
+        for (Step step : directoryPlan.steps) {
+            try {
+                move(step.from, step.to);
+                journal.record(step.from.toFile(), step.to.toFile());
+                applied.add(step);
+            } catch (IOException e) {
+                outcome.failures.add(describe(step.from, step.to) + ": " + e.getMessage());
+                rollback(applied, journal, outcome);
+                return;
+            }
+        }
+        for (Step step : applied) {
+            if (!step.isTemporary()) {
+                outcome.restored.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 按相反顺序撤销已执行的步骤，保证目录不会停留在部分恢复的状态
+     */
+    private static void rollback(List<Step> applied, RenameJournal journal, Outcome outcome) {
+        for (int i = applied.size() - 1; i >= 0; i--) {
+            Step step = applied.get(i);
+            try {
+                move(step.to, step.from);
+                journal.record(step.to.toFile(), step.from.toFile());
+                if (!step.isTemporary()) {
+                    outcome.rolledBack.incrementAndGet();
+                }
+            } catch (IOException e) {
+                outcome.failures.add("回滚失败 " + describe(step.to, step.from) + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 原子移动；目标已存在时不覆盖
+     */
+    private static void move(Path from, Path to) throws IOException {
+        if (Files.exists(to, LinkOption.NOFOLLOW_LINKS)) {
+            throw new FileAlreadyExistsException(to.toString());
+        }
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to);
+        }
+    }
+
+    /**
+     * 输出恢复计划（预演模式）
+     *
+     * @param plan 恢复计划
+     */
+    public static void printPlan(Plan plan) {
+        for (DirectoryPlan directoryPlan : plan.directories) {
+            System.out.println("目录: " + directoryPlan.directory);
+            for (Step step : directoryPlan.steps) {
+                System.out.println("  " + (step.isTemporary() ? "[临时] " : "") + step.from.getFileName()
+                        + " -> " + step.to.getFileName());
+            }
+        }
+        for (String conflict : plan.conflicts) {
+            System.out.println("  ⚠ 冲突，跳过: " + conflict);
+        }
+        for (String missing : plan.missing) {
+            System.out.println("  ⚠ 文件不存在，跳过: " + missing);
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package LDS.Person;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 一次运行的分阶段耗时统计和运行报告
+ * 扫描、读取解码、预处理、OCR、文本清理、重命名各阶段分别记录耗时直方图（p50/p95/p99/最大值），
+ * 同时统计吞吐量、读取字节数以及重命名、跳过、失败的文件数。
+ * 每个文件处理完毕后向 CSV 追加一行逐文件耗时，运行结束时写出 JSON 汇总报告，
+ * 便于在真实目录上查看耗时分布、对比不同配置。
+ *
+ * 记录方法是线程安全的，可以在工作线程和主线程上同时调用
+ */
+public class RunMetrics implements AutoCloseable {
+    public static final String REPORT_DIR = "run-reports";
+
+    /**
+     * 处理阶段
+     */
+    public enum Stage {
+        /** 遍历单个目录 */
+        SCAN("scan"),
+        /** 读取并解码图片 */
+        DECODE("decode"),
+        /** 图片预处理、文字区域检测、感知哈希 */
+        PREPROCESS("preprocess"),
+        /** Tesseract 识别 */
+        OCR("ocr"),
+        /** 识别文本规范化和过滤 */
+        SANITIZE("sanitize"),
+        /** 重命名文件 */
+        RENAME("rename");
+
+        private final String key;
+
+        Stage(String key) {
+            this.key = key;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // 逐文件记录的阶段（扫描按目录统计，不属于单个文件）
+    private static final Stage[] FILE_STAGES = {
+            Stage.DECODE, Stage.PREPROCESS, Stage.OCR, Stage.SANITIZE, Stage.RENAME};
+    private static final String CSV_HEADER = "path,status,bytes,cached,duplicate,tier,"
+            + "decode_ms,preprocess_ms,ocr_ms,sanitize_ms,rename_ms,total_ms,estimated_ms,renamed";
+
+    private final Path jsonFile;
+    private final Path csvFile;
+    private final BufferedWriter trace;
+    private final long startNanos = System.nanoTime();
+    private final LocalDateTime startedAt = LocalDateTime.now();
+
+    private final Histogram[] histograms = new Histogram[Stage.values().length];
+    // 尚未处理完毕的文件：绝对路径 -> 各阶段耗时（纳秒）
+    private final Map<String, long[]> pending = new ConcurrentHashMap<>();
+    private final LongAdder bytesRead = new LongAdder();
+    private final AtomicInteger renamedCount = new AtomicInteger();
+    private final AtomicInteger skippedCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger cachedCount = new AtomicInteger();
+
+    /**
+     * 在 reportDir 下创建本次运行的报告文件（run-时间.json / run-时间.csv）
+     *
+     * @param reportDir 报告目录，不存在时创建
+     * @throws IOException 无法创建报告文件
+     */
+    public RunMetrics(Path reportDir) throws IOException {
+        for (Stage stage : Stage.values()) {
+            histograms[stage.ordinal()] = new Histogram();
+        }
+        Files.createDirectories(reportDir);
+        String name = "run-" + startedAt.format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        this.jsonFile = reportDir.resolve(name + ".json");
+        this.csvFile = reportDir.resolve(name + ".csv");
+        this.trace = Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8);
+        trace.write(CSV_HEADER);
+        trace.newLine();
+    }
+
+    /**
+     * 根据配置文件在项目根目录下创建运行报告
+     *
+     * @param projectRoot 项目根目录
+     * @return 运行统计，配置中未启用或无法创建时返回 null
+     */
+    public static RunMetrics openFromConfig(String projectRoot) {
+        if (!OcrConfig.isMetricsEnabled()) {
+            return null;
+        }
+        try {
+            return new RunMetrics(Paths.get(projectRoot, REPORT_DIR));
+        } catch (IOException e) {
+            System.err.println("警告: 无法创建运行报告，本次运行不统计: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 记录一个阶段的耗时
+     *
+     * @param file  所属文件，扫描阶段为 null
+     * @param stage 阶段
+     * @param nanos 耗时（纳秒）
+     */
+    public void record(File file, Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+        if (file != null) {
+            long[] stages = pending.computeIfAbsent(file.getAbsolutePath(), key -> new long[Stage.values().length]);
+            synchronized (stages) {
+                stages[stage.ordinal()] += nanos;
+            }
+        }
+    }
+
+    /**
+     * 记录读取的字节数
+     *
+     * @param bytes 字节数
+     */
+    public void addBytesRead(long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    /**
+     * 文件处理完毕：归类为重命名、跳过或失败，并写出该文件的 CSV 行
+     *
+     * @param result      识别结果
+     * @param renamedFile 重命名后的文件，未重命名时为 null
+     */
+    public synchronized void finish(OcrResult result, File renamedFile) {
+        File file = result.getFile();
+        OcrResult.Status status = result.getStatus();
+        if (renamedFile != null) {
+            renamedCount.incrementAndGet();
+        } else if (status == OcrResult.Status.ERROR || status == OcrResult.Status.MISSING
+                || status == OcrResult.Status.UNSUPPORTED || result.isSuccess()) {
+            // 识别成功但重命名失败也算失败
+            failedCount.incrementAndGet();
+        } else {
+            skippedCount.incrementAndGet();
+        }
+        if (result.isCached()) {
+            cachedCount.incrementAndGet();
+        }
+
+        long[] stages = pending.remove(file.getAbsolutePath());
+        if (stages == null) {
+            stages = new long[Stage.values().length];
+        }
+        StringBuilder line = new StringBuilder();
+        line.append(csv(file.getAbsolutePath())).append(',')
+                .append(status).append(',')
+                .append((renamedFile != null ? renamedFile : file).length()).append(',')
+                .append(result.isCached()).append(',')
+                .append(result.getDuplicateOf() != null).append(',')
+                .append(result.getTier() == null ? "" : csv(result.getTier())).append(',');
+        long total = 0;
+        for (Stage stage : FILE_STAGES) {
+            long nanos = stages[stage.ordinal()];
+            total += nanos;
+            line.append(millis(nanos)).append(',');
+        }
+        line.append(millis(total)).append(',')
+                .append(result.getEstimatedCostMs() < 0 ? "" : format(result.getEstimatedCostMs())).append(',')
+                .append(renamedFile != null);
+        try {
+            trace.write(line.toString());
+            trace.newLine();
+        } catch (IOException e) {
+            AsyncLogger.warn("警告: 写入运行报告失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 写出 JSON 汇总报告并关闭 CSV
+     *
+     * @param found 本次发现的图片数（已完成的文件也计入）
+     * @return JSON 报告路径，写入失败时为 null
+     */
+    public synchronized Path writeReport(long found) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        int handled = renamedCount.get() + skippedCount.get() + failedCount.get();
+        long bytes = bytesRead.sum();
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"startedAt\": \"").append(startedAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME))
+                .append("\",\n");
+        json.append("  \"durationMs\": ").append(Math.round(seconds * 1000)).append(",\n");
+        json.append("  \"config\": {\n");
+        json.append("    \"language\": \"").append(escape(OcrConfig.getLanguage())).append("\",\n");
+        json.append("    \"confidenceThreshold\": ").append(OcrConfig.getConfidenceThreshold()).append(",\n");
+        json.append("    \"workers\": ").append(OcrConfig.getWorkerCount()).append(",\n");
+        json.append("    \"persistentEngine\": ").append(OcrConfig.isPersistentEngine()).append(",\n");
+        json.append("    \"preprocess\": ").append(OcrConfig.isPreprocessEnabled()).append(",\n");
+        json.append("    \"region\": ").append(OcrConfig.isRegionEnabled()).append(",\n");
+        json.append("    \"ladder\": ").append(OcrConfig.isLadderEnabled()).append(",\n");
+        json.append("    \"phash\": ").append(OcrConfig.isPhashEnabled()).append(",\n");
+        json.append("    \"schedule\": ").append(OcrConfig.isScheduleEnabled()).append(",\n");
+        json.append("    \"cache\": ").append(OcrConfig.isCacheEnabled()).append("\n");
+        json.append("  },\n");
+        json.append("  \"files\": {\n");
+        json.append("    \"found\": ").append(found).append(",\n");
+        json.append("    \"handled\": ").append(handled).append(",\n");
+        json.append("    \"renamed\": ").append(renamedCount.get()).append(",\n");
+        json.append("    \"skipped\": ").append(skippedCount.get()).append(",\n");
+        json.append("    \"failed\": ").append(failedCount.get()).append(",\n");
+        json.append("    \"cached\": ").append(cachedCount.get()).append("\n");
+        json.append("  },\n");
+        json.append("  \"bytesRead\": ").append(bytes).append(",\n");
+        json.append("  \"throughput\": {\n");
+        json.append("    \"filesPerSecond\": ").append(format(seconds > 0 ? handled / seconds : 0)).append(",\n");
+        json.append("    \"megabytesPerSecond\": ").append(format(seconds > 0 ? bytes / 1048576.0 / seconds : 0))
+                .append("\n");
+        json.append("  },\n");
+        json.append("  \"stages\": {\n");
+        Stage[] stages = Stage.values();
+        for (int i = 0; i < stages.length; i++) {
+            Histogram histogram = histograms[stages[i].ordinal()];
+            json.append("    \"").append(stages[i].getKey()).append("\": {")
+                    .append("\"count\": ").append(histogram.count())
+                    .append(", \"totalMs\": ").append(millis(histogram.total()))
+                    .append(", \"p50Ms\": ").append(millis(histogram.percentile(0.50)))
+                    .append(", \"p95Ms\": ").append(millis(histogram.percentile(0.95)))
+                    .append(", \"p99Ms\": ").append(millis(histogram.percentile(0.99)))
+                    .append(", \"maxMs\": ").append(millis(histogram.max()))
+                    .append("}").append(i + 1 < stages.length ? ",\n" : "\n");
+        }
+        json.append("  }\n");
+        json.append("}\n");
+
+        close();
+        try {
+            Files.writeString(jsonFile, json.toString(), StandardCharsets.UTF_8);
+            return jsonFile;
+        } catch (IOException e) {
+            System.err.println("警告: 写入运行报告失败: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 输出各阶段耗时汇总
+     */
+    public void printSummary() {
+        System.out.println("阶段耗时 (p50 / p95 / p99 / 最大, ms):");
+        for (Stage stage : Stage.values()) {
+            Histogram histogram = histograms[stage.ordinal()];
+            if (histogram.count() == 0) {
+                continue;
+            }
+            System.out.println(String.format("  %-10s %6d 次  %s / %s / %s / %s", stage.getKey(), histogram.count(),
+                    millis(histogram.percentile(0.50)), millis(histogram.percentile(0.95)),
+                    millis(histogram.percentile(0.99)), millis(histogram.max())));
+        }
+    }
+
+    /**
+     * @return 逐文件 CSV 路径
+     */
+    public Path getTraceFile() {
+        return csvFile;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            trace.close();
+        } catch (IOException e) {
+            System.err.println("警告: 关闭运行报告失败: " + e.getMessage());
+        }
+    }
+
+    private static String millis(long nanos) {
+        return format(nanos / 1e6);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * 对数分桶的耗时直方图（以微秒计）
+     * 64 微秒以下每微秒一个桶，之上每个 2 的幂区间再均分为 32 个桶，相对误差约 3%；
+     * 计数使用原子数组，多线程记录无需加锁
+     */
+    static class Histogram {
+        private static final int LINEAR_BUCKETS = 64;
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        // 覆盖到 2^42 微秒（约 50 天）
+        private static final int BUCKET_COUNT = LINEAR_BUCKETS + (42 - 6) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            buckets.incrementAndGet(bucketOf(value / 1000));
+            count.increment();
+            total.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        private static int bucketOf(long micros) {
+            if (micros < LINEAR_BUCKETS) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return Math.min(BUCKET_COUNT - 1, LINEAR_BUCKETS + (exponent - 6) * SUB_BUCKETS + sub);
+        }
+
+        /**
+         * @return 桶的上界（纳秒）
+         */
+        private static long upperBoundOf(int bucket) {
+            if (bucket < LINEAR_BUCKETS) {
+                return (bucket + 1) * 1000L;
+            }
+            int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 6;
+            int sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            long lower = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BUCKET_BITS);
+            return (lower + (1L << (exponent - SUB_BUCKET_BITS))) * 1000L;
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        long total() {
+            return total.sum();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        /**
+         * @param quantile 分位数 (0-1)
+         * @return 分位值（纳秒），不超过记录到的最大值
+         */
+        long percentile(double quantile) {
+            long samples = count.sum();
+            if (samples == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * samples));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
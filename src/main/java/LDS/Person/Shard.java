@@ -0,0 +1,253 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * 分片处理（Main --shard i/N）
+ * 多个进程或多台机器处理共享文件夹中的同一棵目录树时，每个分片只处理属于自己的文件：
+ * 以 "所在目录相对 IMG 的路径 + 文件大小" 的 CRC32 对 N 取模分配，结果与扫描顺序、挂载位置无关；
+ * 重命名不改变目录和大小，续跑时文件仍属于原来的分片。
+ *
+ * 每个分片的进度日志、重命名日志、缓存和运行报告都放在 shards/i-of-N 目录中，互不干扰；
+ * 同一分片同时只能有一个进程处理，由该目录中 shard.lock 的文件锁保证（锁在进程退出时释放）。
+ * Main --merge-shards 把各分片的重命名日志合并到项目根目录的 rename-journal.tsv，之后可以统一恢复
+ */
+public class Shard {
+    public static final String SHARDS_DIR = "shards";
+    private static final String LOCK_FILE = "shard.lock";
+    private static final Pattern SPEC = Pattern.compile("(\\d+)/(\\d+)");
+    private static final Pattern STATE_DIR = Pattern.compile("\\d+-of-\\d+");
+
+    private final int index;
+    private final int count;
+    private final Path imageRoot;
+    // 持有锁的通道，保持打开直到进程退出
+    private FileChannel lockChannel;
+
+    /**
+     * 创建分片
+     *
+     * @param index     分片序号，从 1 开始
+     * @param count     分片总数
+     * @param imageRoot 图片根目录（IMG），用于计算相对路径
+     */
+    public Shard(int index, int count, Path imageRoot) {
+        if (count < 1 || index < 1 || index > count) {
+            throw new IllegalArgumentException("分片序号应在 1 到 " + count + " 之间: " + index + "/" + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.imageRoot = imageRoot.toAbsolutePath().normalize();
+    }
+
+    /**
+     * 解析 "i/N" 形式的分片参数
+     *
+     * @param spec      分片参数，例如 "1/4"
+     * @param imageRoot 图片根目录
+     * @return 分片
+     * @throws IllegalArgumentException 参数格式错误
+     */
+    public static Shard parse(String spec, Path imageRoot) {
+        Matcher matcher = SPEC.matcher(spec == null ? "" : spec.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("分片参数格式应为 i/N（例如 1/4）: " + spec);
+        }
+        return new Shard(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)), imageRoot);
+    }
+
+    /**
+     * 文件是否属于本分片
+     *
+     * @param file 图片文件
+     * @return true 表示由本分片处理
+     */
+    public boolean owns(File file) {
+        if (count == 1) {
+            return true;
+        }
+        Path directory = file.toPath().toAbsolutePath().normalize().getParent();
+        String relative = directory.startsWith(imageRoot)
+                ? imageRoot.relativize(directory).toString().replace(File.separatorChar, '/')
+                : directory.toString().replace(File.separatorChar, '/');
+        CRC32 crc = new CRC32();
+        crc.update((relative + "|" + file.length()).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() % count == index - 1;
+    }
+
+    /**
+     * @param projectRoot 项目根目录
+     * @return 本分片的状态目录（进度日志、重命名日志、缓存、运行报告）
+     */
+    public Path stateDir(String projectRoot) {
+        return Paths.get(projectRoot, SHARDS_DIR, index + "-of-" + count);
+    }
+
+    /**
+     * 锁定本分片，防止多个进程处理同一分片
+     *
+     * @param projectRoot 项目根目录
+     * @return true 表示已锁定；false 表示分片正在被其他进程处理
+     * @throws IOException 状态目录或锁文件无法创建
+     */
+    public boolean lock(String projectRoot) throws IOException {
+        Path stateDir = stateDir(projectRoot);
+        Files.createDirectories(stateDir);
+        FileChannel channel = tryLock(stateDir);
+        if (channel == null) {
+            return false;
+        }
+        // 记录持有者，其他进程加锁失败时可以提示是谁在处理
+        String owner = hostName() + " pid " + ProcessHandle.current().pid() + " 自 "
+                + LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + System.lineSeparator();
+        channel.truncate(0);
+        channel.write(ByteBuffer.wrap(owner.getBytes(StandardCharsets.UTF_8)), 0);
+        channel.force(false);
+        this.lockChannel = channel;
+        return true;
+    }
+
+    /**
+     * @param projectRoot 项目根目录
+     * @return 锁文件中记录的持有者，无法读取时返回空字符串
+     */
+    public String lockOwner(String projectRoot) {
+        try {
+            return Files.readString(stateDir(projectRoot).resolve(LOCK_FILE), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 尝试锁定状态目录
+     *
+     * @return 持有锁的通道，已被其他进程锁定时返回 null
+     */
+    private static FileChannel tryLock(Path stateDir) throws IOException {
+        FileChannel channel = FileChannel.open(stateDir.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                channel.close();
+                return null;
+            }
+            return channel;
+        } catch (OverlappingFileLockException e) {
+            // 本进程已持有该分片的锁
+            channel.close();
+            return null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return "unknown-host";
+        }
+    }
+
+    /**
+     * 把所有分片的重命名日志合并到项目根目录的重命名日志
+     * 正在运行的分片（锁未释放）跳过；合并后的分片日志改名为 rename-journal.merged-时间.tsv，不会重复合并
+     *
+     * @param projectRoot 项目根目录
+     * @param target      项目根目录的重命名日志
+     * @return 合并的记录数
+     * @throws IOException 分片目录无法读取
+     */
+    public static int mergeJournals(String projectRoot, RenameJournal target) throws IOException {
+        int merged = 0;
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        for (Path stateDir : listStateDirs(projectRoot)) {
+            Path journalFile = stateDir.resolve(RenameJournal.JOURNAL_FILE);
+            if (!Files.exists(journalFile)) {
+                continue;
+            }
+            FileChannel channel = tryLock(stateDir);
+            if (channel == null) {
+                System.err.println("⚠ 分片 " + stateDir.getFileName() + " 正在运行，跳过合并");
+                continue;
+            }
+            try (channel) {
+                int records = target.merge(journalFile);
+                Files.move(journalFile, stateDir.resolve("rename-journal.merged-" + timestamp + ".tsv"));
+                System.out.println("✓ 分片 " + stateDir.getFileName() + ": 合并 " + records + " 条记录");
+                merged += records;
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @param projectRoot 项目根目录
+     * @return 尚未合并的分片重命名日志
+     */
+    public static List<Path> unmergedJournals(String projectRoot) {
+        List<Path> journals = new ArrayList<>();
+        try {
+            for (Path stateDir : listStateDirs(projectRoot)) {
+                Path journalFile = stateDir.resolve(RenameJournal.JOURNAL_FILE);
+                if (Files.exists(journalFile)) {
+                    journals.add(journalFile);
+                }
+            }
+        } catch (IOException e) {
+            // 分片目录无法读取时视为没有分片
+        }
+        return journals;
+    }
+
+    /**
+     * 列出项目根目录下已有的分片状态目录
+     *
+     * @param projectRoot 项目根目录
+     * @return 状态目录，按名称排序；没有分片时为空
+     * @throws IOException 无法读取分片目录
+     */
+    public static List<Path> listStateDirs(String projectRoot) throws IOException {
+        List<Path> dirs = new ArrayList<>();
+        Path shardsDir = Paths.get(projectRoot, SHARDS_DIR);
+        if (!Files.isDirectory(shardsDir)) {
+            return dirs;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(shardsDir)) {
+            for (Path path : stream) {
+                if (Files.isDirectory(path) && STATE_DIR.matcher(path.getFileName().toString()).matches()) {
+                    dirs.add(path);
+                }
+            }
+        }
+        dirs.sort(null);
+        return dirs;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,194 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式图片扫描器
+ * 基于 NIO DirectoryStream 并行遍历子目录，找到的图片立即放入有界队列，
+ * OCR 阶段可以在遍历仍在进行时就开始消费，整棵目录树不需要先完整加载到内存。
+ * 队列满时遍历线程会等待，消费速度决定遍历速度（背压）
+ */
+public class StreamingImageScanner implements AutoCloseable {
+    // 队列结束标记
+    private static final File END = new File("");
+
+    private final Path root;
+    private final BlockingQueue<File> queue;
+    private final ForkJoinPool walkers;
+    private final AtomicLong foundCount = new AtomicLong();
+    private final AtomicLong directoryCount = new AtomicLong();
+    private volatile boolean finished = false;
+    private final RunMetrics metrics;
+
+    /**
+     * 创建扫描器（需要调用 start() 开始遍历）
+     *
+     * @param root          根目录
+     * @param queueCapacity 队列容量
+     * @param parallelism   并行遍历的线程数
+     */
+    public StreamingImageScanner(Path root, int queueCapacity, int parallelism) {
+        this(root, queueCapacity, parallelism, null);
+    }
+
+    /**
+     * 创建扫描器（需要调用 start() 开始遍历）
+     *
+     * @param root          根目录
+     * @param queueCapacity 队列容量
+     * @param parallelism   并行遍历的线程数
+     * @param metrics       运行统计，记录每个目录的遍历耗时；可以为 null
+     */
+    public StreamingImageScanner(Path root, int queueCapacity, int parallelism, RunMetrics metrics) {
+        this.root = root;
+        this.metrics = metrics;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.walkers = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * 在后台开始遍历
+     *
+     * @return this
+     */
+    public StreamingImageScanner start() {
+        if (!Files.isDirectory(root)) {
+            System.err.println("目录不存在或不是目录: " + root);
+            finish();
+            return this;
+        }
+        walkers.execute(ForkJoinTask.adapt(() -> {
+            try {
+                new WalkTask(root).invoke();
+            } finally {
+                finish();
+            }
+        }));
+        return this;
+    }
+
+    private void finish() {
+        finished = true;
+        try {
+            queue.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 取出下一个图片文件，遍历未结束且队列为空时等待
+     *
+     * @return 图片文件，遍历结束后返回 null
+     * @throws InterruptedException 等待被中断
+     */
+    public File next() throws InterruptedException {
+        File file = queue.take();
+        if (file == END) {
+            // 留给其他消费者
+            queue.put(END);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * @return 目前找到的图片数量
+     */
+    public long getFoundCount() {
+        return foundCount.get();
+    }
+
+    /**
+     * @return 目前遍历过的目录数量
+     */
+    public long getDirectoryCount() {
+        return directoryCount.get();
+    }
+
+    /**
+     * @return 遍历是否已经结束
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 遍历单个目录：文件直接入队，子目录拆分为子任务并行遍历
+     */
+    private class WalkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+
+        WalkTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            directoryCount.incrementAndGet();
+            List<WalkTask> subtasks = new ArrayList<>();
+            long start = System.nanoTime();
+            // 队列满时等待的时间不计入遍历耗时
+            long blocked = 0;
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    // 不跟随符号链接，避免目录循环
+                    if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                        WalkTask subtask = new WalkTask(path);
+                        subtask.fork();
+                        subtasks.add(subtask);
+                    } else if (ImageFormats.isSupported(path.getFileName().toString())) {
+                        blocked += enqueue(path.toFile());
+                    }
+                }
+            } catch (IOException e) {
+                AsyncLogger.warn("无法读取目录: " + directory + " (" + e.getMessage() + ")");
+            }
+            if (metrics != null) {
+                metrics.record(null, RunMetrics.Stage.SCAN, System.nanoTime() - start - blocked);
+            }
+            for (WalkTask subtask : subtasks) {
+                subtask.join();
+            }
+        }
+
+        /**
+         * 队列满时直接阻塞当前遍历线程（不使用 managedBlock 补偿线程，避免遍历线程数膨胀）
+         *
+         * @return 入队等待的时间（纳秒）
+         */
+        private long enqueue(File file) {
+            long start = System.nanoTime();
+            try {
+                queue.put(file);
+                foundCount.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * 停止遍历
+     */
+    @Override
+    public void close() {
+        walkers.shutdownNow();
+    }
+}
@@ -0,0 +1,271 @@
+package LDS.Person;
+
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 文字区域检测
+ * 表情包的文字通常集中在顶部或底部的横条中，对整张图片做版面分析和识别的大部分时间都花在插图上。
+ * 本类按行统计高对比度边缘的密度（文字笔画在水平方向上密集地明暗交替），
+ * 找出边缘明显比全图典型水平更密集的横条，再按列收缩左右边界，只把这些区域交给 Tesseract；
+ * 找不到横条时按列做同样的统计，检测竖排文字。
+ * 找不到区域、区域过多或覆盖了大部分图片时返回空列表，由调用方识别整张图片。
+ *
+ * 配置不可变，统计计数是线程安全的，可以被多个 OCRService 共享
+ */
+public class TextRegionDetector {
+    // 相隔 2 像素的灰度差超过该值记为一个边缘（文字通常为高对比度的描边字）
+    private static final int EDGE_CONTRAST = 60;
+    // 文字行的边缘密度至少为该值，并且至少为全图行密度中位数的 ROW_DENSITY_FACTOR 倍
+    private static final double MIN_ROW_DENSITY = 0.02;
+    private static final double ROW_DENSITY_FACTOR = 2.0;
+    // 文字区域的最小高度（像素），更矮的横条多为线条或噪点
+    private static final int MIN_REGION_HEIGHT = 8;
+    // 区域四周保留的空白（像素），Tesseract 在文字紧贴边缘时识别效果较差
+    private static final int REGION_MARGIN = 10;
+    // 区域过多说明整张图片都是纹理，不如直接识别整张图片
+    private static final int MAX_REGIONS = 8;
+
+    private final double maxCoverage;
+
+    private final AtomicInteger regionImageCount = new AtomicInteger();
+    private final AtomicInteger regionCount = new AtomicInteger();
+    private final AtomicInteger fullImageCount = new AtomicInteger();
+
+    /**
+     * 创建文字区域检测器
+     *
+     * @param maxCoverage 文字区域占图片面积的最大比例 (0-1]，超过时识别整张图片
+     */
+    public TextRegionDetector(double maxCoverage) {
+        if (maxCoverage <= 0 || maxCoverage > 1) {
+            throw new IllegalArgumentException("最大覆盖比例应在 (0, 1] 之间: " + maxCoverage);
+        }
+        this.maxCoverage = maxCoverage;
+    }
+
+    /**
+     * 根据配置文件创建文字区域检测器
+     *
+     * @return 检测器，配置中未启用时返回 null
+     */
+    public static TextRegionDetector fromConfig() {
+        if (!OcrConfig.isRegionEnabled()) {
+            return null;
+        }
+        return new TextRegionDetector(OcrConfig.getRegionMaxCoverage());
+    }
+
+    /**
+     * 检测文字区域，先找横排文字的横条，找不到时再找竖排文字的竖条
+     *
+     * @param gray   8 位灰度像素（每行 width 字节）
+     * @param width  图片宽度
+     * @param height 图片高度
+     * @return 按阅读顺序排列的文字区域（横排自上而下，竖排自右向左），找不到合适区域时为空列表
+     */
+    public List<Rectangle> detect(ByteBuffer gray, int width, int height) {
+        List<Rectangle> regions = detect(gray, width, height, false);
+        if (regions.isEmpty()) {
+            regions = detect(gray, width, height, true);
+            // 竖排文字从右向左阅读
+            Collections.reverse(regions);
+        }
+        return regions;
+    }
+
+    /**
+     * 沿一个方向检测文字条
+     * 横排时 "行" 为图片的行、"位置" 为列；竖排时二者互换，边缘取沿竖直方向的明暗变化
+     *
+     * @param vertical true 表示检测竖排文字
+     */
+    private List<Rectangle> detect(ByteBuffer gray, int width, int height, boolean vertical) {
+        int lines = vertical ? width : height;
+        int length = vertical ? height : width;
+        if (length < 3 || lines < MIN_REGION_HEIGHT) {
+            return new ArrayList<>();
+        }
+
+        // 每行的边缘数
+        int[] lineEdges = new int[lines];
+        for (int line = 0; line < lines; line++) {
+            int count = 0;
+            for (int pos = 0; pos + 2 < length; pos++) {
+                if (isEdge(gray, width, vertical, line, pos)) {
+                    count++;
+                }
+            }
+            lineEdges[line] = count;
+        }
+
+        int[] sorted = lineEdges.clone();
+        Arrays.sort(sorted);
+        double lineThreshold = Math.max(MIN_ROW_DENSITY * length, sorted[lines / 2] * ROW_DENSITY_FACTOR);
+
+        // 合并间隔小于一行文字的文字条（同一段文字的行间距）
+        int mergeGap = Math.max(MIN_REGION_HEIGHT, lines / 50);
+        List<int[]> bands = new ArrayList<>();
+        int start = -1;
+        int lastText = -1;
+        for (int line = 0; line < lines; line++) {
+            if (lineEdges[line] < lineThreshold) {
+                continue;
+            }
+            if (start >= 0 && line - lastText > mergeGap) {
+                bands.add(new int[]{start, lastText + 1});
+                start = -1;
+            }
+            if (start < 0) {
+                start = line;
+            }
+            lastText = line;
+        }
+        if (start >= 0) {
+            bands.add(new int[]{start, lastText + 1});
+        }
+
+        List<Rectangle> regions = new ArrayList<>();
+        long area = 0;
+        for (int[] band : bands) {
+            if (band[1] - band[0] < MIN_REGION_HEIGHT) {
+                continue;
+            }
+            int[] extent = extent(gray, width, length, vertical, band[0], band[1]);
+            if (extent == null) {
+                continue;
+            }
+            Rectangle region = vertical
+                    ? new Rectangle(band[0], extent[0], band[1] - band[0], extent[1] - extent[0])
+                    : new Rectangle(extent[0], band[0], extent[1] - extent[0], band[1] - band[0]);
+            region = pad(region, width, height);
+            regions.add(region);
+            area += (long) region.width * region.height;
+        }
+
+        if (regions.isEmpty() || regions.size() > MAX_REGIONS || area > maxCoverage * width * height) {
+            return new ArrayList<>();
+        }
+        return regions;
+    }
+
+    /**
+     * 位置 pos 与 pos + 2 之间是否为高对比度边缘
+     */
+    private static boolean isEdge(ByteBuffer gray, int width, boolean vertical, int line, int pos) {
+        int first = vertical ? pos * width + line : line * width + pos;
+        int second = vertical ? first + 2 * width : first + 2;
+        int diff = (gray.get(first) & 0xFF) - (gray.get(second) & 0xFF);
+        return diff > EDGE_CONTRAST || diff < -EDGE_CONTRAST;
+    }
+
+    /**
+     * 在文字条内按位置统计边缘，收缩两端边界
+     *
+     * @return [起点, 终点)，没有足够的边缘时返回 null
+     */
+    private static int[] extent(ByteBuffer gray, int width, int length, boolean vertical, int first, int last) {
+        int[] positionEdges = new int[length];
+        for (int line = first; line < last; line++) {
+            for (int pos = 0; pos + 2 < length; pos++) {
+                if (isEdge(gray, width, vertical, line, pos)) {
+                    positionEdges[pos]++;
+                }
+            }
+        }
+        // 只出现在个别行的边缘（插图轮廓）不计入文字范围
+        int threshold = Math.max(1, (last - first) / 10);
+        int begin = 0;
+        while (begin < length && positionEdges[begin] < threshold) {
+            begin++;
+        }
+        int end = length - 1;
+        while (end > begin && positionEdges[end] < threshold) {
+            end--;
+        }
+        if (begin >= end) {
+            return null;
+        }
+        // 边缘位于 pos 和 pos + 2 之间
+        return new int[]{begin, Math.min(length, end + 3)};
+    }
+
+    private static Rectangle pad(Rectangle region, int width, int height) {
+        int x = Math.max(0, region.x - REGION_MARGIN);
+        int y = Math.max(0, region.y - REGION_MARGIN);
+        int right = Math.min(width, region.x + region.width + REGION_MARGIN);
+        int bottom = Math.min(height, region.y + region.height + REGION_MARGIN);
+        return new Rectangle(x, y, right - x, bottom - y);
+    }
+
+    /**
+     * 把区域从检测时的图片尺寸换算到另一个尺寸（例如分级识别中缩小后的图片）
+     *
+     * @param regions 文字区域
+     * @param scaleX  水平缩放比例
+     * @param scaleY  垂直缩放比例
+     * @param width   目标图片宽度
+     * @param height  目标图片高度
+     * @return 换算后的区域
+     */
+    static List<Rectangle> scale(List<Rectangle> regions, double scaleX, double scaleY, int width, int height) {
+        List<Rectangle> scaled = new ArrayList<>(regions.size());
+        for (Rectangle region : regions) {
+            int x = (int) Math.floor(region.x * scaleX);
+            int y = (int) Math.floor(region.y * scaleY);
+            int right = Math.min(width, (int) Math.ceil((region.x + region.width) * scaleX));
+            int bottom = Math.min(height, (int) Math.ceil((region.y + region.height) * scaleY));
+            if (right > x && bottom > y) {
+                scaled.add(new Rectangle(x, y, right - x, bottom - y));
+            }
+        }
+        return scaled;
+    }
+
+    /**
+     * 记录一张图片的识别方式
+     *
+     * @param regions 识别的文字区域数，0 表示识别了整张图片
+     */
+    public void recordRecognized(int regions) {
+        if (regions == 0) {
+            fullImageCount.incrementAndGet();
+        } else {
+            regionImageCount.incrementAndGet();
+            regionCount.addAndGet(regions);
+        }
+    }
+
+    /**
+     * @return 只识别文字区域的图片数
+     */
+    public int getRegionImageCount() {
+        return regionImageCount.get();
+    }
+
+    /**
+     * @return 识别的文字区域总数
+     */
+    public int getRegionCount() {
+        return regionCount.get();
+    }
+
+    /**
+     * @return 识别整张图片的图片数（未找到区域或区域识别无结果）
+     */
+    public int getFullImageCount() {
+        return fullImageCount.get();
+    }
+
+    /**
+     * @return 描述当前检测参数的字符串，用作缓存键的一部分
+     */
+    public String fingerprint() {
+        return "roi:" + String.format("%.2f", maxCoverage);
+    }
+}
@@ -0,0 +1,171 @@
+package LDS.Person;
+
+/**
+ * 识别文本清理器
+ * 一次按码点遍历同时完成：去除空白字符（规范化文本）、仅保留中文/英文字母/数字（过滤文本，同时也是合法文件名）。
+ * 基本多文种平面（BMP）的字符类别预先计算为查找表，结果与原先的正则 + 逐 char 过滤完全一致；
+ * 扩展 B-F 等增补平面的汉字按码点判断，不会再因为代理对被拆开而丢失。
+ *
+ * 实例内部复用缓冲区，不是线程安全的：每个 OCRService 持有各自的实例，
+ * 静态方法使用线程本地实例
+ */
+public class TextSanitizer {
+    // 字符类别：移除、空白（规范化时移除）、保留
+    private static final byte DROP = 0;
+    private static final byte WHITESPACE = 1;
+    private static final byte KEEP = 2;
+
+    private static final byte[] BMP_CLASSES = buildBmpTable();
+
+    private static final ThreadLocal<TextSanitizer> SHARED = ThreadLocal.withInitial(TextSanitizer::new);
+
+    private char[] normalized = new char[64];
+    private char[] filtered = new char[64];
+    private int normalizedStart;
+    private int normalizedEnd;
+    private int filteredLength;
+    private int normalizedCodePoints;
+    private int filteredCodePoints;
+
+    private static byte[] buildBmpTable() {
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            table[c] = classify(c);
+        }
+        return table;
+    }
+
+    private static byte classify(int codePoint) {
+        // 与正则 \s 一致：空格、\t、\n、\u000B、\f、\r
+        if (codePoint == ' ' || (codePoint >= '\t' && codePoint <= '\r')) {
+            return WHITESPACE;
+        }
+        if (isChinese(codePoint) || Character.isLetter(codePoint) || Character.isDigit(codePoint)) {
+            return KEEP;
+        }
+        return DROP;
+    }
+
+    private static byte classOf(int codePoint) {
+        return codePoint <= Character.MAX_VALUE ? BMP_CLASSES[codePoint] : classify(codePoint);
+    }
+
+    /**
+     * 检查码点是否为中文（中日韩统一表意文字及其扩展区、兼容表意文字）
+     *
+     * @param codePoint 待检查的码点
+     * @return true 如果是中文字符
+     */
+    static boolean isChinese(int codePoint) {
+        Character.UnicodeBlock ub = Character.UnicodeBlock.of(codePoint);
+        return ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_B ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_C ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_D ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_E ||
+               ub == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_F ||
+               ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS ||
+               ub == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS_SUPPLEMENT;
+    }
+
+    /**
+     * 清理一段识别文本，结果通过 normalized()、filtered() 等方法读取，直到下次调用
+     *
+     * @param text 原始识别文本，可以为 null
+     */
+    public void sanitize(String text) {
+        int length = text == null ? 0 : text.length();
+        if (normalized.length < length) {
+            normalized = new char[Math.max(length, normalized.length * 2)];
+            filtered = new char[normalized.length];
+        }
+        int n = 0;
+        int f = 0;
+        int keptCodePoints = 0;
+        for (int i = 0; i < length; ) {
+            int codePoint = text.codePointAt(i);
+            int count = Character.charCount(codePoint);
+            byte type = classOf(codePoint);
+            if (type != WHITESPACE) {
+                text.getChars(i, i + count, normalized, n);
+                n += count;
+                if (type == KEEP) {
+                    text.getChars(i, i + count, filtered, f);
+                    f += count;
+                    keptCodePoints++;
+                }
+            }
+            i += count;
+        }
+
+        // 与 String.trim() 一致：去掉两端剩余的控制字符（<= ' '）
+        int start = 0;
+        while (start < n && normalized[start] <= ' ') {
+            start++;
+        }
+        int end = n;
+        while (end > start && normalized[end - 1] <= ' ') {
+            end--;
+        }
+        normalizedStart = start;
+        normalizedEnd = end;
+        normalizedCodePoints = Character.codePointCount(normalized, start, end - start);
+        filteredLength = f;
+        filteredCodePoints = keptCodePoints;
+    }
+
+    /**
+     * @return 去除空白字符后的文本
+     */
+    public String normalized() {
+        return new String(normalized, normalizedStart, normalizedEnd - normalizedStart);
+    }
+
+    /**
+     * @return 仅包含中文、英文字母、数字的文本（可直接作为文件名）
+     */
+    public String filtered() {
+        return new String(filtered, 0, filteredLength);
+    }
+
+    /**
+     * @return 规范化文本的字符数（按码点计算）
+     */
+    public int normalizedCodePoints() {
+        return normalizedCodePoints;
+    }
+
+    /**
+     * @return 过滤后文本的字符数（按码点计算）
+     */
+    public int filteredCodePoints() {
+        return filteredCodePoints;
+    }
+
+    /**
+     * 规范化识别的文本
+     * 去除所有空白字符（空格、换行、制表符等），保持字符连续
+     *
+     * @param text 原始文本
+     * @return 规范化后的文本
+     */
+    public static String normalize(String text) {
+        TextSanitizer sanitizer = SHARED.get();
+        sanitizer.sanitize(text);
+        return sanitizer.normalized();
+    }
+
+    /**
+     * 仅保留中文字符、英文字母、数字
+     * 移除所有符号、特殊字符、标点、空白（包括 Windows 文件名不允许的字符）
+     *
+     * @param text 原始文本
+     * @return 清理后的文本
+     */
+    public static String clean(String text) {
+        TextSanitizer sanitizer = SHARED.get();
+        sanitizer.sanitize(text);
+        return sanitizer.filtered();
+    }
+}
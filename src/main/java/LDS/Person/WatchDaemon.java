@@ -0,0 +1,286 @@
+package LDS.Person;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 监听文件夹的常驻模式
+ * 基于 WatchService 监听 IMG 及其所有子目录（新建的子目录会自动加入监听），
+ * 新到达的图片在大小和修改时间稳定一段时间（防抖）后送入识别流水线。
+ * OCR 引擎和线程池在事件之间保持常驻，不需要为每个新文件重新加载模型。
+ *
+ * 程序自己重命名产生的事件（新文件名已记录在进度日志中）以及正在处理中的文件的事件会被忽略，
+ * 不会循环处理。启动时会先把目录中尚未处理的图片加入候选，补上停机期间到达的文件
+ */
+public class WatchDaemon {
+    // 检查候选文件是否稳定的间隔
+    private static final long CHECK_INTERVAL_MS = 100;
+
+    private final Path root;
+    private final RenamePipeline pipeline;
+    private final ProgressJournal journal;
+    private final long debounceMs;
+    private final long latencyTargetMs;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    // 等待写入完成的候选文件
+    private final Map<Path, Candidate> candidates = new LinkedHashMap<>();
+    // 已送入流水线、尚未处理完毕的文件 -> 首次发现时间
+    private final Map<File, Long> inProgress = new ConcurrentHashMap<>();
+    private final AtomicInteger completedCount = new AtomicInteger();
+    private final AtomicInteger lateCount = new AtomicInteger();
+    private volatile boolean running = true;
+    private WatchService watcher;
+
+    /**
+     * 候选文件的最近一次状态
+     */
+    private static class Candidate {
+        final long firstSeen;
+        long size;
+        long lastModified;
+        long stableSince;
+
+        Candidate(long size, long lastModified, long now) {
+            this.firstSeen = now;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stableSince = now;
+        }
+    }
+
+    /**
+     * 创建监听器
+     *
+     * @param root       监听的根目录
+     * @param pipeline   识别流水线
+     * @param journal    进度日志（用于识别程序自己产生的重命名事件）
+     * @param debounceMs      文件大小和修改时间保持不变多久后才开始识别（毫秒）
+     * @param latencyTargetMs 从发现文件到处理完毕的目标延迟（毫秒），超出时输出警告
+     */
+    public WatchDaemon(Path root, RenamePipeline pipeline, ProgressJournal journal,
+                       long debounceMs, long latencyTargetMs) {
+        this.root = root;
+        this.pipeline = pipeline;
+        this.journal = journal;
+        this.debounceMs = debounceMs;
+        this.latencyTargetMs = latencyTargetMs;
+        pipeline.setCompletionListener(this::completed);
+    }
+
+    /**
+     * 在当前线程监听，直到 stop() 被调用
+     *
+     * @throws IOException          无法注册监听
+     * @throws InterruptedException 送入流水线时被中断
+     */
+    public void run() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            this.watcher = service;
+            registerTree(root);
+            AsyncLogger.info("👀 正在监听: " + root + "（" + watchedDirectories.size() + " 个目录，"
+                    + candidates.size() + " 个待处理文件），按 Ctrl+C 停止");
+            while (running) {
+                WatchKey key;
+                try {
+                    key = service.poll(CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                if (key != null) {
+                    handleEvents(key);
+                }
+                submitStableCandidates();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // stop() 关闭了监听服务
+        }
+    }
+
+    /**
+     * 停止监听（可在任意线程调用）
+     */
+    public void stop() {
+        running = false;
+    }
+
+    /**
+     * 流水线处理完一个文件后回调（在 drain() 所在线程执行）
+     */
+    private void completed(File file) {
+        Long firstSeen = inProgress.remove(file);
+        if (firstSeen == null) {
+            return;
+        }
+        completedCount.incrementAndGet();
+        long latency = System.currentTimeMillis() - firstSeen;
+        if (latency > latencyTargetMs) {
+            lateCount.incrementAndGet();
+            AsyncLogger.warn("⚠ 处理延迟 " + latency + "ms，超过目标 " + latencyTargetMs + "ms: " + file.getName());
+        }
+    }
+
+    /**
+     * @return 监听期间处理完毕的文件数
+     */
+    public int getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * @return 处理延迟超过目标的文件数
+     */
+    public int getLateCount() {
+        return lateCount.get();
+    }
+
+    private void handleEvents(WatchKey key) throws IOException {
+        Path directory = watchedDirectories.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                // 事件丢失：重新遍历整棵目录树，已处理的文件会被进度日志过滤
+                registerTree(root);
+                continue;
+            }
+            if (directory == null || kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                continue;
+            }
+            Path path = directory.resolve((Path) event.context());
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                    // 新建（或移入）的子目录：加入监听，并处理其中已有的文件
+                    registerTree(path);
+                }
+                continue;
+            }
+            track(path);
+        }
+        if (!key.reset()) {
+            watchedDirectories.remove(key);
+        }
+    }
+
+    /**
+     * 注册目录树中的所有目录，并把已有的图片加入候选
+     */
+    private void registerTree(Path start) throws IOException {
+        try (Stream<Path> paths = Files.walk(start)) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    WatchKey key = path.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    watchedDirectories.put(key, path);
+                } else {
+                    track(path);
+                }
+            }
+        }
+    }
+
+    /**
+     * 记录候选文件的大小和修改时间，变化时重新开始计时
+     */
+    private void track(Path path) {
+        if (!ImageFormats.isSupported(path.getFileName().toString())) {
+            return;
+        }
+        // 正在处理的文件、程序自己重命名得到的文件，或之前已处理过的文件
+        if (inProgress.containsKey(path.toFile()) || journal.isFinished(path.toFile())) {
+            candidates.remove(path);
+            return;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (IOException e) {
+            candidates.remove(path);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Candidate candidate = candidates.get(path);
+        if (candidate == null) {
+            candidates.put(path, new Candidate(attributes.size(), lastModified, now));
+        } else if (candidate.size != attributes.size() || candidate.lastModified != lastModified) {
+            candidate.size = attributes.size();
+            candidate.lastModified = lastModified;
+            candidate.stableSince = now;
+        }
+    }
+
+    /**
+     * 把已经稳定的候选文件送入流水线
+     */
+    private void submitStableCandidates() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Path, Candidate>> iterator = candidates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Candidate> entry = iterator.next();
+            Path path = entry.getKey();
+            Candidate candidate = entry.getValue();
+            if (now - candidate.stableSince < debounceMs) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                // 文件已被删除或移走
+                iterator.remove();
+                continue;
+            }
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (attributes.size() != candidate.size || lastModified != candidate.lastModified
+                    || attributes.size() == 0) {
+                candidate.size = attributes.size();
+                candidate.lastModified = lastModified;
+                candidate.stableSince = now;
+                continue;
+            }
+            if (!isReadable(path)) {
+                // 仍被写入方占用（Windows 下常见），稍后再试
+                candidate.stableSince = now;
+                continue;
+            }
+            iterator.remove();
+            File file = path.toFile();
+            if (journal.isFinished(file)) {
+                continue;
+            }
+            inProgress.put(file, candidate.firstSeen);
+            if (!pipeline.offer(file)) {
+                inProgress.remove(file);
+            }
+        }
+    }
+
+    private static boolean isReadable(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.size() > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}